@@ -21,10 +21,12 @@ tasks {
     }
 }
 
+val unpublishedProjects = setOf("request-logging-benchmarks", "request-logging-load-tests", "request-logging-jakarta-stress-tests")
+
 subprojects {
 
     group = "com.etherealscope"
-    version = "5.0.0"
+    version = "6.0.0"
 
     apply(plugin="java-library")
     apply(plugin="maven-publish")
@@ -63,6 +65,10 @@ subprojects {
         }
     }
 
+    if (project.name in unpublishedProjects) {
+        return@subprojects
+    }
+
     publishing {
         repositories {
             maven {
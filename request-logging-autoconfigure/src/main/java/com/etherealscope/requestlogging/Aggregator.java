@@ -0,0 +1,143 @@
+package com.etherealscope.requestlogging;
+
+import com.etherealscope.requestlogging.RequestLoggingProperties.AggregationRule;
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.etherealscope.requestlogging.CommonUtils.METHODS;
+import static com.etherealscope.requestlogging.CommonUtils.appendMillis;
+import static com.etherealscope.requestlogging.CommonUtils.methodIndex;
+
+/**
+ * Exchanges of one aggregation rule counted instead of logged, per http method and status class.
+ * Counters are striped and the latency histogram is updated with single atomic increments,
+ * so recording is lock-free. A summary drains the counters, exchanges recorded meanwhile
+ * may be counted in the next window.
+ */
+final class Aggregator {
+
+    private static final int STATUS_CLASSES = 6;
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99"};
+
+    @Getter
+    private final AggregationRule rule;
+    /**
+     * Cells by method, the last one for methods not in {@link CommonUtils#METHODS}, and status class,
+     * the last one for statuses out of 1xx to 5xx. Created on the first exchange.
+     */
+    private final AtomicReferenceArray<Cell> cells = new AtomicReferenceArray<>((METHODS.length + 1) * STATUS_CLASSES);
+
+    Aggregator(AggregationRule rule) {
+        this.rule = rule;
+    }
+
+    void record(String method, int status, long elapsedNanos) {
+        int statusClass = status >= 100 && status < 600 ? status / 100 - 1 : STATUS_CLASSES - 1;
+        int index = methodIndex(method) * STATUS_CLASSES + statusClass;
+        Cell cell = cells.get(index);
+        if (cell == null) {
+            cells.compareAndSet(index, null, new Cell());
+            cell = cells.get(index);
+        }
+        cell.record(elapsedNanos);
+    }
+
+    /**
+     * Appends counts and latencies of the window to the summary and resets them.
+     *
+     * @return false when nothing was recorded in the window
+     */
+    boolean drainTo(StringBuilder sb) {
+        boolean recorded = false;
+        for (int i = 0; i < cells.length(); i++) {
+            Cell cell = cells.get(i);
+            long count = cell != null ? cell.count.sumThenReset() : 0;
+            if (count == 0) {
+                continue;
+            }
+            int methodIndex = i / STATUS_CLASSES;
+            int statusClass = i % STATUS_CLASSES;
+            sb.append(recorded ? ", " : " ")
+                    .append(methodIndex < METHODS.length ? METHODS[methodIndex].name() : "OTHER").append(' ')
+                    .append(statusClass < STATUS_CLASSES - 1 ? (statusClass + 1) + "xx" : "other")
+                    .append(" count=").append(count);
+            cell.drainLatencies(sb);
+            recorded = true;
+        }
+        return recorded;
+    }
+
+    private static final class Cell {
+
+        /**
+         * Latencies in microseconds, exact up to 16 and with 8 buckets per power of two above,
+         * so a percentile is at most 12.5 % above the real one. Percentiles are kept within min and max.
+         */
+        private static final int LINEAR_BUCKETS = 16;
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int MAX_EXPONENT = 40;
+        private static final int BUCKETS = LINEAR_BUCKETS + ((MAX_EXPONENT - 4) << SUB_BUCKET_BITS);
+
+        final LongAdder count = new LongAdder();
+        final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        final LongAccumulator max = new LongAccumulator(Math::max, Long.MIN_VALUE);
+        final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        void record(long elapsedNanos) {
+            min.accumulate(elapsedNanos);
+            max.accumulate(elapsedNanos);
+            histogram.incrementAndGet(bucket(elapsedNanos / 1000));
+            count.increment();
+        }
+
+        void drainLatencies(StringBuilder sb) {
+            long[] buckets = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = histogram.getAndSet(i, 0);
+                total += buckets[i];
+            }
+            long minNanos = min.getThenReset();
+            long maxNanos = max.getThenReset();
+            appendMillis(sb.append(" min="), minNanos);
+            long seen = 0;
+            int bucket = 0;
+            for (int p = 0; p < PERCENTILES.length && total > 0; p++) {
+                long rank = Math.max(1, (long) Math.ceil(PERCENTILES[p] * total));
+                while (bucket < BUCKETS - 1 && seen + buckets[bucket] < rank) {
+                    seen += buckets[bucket++];
+                }
+                long percentile = Math.max(minNanos, Math.min(upperBound(bucket) * 1000, maxNanos));
+                appendMillis(sb.append(' ').append(PERCENTILE_NAMES[p]).append('='), percentile);
+            }
+            appendMillis(sb.append(" max="), maxNanos).append(" ms");
+        }
+
+        private static int bucket(long micros) {
+            if (micros < LINEAR_BUCKETS) {
+                return (int) Math.max(micros, 0);
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(micros);
+            if (exponent >= MAX_EXPONENT) {
+                return BUCKETS - 1;
+            }
+            int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & ((1 << SUB_BUCKET_BITS) - 1);
+            return LINEAR_BUCKETS + ((exponent - 4) << SUB_BUCKET_BITS) + subBucket;
+        }
+
+        private static long upperBound(int bucket) {
+            if (bucket < LINEAR_BUCKETS) {
+                return bucket + 1;
+            }
+            int exponent = ((bucket - LINEAR_BUCKETS) >>> SUB_BUCKET_BITS) + 4;
+            int subBucket = (bucket - LINEAR_BUCKETS) & ((1 << SUB_BUCKET_BITS) - 1);
+            return (long) ((1 << SUB_BUCKET_BITS) + subBucket + 1) << (exponent - SUB_BUCKET_BITS);
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.etherealscope.requestlogging;
+
+import com.etherealscope.requestlogging.RequestLoggingProperties.AggregationRule;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.stream.Stream;
+
+import static com.etherealscope.requestlogging.CommonUtils.MATCHER;
+
+/**
+ * Configured aggregation rules. Exchanges matching a rule are counted by its {@link Aggregator}
+ * and logged as one summary line per rule and window, at the level exchanges are logged at.
+ */
+@Slf4j(topic = "com.etherealscope.requestlogging.RequestLoggingFilter")
+final class Aggregators {
+
+    private final Aggregator[] aggregators;
+
+    Aggregators(AggregationRule... rules) {
+        this.aggregators = Stream.of(rules).map(Aggregator::new).toArray(Aggregator[]::new);
+    }
+
+    boolean isEmpty() {
+        return aggregators.length == 0;
+    }
+
+    Aggregator match(String method, String servletPath) {
+        for (Aggregator aggregator : aggregators) {
+            AggregationRule rule = aggregator.getRule();
+            if ((rule.getMethod() == null || rule.getMethod().matches(method)) && MATCHER.match(rule.getPathMatcher(), servletPath)) {
+                return aggregator;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Logs one line per rule with the exchanges recorded since the previous summary.
+     */
+    void logSummary() {
+        for (Aggregator aggregator : aggregators) {
+            StringBuilder sb = new StringBuilder("Request logging aggregate ").append(aggregator.getRule().getPathMatcher()).append(':');
+            if (aggregator.drainTo(sb) && log.isDebugEnabled()) {
+                log.debug(sb.toString());
+            }
+        }
+    }
+
+}
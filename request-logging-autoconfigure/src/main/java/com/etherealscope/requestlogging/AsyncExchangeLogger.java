@@ -0,0 +1,146 @@
+package com.etherealscope.requestlogging;
+
+import com.etherealscope.requestlogging.RequestLoggingProperties.Async;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves masking, formatting and writing of exchange records off the request thread. Records are handed over
+ * through a bounded lock-free queue to a single background worker, the request thread never waits for
+ * the logger unless the {@link OverflowPolicy#BLOCK} policy is configured.
+ */
+@Slf4j
+class AsyncExchangeLogger implements Closeable {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    private final ExchangeLogger delegate;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutNanos;
+    private final Queue<ExchangeRecord> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean workerParked = new AtomicBoolean();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    AsyncExchangeLogger(ExchangeLogger delegate, Async config) {
+        this.delegate = delegate;
+        this.capacity = config.getQueueCapacity();
+        this.overflowPolicy = config.getOverflowPolicy();
+        this.blockTimeoutNanos = config.getBlockTimeout().toNanos();
+        this.worker = new Thread(this::work, "request-logging-async");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Number of exchanges dropped because the queue was full.
+     */
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Number of exchanges waiting to be logged.
+     */
+    int getQueueSize() {
+        return size.get();
+    }
+
+    void log(ExchangeRecord record) {
+        if (!enqueue(record)) {
+            dropped.increment();
+            record.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (getDroppedCount() > 0) {
+            log.warn("Asynchronous request logging dropped {} exchanges due to full queue", getDroppedCount());
+        }
+    }
+
+    private boolean enqueue(ExchangeRecord record) {
+        if (tryEnqueue(record)) {
+            return true;
+        }
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                do {
+                    ExchangeRecord oldest = queue.poll();
+                    if (oldest != null) {
+                        size.decrementAndGet();
+                        dropped.increment();
+                        oldest.release();
+                    }
+                } while (!tryEnqueue(record));
+                return true;
+            case BLOCK:
+                long deadline = System.nanoTime() + blockTimeoutNanos;
+                do {
+                    if (System.nanoTime() - deadline >= 0) {
+                        return false;
+                    }
+                    LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                } while (!tryEnqueue(record));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean tryEnqueue(ExchangeRecord record) {
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            return false;
+        }
+        queue.offer(record);
+        if (workerParked.get() && workerParked.compareAndSet(true, false)) {
+            LockSupport.unpark(worker);
+        }
+        return true;
+    }
+
+    private void work() {
+        while (running || size.get() > 0) {
+            ExchangeRecord record = queue.poll();
+            if (record == null) {
+                workerParked.set(true);
+                if (queue.isEmpty() && running) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                workerParked.set(false);
+                continue;
+            }
+            size.decrementAndGet();
+            try {
+                delegate.log(record);
+            } catch (RuntimeException e) {
+                log.warn("Asynchronous request logging failed", e);
+            } finally {
+                record.release();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.etherealscope.requestlogging;
+
+import com.etherealscope.requestlogging.RequestLoggingProperties.Dedup;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hashes of bodies recently logged in full, so a body repeated within the window is logged by its hash only.
+ * Hashes are kept in a direct mapped table of atomic slots, a body takes over the slot of whatever hash shares it,
+ * so the table stays bounded and lock-free at the cost of logging a colliding body in full again early.
+ * Racing threads may both log the same body in full, a body is only replaced by the hash of one logged in full.
+ */
+class BodyDedup {
+
+    private final AtomicLongArray hashes;
+    private final AtomicLongArray loggedAt;
+    private final int mask;
+    private final long windowNanos;
+    private final int minSize;
+    private final LongAdder repeated = new LongAdder();
+
+    BodyDedup(Dedup config) {
+        int size = Math.max(Integer.highestOneBit(config.getTableSize() - 1) << 1, 1);
+        this.hashes = new AtomicLongArray(size);
+        this.loggedAt = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.windowNanos = config.getWindow().toNanos();
+        this.minSize = config.getMinSize();
+    }
+
+    /**
+     * Number of bodies logged by their hash only.
+     */
+    long getRepeatedCount() {
+        return repeated.sum();
+    }
+
+    /**
+     * Hash of the masked body, 0 when it is too short to be deduplicated.
+     */
+    long hash(PayloadBuffer masked) {
+        if (masked.length() < minSize) {
+            return 0;
+        }
+        long hash = masked.hash();
+        return hash != 0 ? hash : 1;
+    }
+
+    /**
+     * Records the body as logged in full, unless it was logged in full within the window.
+     *
+     * @param hash non zero hash of the masked body
+     * @return true when the body is to be logged by its hash only
+     */
+    boolean isRepeated(long hash) {
+        int slot = (int) (hash ^ hash >>> 32) & mask;
+        long now = System.nanoTime();
+        if (hashes.get(slot) == hash && now - loggedAt.get(slot) < windowNanos) {
+            repeated.increment();
+            return true;
+        }
+        loggedAt.set(slot, now);
+        hashes.set(slot, hash);
+        return false;
+    }
+
+    static String format(long hash) {
+        String hex = Long.toHexString(hash);
+        return "0000000000000000".substring(hex.length()) + hex;
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.etherealscope.requestlogging;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Lock-free cache holding at most two generations of {@code generationSize} entries. When the current
+ * generation is full, it becomes the previous one and the old previous generation is dropped, entries
+ * still in use are promoted back on their next hit. Hits do not write anything, so high cardinality keys
+ * cost only a bounded amount of memory while hot keys stay cached.
+ */
+final class BoundedCache<K, V> {
+
+    private final int generationSize;
+    private final Function<K, V> loader;
+    private final AtomicReference<Generations<K, V>> generations = new AtomicReference<>(new Generations<>(new ConcurrentHashMap<>(), new ConcurrentHashMap<>()));
+
+    BoundedCache(int generationSize, Function<K, V> loader) {
+        this.generationSize = generationSize;
+        this.loader = loader;
+    }
+
+    V get(K key) {
+        Generations<K, V> g = generations.get();
+        V value = g.current.get(key);
+        if (value != null) {
+            return value;
+        }
+        value = g.previous.get(key);
+        if (value == null) {
+            value = loader.apply(key);
+        }
+        g.current.put(key, value);
+        if (g.current.size() > generationSize) {
+            generations.compareAndSet(g, new Generations<>(new ConcurrentHashMap<>(), g.current));
+        }
+        return value;
+    }
+
+    private static final class Generations<K, V> {
+
+        final Map<K, V> current;
+        final Map<K, V> previous;
+
+        Generations(Map<K, V> current, Map<K, V> previous) {
+            this.current = current;
+            this.previous = previous;
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+package com.etherealscope.requestlogging;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.springframework.http.MediaType.APPLICATION_FORM_URLENCODED_VALUE;
+
+/**
+ * Request wrapper passing the body straight through to the reader, keeping a copy of only its first bytes.
+ * Unlike {@link org.springframework.web.util.ContentCachingRequestWrapper}, heap use does not depend on the body size.
+ */
+class BoundedCaptureRequestWrapper extends HttpServletRequestWrapper {
+
+    private final CaptureBuffer capture;
+    private ServletInputStream inputStream;
+    private BufferedReader reader;
+
+    BoundedCaptureRequestWrapper(HttpServletRequest request, SlabPool pool) {
+        super(request);
+        this.capture = new CaptureBuffer(pool);
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        if (inputStream == null) {
+            inputStream = new CaptureInputStream(getRequest().getInputStream());
+        }
+        return inputStream;
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        if (reader == null) {
+            reader = new BufferedReader(new InputStreamReader(getInputStream(), charset()));
+        }
+        return reader;
+    }
+
+    /**
+     * Captured body. Form posts read by the container through {@code getParameter} never pass the stream,
+     * so their body is rebuilt from the parameters.
+     */
+    ByteBuffer getContent() {
+        if (capture.isEmpty() && isFormPost()) {
+            writeParametersToCapture();
+        }
+        return capture.content();
+    }
+
+    CaptureBuffer getCapture() {
+        return capture;
+    }
+
+    private boolean isFormPost() {
+        String contentType = getContentType();
+        return contentType != null && contentType.contains(APPLICATION_FORM_URLENCODED_VALUE) && "POST".equals(getMethod());
+    }
+
+    private void writeParametersToCapture() {
+        Charset charset = charset();
+        StringBuilder body = new StringBuilder();
+        for (Iterator<Map.Entry<String, String[]>> it = getParameterMap().entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, String[]> entry = it.next();
+            String[] values = entry.getValue();
+            for (int i = 0; i < values.length; i++) {
+                body.append(encode(entry.getKey(), charset));
+                if (values[i] != null) {
+                    body.append('=').append(encode(values[i], charset));
+                }
+                if (i < values.length - 1 || it.hasNext()) {
+                    body.append('&');
+                }
+            }
+        }
+        byte[] bytes = body.toString().getBytes(charset);
+        capture.write(bytes, 0, bytes.length);
+    }
+
+    private Charset charset() {
+        String encoding = getCharacterEncoding();
+        return encoding != null ? Charset.forName(encoding) : ISO_8859_1;
+    }
+
+    private static String encode(String value, Charset charset) {
+        try {
+            return URLEncoder.encode(value, charset.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private class CaptureInputStream extends ServletInputStream {
+
+        private final ServletInputStream delegate;
+
+        CaptureInputStream(ServletInputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = delegate.read();
+            if (b != -1) {
+                capture.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = delegate.read(b, off, len);
+            if (count > 0) {
+                capture.write(b, off, count);
+            }
+            return count;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return delegate.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            delegate.setReadListener(readListener);
+        }
+    }
+
+}
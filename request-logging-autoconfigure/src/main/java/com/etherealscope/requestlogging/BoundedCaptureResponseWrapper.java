@@ -0,0 +1,281 @@
+package com.etherealscope.requestlogging;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.util.function.Predicate;
+
+import static java.lang.Math.min;
+import static java.nio.charset.CodingErrorAction.REPLACE;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+/**
+ * Response wrapper writing the body straight to the client, keeping a copy of only its first bytes.
+ * Unlike {@link org.springframework.web.util.ContentCachingResponseWrapper}, nothing is held back
+ * until the end of the request, so time to first byte and heap use do not depend on the body size.
+ * Whether the body is captured at all is decided by its content type once the first byte is written.
+ * <p>
+ * The writer encodes straight into the output stream, so a reset of the buffer leaves no stale characters
+ * behind in it. As the container only ever sees the output stream, using both the writer and the output stream
+ * is refused here, the way the container would.
+ */
+class BoundedCaptureResponseWrapper extends HttpServletResponseWrapper {
+
+    private final CaptureBuffer capture;
+    private final Predicate<String> captureContentType;
+    private Boolean capturing;
+    private ServletOutputStream outputStream;
+    private boolean usingOutputStream;
+    private EncodingWriter encodingWriter;
+    private PrintWriter writer;
+
+    BoundedCaptureResponseWrapper(HttpServletResponse response, SlabPool pool, Predicate<String> captureContentType) {
+        super(response);
+        this.capture = new CaptureBuffer(pool);
+        this.captureContentType = captureContentType;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called for this response");
+        }
+        usingOutputStream = true;
+        return captureOutputStream();
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (usingOutputStream) {
+            throw new IllegalStateException("getOutputStream() has already been called for this response");
+        }
+        if (writer == null) {
+            encodingWriter = new EncodingWriter(captureOutputStream(), charset(getCharacterEncoding()));
+            writer = new PrintWriter(encodingWriter);
+        }
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        flushWriter();
+        super.flushBuffer();
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        if (encodingWriter != null) {
+            encodingWriter.reset();
+        }
+        capture.reset();
+    }
+
+    /**
+     * Also forgets which of the writer and the output stream was used, the character encoding may change
+     * before the writer is asked for again.
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        if (encodingWriter != null) {
+            encodingWriter.reset();
+        }
+        encodingWriter = null;
+        writer = null;
+        usingOutputStream = false;
+        capture.reset();
+        capturing = null;
+    }
+
+    /**
+     * Pushes characters still buffered in the writer to the underlying stream,
+     * the container only knows about its own writer.
+     */
+    void flushWriter() {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    /**
+     * Captured body, no copy is made. Valid until the capture is released.
+     */
+    ByteBuffer getContent() {
+        flushWriter();
+        return capture.content();
+    }
+
+    CaptureBuffer getCapture() {
+        return capture;
+    }
+
+    /**
+     * Number of body bytes written by the application, including those not captured.
+     */
+    long getTotalBytes() {
+        flushWriter();
+        return capture.total();
+    }
+
+    private ServletOutputStream captureOutputStream() throws IOException {
+        if (outputStream == null) {
+            outputStream = new CaptureOutputStream(getResponse().getOutputStream());
+        }
+        return outputStream;
+    }
+
+    /**
+     * Iso-8859-1 unless told otherwise, as the servlet spec has it.
+     */
+    private static Charset charset(String encoding) throws UnsupportedEncodingException {
+        if (encoding == null) {
+            return ISO_8859_1;
+        }
+        try {
+            return Charset.forName(encoding);
+        } catch (IllegalArgumentException e) {
+            throw new UnsupportedEncodingException(encoding);
+        }
+    }
+
+    private boolean isCapturing() {
+        if (capturing == null) {
+            capturing = captureContentType.test(getContentType());
+        }
+        return capturing;
+    }
+
+    private class CaptureOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream delegate;
+
+        CaptureOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            if (isCapturing()) {
+                capture.write(b);
+            } else {
+                capture.skip(1);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            if (isCapturing()) {
+                capture.write(b, off, len);
+            } else {
+                capture.skip(len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+    }
+
+    /**
+     * Encodes characters into the output stream as they are written. Only a high surrogate waiting for its pair
+     * is held back, which {@link #reset()} drops together with the state of the encoder.
+     */
+    private static final class EncodingWriter extends Writer {
+
+        private static final int BUFFER_SIZE = 1024;
+
+        private final OutputStream out;
+        private final CharsetEncoder encoder;
+        private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+        private final ByteBuffer bytes;
+
+        EncodingWriter(OutputStream out, Charset charset) {
+            this.out = out;
+            this.encoder = charset.newEncoder().onMalformedInput(REPLACE).onUnmappableCharacter(REPLACE);
+            this.bytes = ByteBuffer.allocate((int) Math.ceil(BUFFER_SIZE * encoder.maxBytesPerChar()));
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            while (len > 0) {
+                int count = min(len, chars.remaining());
+                chars.put(cbuf, off, count);
+                off += count;
+                len -= count;
+                chars.flip();
+                encode(false);
+                chars.compact();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            chars.flip();
+            encode(true);
+            chars.clear();
+            CoderResult result;
+            do {
+                result = encoder.flush(bytes);
+                drain();
+            } while (result.isOverflow());
+            out.close();
+        }
+
+        void reset() {
+            chars.clear();
+            bytes.clear();
+            encoder.reset();
+        }
+
+        private void encode(boolean endOfInput) throws IOException {
+            CoderResult result;
+            do {
+                result = encoder.encode(chars, bytes, endOfInput);
+                drain();
+            } while (result.isOverflow());
+        }
+
+        private void drain() throws IOException {
+            if (bytes.position() > 0) {
+                out.write(bytes.array(), 0, bytes.position());
+                bytes.clear();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,204 @@
+package com.etherealscope.requestlogging;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static com.etherealscope.requestlogging.CommonUtils.utf8Boundary;
+import static java.lang.Math.min;
+
+/**
+ * Keeps a copy of the first bytes passing through a stream, up to the slab size of its pool, and ignores the rest,
+ * so captured payloads never grow beyond what is going to be logged. The slab is taken from the pool
+ * on the first write and has to be given back by {@link #release()} once the exchange is logged.
+ * <p>
+ * When the pool has an overflow pool, bytes past the slab go to chunks taken from it one at a time,
+ * up to the capture limit of the pool. Once no chunk is left, the capture stops there.
+ */
+final class CaptureBuffer {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final SlabPool pool;
+    private ByteBuffer slab;
+    private ByteBuffer[] chunks;
+    private int chunkCount;
+    private int captured;
+    private boolean cut;
+    private ByteBuffer joined;
+    private boolean released;
+    private long total;
+
+    CaptureBuffer(SlabPool pool) {
+        this.pool = pool;
+    }
+
+    void write(int b) {
+        total++;
+        ByteBuffer room = room();
+        if (room != null) {
+            room.put((byte) b);
+            captured++;
+        }
+    }
+
+    void write(byte[] src, int offset, int count) {
+        total += count;
+        while (count > 0) {
+            ByteBuffer room = room();
+            if (room == null) {
+                return;
+            }
+            int n = min(count, room.remaining());
+            room.put(src, offset, n);
+            captured += n;
+            offset += n;
+            count -= n;
+        }
+    }
+
+    /**
+     * Copies from the position of {@code src} on, which is consumed.
+     */
+    void write(ByteBuffer src) {
+        total += src.remaining();
+        int limit = src.limit();
+        while (src.hasRemaining()) {
+            ByteBuffer room = room();
+            if (room == null) {
+                break;
+            }
+            int n = min(src.remaining(), room.remaining());
+            src.limit(src.position() + n);
+            room.put(src);
+            src.limit(limit);
+            captured += n;
+        }
+    }
+
+    /**
+     * Counts bytes passed through without keeping them.
+     */
+    void skip(int count) {
+        total += count;
+    }
+
+    boolean isEmpty() {
+        return captured == 0;
+    }
+
+    void reset() {
+        if (slab != null) {
+            slab.clear();
+        }
+        releaseChunks();
+        captured = 0;
+        cut = false;
+        joined = null;
+        total = 0;
+    }
+
+    /**
+     * Number of bytes passed through since the last reset, including those not captured.
+     */
+    long total() {
+        return total;
+    }
+
+    /**
+     * View of the captured bytes, no copy is made unless the body overflowed its slab, whose chunks
+     * are joined into one heap buffer then and given back, bytes written afterwards are only counted.
+     * Valid until the buffer is released. When not everything was captured, the view ends before
+     * a character cut in half by the capture end.
+     */
+    ByteBuffer content() {
+        if (slab == null) {
+            return EMPTY;
+        }
+        ByteBuffer content;
+        if (joined != null) {
+            content = joined.duplicate();
+        } else if (chunkCount > 0) {
+            joined = join();
+            content = joined.duplicate();
+        } else {
+            content = slab.duplicate();
+            content.flip();
+        }
+        if (total > content.limit()) {
+            content.limit(utf8Boundary(content, 0, content.limit(), true));
+        }
+        return content;
+    }
+
+    /**
+     * Gives the slab and chunks back to their pools, bytes written afterwards are only counted.
+     */
+    void release() {
+        released = true;
+        if (slab != null) {
+            pool.release(slab);
+            slab = null;
+        }
+        releaseChunks();
+        joined = null;
+    }
+
+    /**
+     * Buffer with room for the next captured byte, null when the capture is full.
+     */
+    private ByteBuffer room() {
+        if (slab == null) {
+            if (released) {
+                return null;
+            }
+            slab = pool.acquire();
+        }
+        if (slab.hasRemaining()) {
+            return slab;
+        }
+        if (chunkCount > 0 && chunks[chunkCount - 1].hasRemaining()) {
+            return chunks[chunkCount - 1];
+        }
+        SlabPool overflow = pool.getOverflow();
+        if (overflow == null || cut || joined != null || captured >= pool.getCaptureLimit()) {
+            return null;
+        }
+        ByteBuffer chunk = overflow.tryAcquire();
+        if (chunk == null) {
+            cut = true;
+            return null;
+        }
+        chunk.limit(min(chunk.capacity(), pool.getCaptureLimit() - captured));
+        if (chunks == null) {
+            chunks = new ByteBuffer[4];
+        } else if (chunkCount == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunkCount * 2);
+        }
+        chunks[chunkCount++] = chunk;
+        return chunk;
+    }
+
+    private ByteBuffer join() {
+        ByteBuffer buffer = ByteBuffer.allocate(captured);
+        ByteBuffer content = slab.duplicate();
+        content.flip();
+        buffer.put(content);
+        for (int i = 0; i < chunkCount; i++) {
+            content = chunks[i].duplicate();
+            content.flip();
+            buffer.put(content);
+        }
+        buffer.flip();
+        releaseChunks();
+        return buffer;
+    }
+
+    private void releaseChunks() {
+        for (int i = 0; i < chunkCount; i++) {
+            pool.getOverflow().release(chunks[i]);
+            chunks[i] = null;
+        }
+        chunkCount = 0;
+    }
+
+}
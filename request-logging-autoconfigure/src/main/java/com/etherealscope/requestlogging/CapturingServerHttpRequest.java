@@ -0,0 +1,43 @@
+package com.etherealscope.requestlogging;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Copies the first bytes of the body data buffers, up to the slab size, as they are read by the application.
+ * Buffers are neither joined nor retained, each one is only viewed while it passes through.
+ */
+class CapturingServerHttpRequest extends ServerHttpRequestDecorator {
+
+    private final CaptureBuffer capture;
+
+    CapturingServerHttpRequest(ServerHttpRequest delegate, SlabPool pool) {
+        super(delegate);
+        this.capture = new CaptureBuffer(pool);
+    }
+
+    @Override
+    public Flux<DataBuffer> getBody() {
+        return super.getBody().doOnNext(this::capture);
+    }
+
+    /**
+     * Captured body, no copy is made. Valid until the capture is released.
+     */
+    ByteBuffer getContent() {
+        return capture.content();
+    }
+
+    CaptureBuffer getCapture() {
+        return capture;
+    }
+
+    private void capture(DataBuffer buffer) {
+        ReactiveUtils.capture(buffer, capture);
+    }
+
+}
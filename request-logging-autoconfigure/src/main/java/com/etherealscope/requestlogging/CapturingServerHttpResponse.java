@@ -0,0 +1,65 @@
+package com.etherealscope.requestlogging;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.util.function.Predicate;
+
+import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
+
+/**
+ * Copies the first bytes of the body data buffers, up to the slab size, as they are written to the connection.
+ * Buffers are neither joined nor retained, each one is only viewed while it passes through.
+ * Whether the body is captured at all is decided by its content type once the first buffer is written.
+ */
+class CapturingServerHttpResponse extends ServerHttpResponseDecorator {
+
+    private final CaptureBuffer capture;
+    private final Predicate<String> captureContentType;
+    private Boolean capturing;
+
+    CapturingServerHttpResponse(ServerHttpResponse delegate, SlabPool pool, Predicate<String> captureContentType) {
+        super(delegate);
+        this.capture = new CaptureBuffer(pool);
+        this.captureContentType = captureContentType;
+    }
+
+    @Override
+    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+        return super.writeWith(Flux.<DataBuffer>from(body).doOnNext(this::capture));
+    }
+
+    @Override
+    public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+        return super.writeAndFlushWith(Flux.<Publisher<? extends DataBuffer>>from(body)
+                .map(part -> Flux.<DataBuffer>from(part).doOnNext(this::capture)));
+    }
+
+    /**
+     * Captured body, no copy is made. Valid until the capture is released.
+     */
+    ByteBuffer getContent() {
+        return capture.content();
+    }
+
+    CaptureBuffer getCapture() {
+        return capture;
+    }
+
+    private void capture(DataBuffer buffer) {
+        if (capturing == null) {
+            capturing = captureContentType.test(getHeaders().getFirst(CONTENT_TYPE));
+        }
+        if (capturing) {
+            ReactiveUtils.capture(buffer, capture);
+        } else {
+            capture.skip(buffer.readableByteCount());
+        }
+    }
+
+}
@@ -1,53 +1,90 @@
 package com.etherealscope.requestlogging;
 
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.util.AntPathMatcher;
 
-import java.util.Enumeration;
-import java.util.Iterator;
+import java.nio.ByteBuffer;
 import java.util.List;
-import java.util.Spliterator;
-import java.util.Spliterators;
-import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
-
-import static com.etherealscope.requestlogging.StatusCode.SC_1XX;
-import static com.etherealscope.requestlogging.StatusCode.SC_2XX;
-import static com.etherealscope.requestlogging.StatusCode.SC_3XX;
-import static com.etherealscope.requestlogging.StatusCode.SC_4XX;
-import static com.etherealscope.requestlogging.StatusCode.SC_5XX;
-import static com.etherealscope.requestlogging.StatusCode.SC_ANY;
-import static java.lang.Math.min;
-import static java.nio.charset.StandardCharsets.UTF_8;
-import static java.util.Arrays.asList;
 
 @Slf4j
 class CommonUtils {
 
     static final String NOTHING = "[nothing]";
     static final AntPathMatcher MATCHER = new AntPathMatcher();
+    /**
+     * Http methods known to {@link HttpMethod}, indexed by {@link #methodIndex(String)}.
+     */
+    static final HttpMethod[] METHODS = HttpMethod.values();
+
+    /**
+     * Moves the exclusive end index back, so that no multi byte UTF-8 character is cut in half.
+     */
+    static int utf8Boundary(ByteBuffer bytes, int from, int to) {
+        return utf8Boundary(bytes, from, to, false);
+    }
+
+    /**
+     * Like {@link #utf8Boundary(ByteBuffer, int, int)}, when the bytes were {@code truncated} the limit is not taken
+     * for a boundary, a character whose lead byte is there but not all of its continuation bytes is cut off.
+     */
+    static int utf8Boundary(ByteBuffer bytes, int from, int to, boolean truncated) {
+        if (to < bytes.limit()) {
+            while (to > from && (bytes.get(to) & 0xC0) == 0x80) {
+                to--;
+            }
+            return to;
+        }
+        if (!truncated || to <= from) {
+            return to;
+        }
+        int lead = to - 1;
+        while (lead > from && (bytes.get(lead) & 0xC0) == 0x80) {
+            lead--;
+        }
+        return lead + utf8Length(bytes.get(lead)) > to ? lead : to;
+    }
+
+    /**
+     * Number of bytes of the character starting with the lead byte, 1 for anything not leading a multi byte one.
+     */
+    private static int utf8Length(byte lead) {
+        if ((lead & 0xE0) == 0xC0) {
+            return 2;
+        }
+        if ((lead & 0xF0) == 0xE0) {
+            return 3;
+        }
+        if ((lead & 0xF8) == 0xF0) {
+            return 4;
+        }
+        return 1;
+    }
 
-    static String byteArrayToString(byte[] byteArray, int maxLength) {
-        if (byteArray != null && byteArray.length > 0) {
-            int length = min(byteArray.length, maxLength);
-            return new String(byteArray, 0, length, UTF_8);
+    static boolean regionEquals(ByteBuffer bytes, int from, int to, byte[] expected) {
+        if (to - from != expected.length) {
+            return false;
         }
-        return NOTHING;
+        for (int i = 0; i < expected.length; i++) {
+            if (bytes.get(from + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    static <T> Stream<T> enumerationAsStream(Enumeration<T> e) {
-        return StreamSupport.stream(
-                Spliterators.spliteratorUnknownSize(
-                        new Iterator<T>() {
-                            public T next() {
-                                return e.nextElement();
-                            }
-                            public boolean hasNext() {
-                                return e.hasMoreElements();
-                            }
-                        },
-                        Spliterator.ORDERED), false);
+    /**
+     * Index of the first occurrence of the byte between the absolute indexes, or {@code to} when there is none.
+     */
+    static int indexOf(ByteBuffer bytes, int from, int to, byte b) {
+        for (int i = from; i < to; i++) {
+            if (bytes.get(i) == b) {
+                return i;
+            }
+        }
+        return to;
     }
 
     static boolean servletPathEnabled(String servletPath, String[] whiteList, String[] blackList) {
@@ -70,31 +107,62 @@ class CommonUtils {
         return true;
     }
 
-    static boolean shouldLogStatusCode(HttpStatus httpStatus, StatusCode[] codes) {
-        if (httpStatus == null) {
-            return true;
-        }
-        List<StatusCode> codeList = asList(codes);
-        if (codeList.contains(SC_ANY)) {
-            return true;
+    static boolean contentTypeEnabled(String contentType, String[] whiteList, String[] blackList) {
+        if (whiteList.length > 0) {
+            for (String s : whiteList) {
+                if (contentType != null && contentType.contains(s)) {
+                    return true;
+                }
+            }
+            return false;
         }
-        if (codeList.contains(SC_1XX) && httpStatus.is1xxInformational()) {
-            return true;
+        for (String s : blackList) {
+            if (s != null && contentType != null && contentType.contains(s)) {
+                return false;
+            }
         }
-        if (codeList.contains(SC_2XX) && httpStatus.is2xxSuccessful()) {
+        return true;
+    }
 
+    /**
+     * Position of the method in {@link #METHODS}, the length of it for methods not known to {@link HttpMethod}.
+     * Compares names rather than using the ordinal, which {@link HttpMethod} does not have from Spring 6.
+     */
+    static int methodIndex(String method) {
+        for (int i = 0; i < METHODS.length; i++) {
+            if (METHODS[i].name().equals(method)) {
+                return i;
+            }
         }
-        if (codeList.contains(SC_3XX) && httpStatus.is3xxRedirection()) {
-            return true;
+        return METHODS.length;
+    }
+
+    /**
+     * Appends nanoseconds as milliseconds with three decimals, like 12.345.
+     */
+    static StringBuilder appendMillis(StringBuilder sb, long nanos) {
+        long micros = nanos / 1000;
+        long fraction = micros % 1000;
+        sb.append(micros / 1000).append('.');
+        if (fraction < 100) {
+            sb.append('0');
         }
-        if (codeList.contains(SC_4XX) && httpStatus.is4xxClientError()
-        ) {
-            return true;
+        if (fraction < 10) {
+            sb.append('0');
         }
-        if (codeList.contains(SC_5XX) && httpStatus.is5xxServerError()) {
-            return true;
+        return sb.append(fraction);
+    }
+
+    /**
+     * Charset of the content type header, null when there is none or it cannot be parsed.
+     */
+    static String characterEncoding(HttpHeaders headers) {
+        try {
+            MediaType contentType = headers.getContentType();
+            return contentType != null && contentType.getCharset() != null ? contentType.getCharset().name() : null;
+        } catch (IllegalArgumentException e) {
+            return null;
         }
-        return false;
     }
 
 }
@@ -0,0 +1,50 @@
+package com.etherealscope.requestlogging;
+
+import com.etherealscope.requestlogging.RequestLoggingProperties.Mask;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.etherealscope.requestlogging.CommonUtils.regionEquals;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Mask compiled once at startup. Json field, query param and xml element names are kept as UTF-8 bytes,
+ * so the redactors compare them with the raw body without decoding it.
+ */
+@Getter
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+class CompiledMask {
+
+    Mask mask;
+    byte[][] jsonFields;
+    byte[][] queryParams;
+    byte[][] xmlElements;
+
+    CompiledMask(Mask mask) {
+        this.mask = mask;
+        this.jsonFields = toBytes(mask.getMaskedJsonFields());
+        this.queryParams = toBytes(mask.getMaskedQueryParams());
+        this.xmlElements = toBytes(mask.getMaskedXmlElements());
+    }
+
+    static boolean isMaskedXmlElement(ByteBuffer body, int from, int to, List<CompiledMask> masks) {
+        for (CompiledMask mask : masks) {
+            for (byte[] element : mask.xmlElements) {
+                if (regionEquals(body, from, to, element)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static byte[][] toBytes(String[] names) {
+        return Stream.of(names).map(n -> n.getBytes(UTF_8)).toArray(byte[][]::new);
+    }
+
+}
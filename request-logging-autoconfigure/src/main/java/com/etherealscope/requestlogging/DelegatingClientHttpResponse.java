@@ -0,0 +1,48 @@
+package com.etherealscope.requestlogging;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+
+/**
+ * Passes the status and headers of a {@code RestTemplate} response through. The status methods of
+ * {@link ClientHttpResponse} differ between Spring 5 and Spring 6, the jakarta variant has its own copy.
+ */
+abstract class DelegatingClientHttpResponse implements ClientHttpResponse {
+
+    protected final ClientHttpResponse delegate;
+
+    DelegatingClientHttpResponse(ClientHttpResponse delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public HttpStatus getStatusCode() throws IOException {
+        return delegate.getStatusCode();
+    }
+
+    @Override
+    public int getRawStatusCode() throws IOException {
+        return delegate.getRawStatusCode();
+    }
+
+    @Override
+    public String getStatusText() throws IOException {
+        return delegate.getStatusText();
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        return delegate.getHeaders();
+    }
+
+    /**
+     * Status code, also of statuses not known to {@link HttpStatus}.
+     */
+    int status() throws IOException {
+        return delegate.getRawStatusCode();
+    }
+
+}
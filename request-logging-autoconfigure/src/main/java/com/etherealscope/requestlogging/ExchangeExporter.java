@@ -0,0 +1,343 @@
+package com.etherealscope.requestlogging;
+
+import com.etherealscope.requestlogging.RequestLoggingProperties.Export;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+import static com.etherealscope.requestlogging.ExportCompression.GZIP;
+
+/**
+ * Sends exchanges to a log collector instead of the log. Json lines encoded by the logging thread are handed over
+ * through a bounded lock-free queue to a single background worker, which collects them into batches by count
+ * and time, compresses every batch and sends it through the {@link ExportTransport}, so neither appenders
+ * nor the network are touched per exchange.
+ * <p>
+ * A failed batch is retried with exponential backoff. Meanwhile the following batches are spilled to disk
+ * when a spill directory is configured and sent in order once the collector is back, otherwise the worker
+ * stops taking exchanges off the queue and new ones are dropped once it is full. A batch the collector
+ * rejected for good is dropped rather than retried.
+ */
+@Slf4j
+class ExchangeExporter implements Closeable {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+    private static final int BATCH_BUFFER_SIZE = 64 * 1024;
+
+    private final URI url;
+    private final ExportTransport transport;
+    private final ExportSpool spool;
+    private final boolean gzip;
+    private final int batchSize;
+    private final long batchIntervalNanos;
+    private final int capacity;
+    private final long retryBackoffNanos;
+    private final long maxRetryBackoffNanos;
+    private final Queue<PayloadBuffer> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean workerParked = new AtomicBoolean();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final Thread worker;
+    private volatile boolean running = true;
+    /**
+     * Batch the worker could not send yet, only touched by the worker like the fields below.
+     */
+    private Batch pending;
+    private long backoffNanos;
+    private long nextAttemptNanos;
+    private boolean rejecting;
+
+    ExchangeExporter(Export config) {
+        this.url = config.getUrl();
+        this.transport = ExportTransport.create(config);
+        this.spool = config.getSpillDirectory() != null ? new ExportSpool(config) : null;
+        this.gzip = config.getCompression() == GZIP;
+        this.batchSize = config.getBatchSize();
+        this.batchIntervalNanos = config.getBatchInterval().toNanos();
+        this.capacity = config.getQueueCapacity();
+        this.retryBackoffNanos = config.getRetryBackoff().toNanos();
+        this.maxRetryBackoffNanos = config.getMaxRetryBackoff().toNanos();
+        this.nextAttemptNanos = System.nanoTime();
+        this.worker = new Thread(this::work, "request-logging-export");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Number of exchanges dropped because the queue was full, the collector was unavailable without spilling,
+     * the spill directory was full or the collector rejected them.
+     */
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Number of failed attempts to send a batch.
+     */
+    long getFailureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * Number of exchanges waiting to be batched.
+     */
+    int getQueueSize() {
+        return size.get();
+    }
+
+    /**
+     * Takes over the buffer holding one json encoded exchange, it is released once batched or dropped.
+     */
+    void export(PayloadBuffer line) {
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            dropped.increment();
+            line.release();
+            return;
+        }
+        queue.offer(line);
+        if (size.get() >= batchSize && workerParked.get() && workerParked.compareAndSet(true, false)) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    /**
+     * Sends what is queued, batches which cannot be sent are spilled or dropped.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        transport.close();
+        if (getDroppedCount() > 0) {
+            log.warn("Request logging export to {} dropped {} exchanges", url, getDroppedCount());
+        }
+    }
+
+    private void work() {
+        while (running) {
+            if (pending == null) {
+                pending = collect();
+            }
+            if (pending == null && (spool == null || spool.isEmpty())) {
+                continue;
+            }
+            long wait = nextAttemptNanos - System.nanoTime();
+            if (wait <= 0) {
+                send();
+            } else if (pending != null && spool != null) {
+                defer(pending);
+                pending = null;
+            } else if (pending != null) {
+                LockSupport.parkNanos(this, Math.min(wait, IDLE_PARK_NANOS));
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Collects queued exchanges into a batch until it is full or the batch interval since its first exchange passed.
+     *
+     * @return null when nothing was queued for a while
+     */
+    private Batch collect() {
+        BatchWriter writer = null;
+        long deadline = 0;
+        while (true) {
+            PayloadBuffer line = queue.poll();
+            if (line != null) {
+                size.decrementAndGet();
+                if (writer == null) {
+                    writer = new BatchWriter(gzip);
+                    deadline = System.nanoTime() + batchIntervalNanos;
+                }
+                writer.write(line);
+                if (writer.records >= batchSize) {
+                    return writer.finish();
+                }
+                continue;
+            }
+            long wait = writer != null ? deadline - System.nanoTime() : IDLE_PARK_NANOS;
+            if (!running || wait <= 0) {
+                return writer != null ? writer.finish() : null;
+            }
+            workerParked.set(true);
+            if (queue.isEmpty() && running) {
+                LockSupport.parkNanos(this, wait);
+            }
+            workerParked.set(false);
+            if (writer == null && queue.isEmpty()) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Sends the spilled batches oldest first, then the pending one. Stops at the first failure,
+     * the pending batch is spilled then, so it stays behind the older ones.
+     */
+    private void send() {
+        while (spool != null && !spool.isEmpty()) {
+            Batch spilled;
+            try {
+                spilled = spool.peek();
+            } catch (IOException e) {
+                log.warn("Cannot read spilled request logging export batch, dropping it", e);
+                discardSpilled();
+                continue;
+            }
+            if (!deliver(spilled)) {
+                if (pending != null) {
+                    defer(pending);
+                    pending = null;
+                }
+                return;
+            }
+            discardSpilled();
+        }
+        if (pending != null && deliver(pending)) {
+            pending = null;
+        } else if (pending != null && spool != null) {
+            defer(pending);
+            pending = null;
+        }
+    }
+
+    /**
+     * @return whether the batch is done with, sent or rejected for good
+     */
+    private boolean deliver(Batch batch) {
+        try {
+            transport.send(batch.getContent());
+        } catch (ExportTransport.Rejected e) {
+            dropped.add(batch.getRecords());
+            if (!rejecting) {
+                log.warn("Exchanges rejected by {}, dropping them: {}", url, e.getMessage());
+                rejecting = true;
+            }
+            return true;
+        } catch (IOException e) {
+            failures.increment();
+            if (backoffNanos == 0) {
+                log.warn("Cannot export exchanges to {}, retrying: {}", url, e.toString());
+            }
+            backoffNanos = backoffNanos == 0 ? retryBackoffNanos : Math.min(backoffNanos * 2, maxRetryBackoffNanos);
+            nextAttemptNanos = System.nanoTime() + backoffNanos;
+            return false;
+        }
+        rejecting = false;
+        if (backoffNanos != 0) {
+            log.info("Export of exchanges to {} resumed", url);
+            backoffNanos = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Spills the batch, or drops it without a spill directory.
+     */
+    private void defer(Batch batch) {
+        if (spool == null) {
+            dropped.add(batch.getRecords());
+            return;
+        }
+        try {
+            dropped.add(spool.write(batch));
+        } catch (IOException e) {
+            dropped.add(batch.getRecords());
+            log.warn("Cannot spill request logging export batch", e);
+        }
+    }
+
+    private void discardSpilled() {
+        try {
+            spool.remove();
+        } catch (IOException e) {
+            log.warn("Cannot delete spilled request logging export batch", e);
+        }
+    }
+
+    /**
+     * Sends the pending and queued batches once more when closing, unless the collector is known to be unavailable
+     * or older batches are spilled, which are left for the next run then.
+     */
+    private void flush() {
+        Batch batch = pending != null ? pending : collect();
+        while (batch != null) {
+            boolean sendable = (spool == null || spool.isEmpty()) && System.nanoTime() - nextAttemptNanos >= 0;
+            if (!sendable || !deliver(batch)) {
+                defer(batch);
+            }
+            batch = collect();
+        }
+        pending = null;
+    }
+
+    /**
+     * Compressed json lines of a batch and the number of exchanges in it.
+     */
+    @Value
+    static class Batch {
+
+        byte[] content;
+        int records;
+    }
+
+    private static final class BatchWriter {
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(BATCH_BUFFER_SIZE);
+        final OutputStream out;
+        int records;
+
+        BatchWriter(boolean gzip) {
+            try {
+                this.out = gzip ? new GZIPOutputStream(bytes, BATCH_BUFFER_SIZE) : bytes;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void write(PayloadBuffer line) {
+            try {
+                line.writeTo(out);
+                out.write('\n');
+                records++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                line.release();
+            }
+        }
+
+        Batch finish() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new Batch(bytes.toByteArray(), records);
+        }
+    }
+
+}
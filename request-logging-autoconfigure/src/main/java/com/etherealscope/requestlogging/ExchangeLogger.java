@@ -0,0 +1,297 @@
+package com.etherealscope.requestlogging;
+
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+import static com.etherealscope.requestlogging.CommonUtils.appendMillis;
+import static com.etherealscope.requestlogging.MaskUtils.MASK;
+import static com.etherealscope.requestlogging.MaskUtils.isMaskedQueryParam;
+import static com.etherealscope.requestlogging.MaskUtils.maskBody;
+import static com.etherealscope.requestlogging.OutputFormat.JSON;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Masks and formats exchange records and writes them to the log. Uses the logger of {@link RequestLoggingFilter},
+ * so existing log level configuration keeps working whether records are logged on the request thread or not.
+ * Outbound exchanges go to the logger of {@link RequestLoggingClient}. With export enabled, exchanges are encoded
+ * as json lines and handed to the {@link ExchangeExporter} instead, written to the log only when asked to.
+ */
+@Slf4j(topic = "com.etherealscope.requestlogging.RequestLoggingFilter")
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+class ExchangeLogger {
+
+    private static final String BEFORE_REQUEST_MESSAGE = "--- REQUEST START ---";
+    private static final String AFTER_REQUEST_MESSAGE = "--- REQUEST END ---";
+    private static final String BEFORE_RESPONSE_MESSAGE = "--- RESPONSE START ---";
+    private static final String AFTER_RESPONSE_MESSAGE = "--- RESPONSE END ---";
+    private static final Logger CLIENT_LOG = LoggerFactory.getLogger(RequestLoggingClient.LOGGER_NAME);
+
+    RequestLoggingProperties props;
+    PayloadJournal journal;
+    BodyDedup dedup;
+    JsonLogEncoder jsonEncoder;
+    ExchangeExporter exporter;
+
+    ExchangeLogger(RequestLoggingProperties props) {
+        this.props = props;
+        this.journal = props.getJournal().isEnabled() ? new PayloadJournal(props.getJournal()) : null;
+        this.dedup = props.getDedup().isEnabled() ? new BodyDedup(props.getDedup()) : null;
+        this.jsonEncoder = new JsonLogEncoder(props, journal, dedup);
+        this.exporter = props.getExport().isEnabled() ? new ExchangeExporter(props.getExport()) : null;
+    }
+
+    /**
+     * Null when dedup is not enabled.
+     */
+    BodyDedup getDedup() {
+        return dedup;
+    }
+
+    /**
+     * Null when export is not enabled.
+     */
+    ExchangeExporter getExporter() {
+        return exporter;
+    }
+
+    void close() {
+        if (exporter != null) {
+            exporter.close();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    void log(ExchangeRecord record) {
+        if (exporter != null) {
+            export(record);
+            if (!props.getExport().isLog()) {
+                return;
+            }
+        }
+        boolean mdc = props.getOutput().isMdc();
+        if (mdc) {
+            putMdc(record);
+        }
+        try {
+            Logger logger = record.isOutbound() ? CLIENT_LOG : log;
+            if (props.getOutput().getFormat() == JSON) {
+                logJson(record, logger);
+            } else {
+                logger.debug(format(record));
+            }
+        } finally {
+            if (mdc) {
+                removeMdc();
+            }
+        }
+    }
+
+    private void logJson(ExchangeRecord record, Logger logger) {
+        PayloadBuffer out = PayloadBuffer.acquire();
+        try {
+            jsonEncoder.encode(record, out);
+            logger.debug(out.toString(UTF_8));
+        } finally {
+            out.release();
+        }
+    }
+
+    /**
+     * The encoded buffer is handed over to the exporter, which releases it.
+     */
+    private void export(ExchangeRecord record) {
+        PayloadBuffer out = PayloadBuffer.acquire();
+        try {
+            jsonEncoder.encodeExported(record, out);
+        } catch (RuntimeException e) {
+            out.release();
+            throw e;
+        }
+        exporter.export(out);
+    }
+
+    private void putMdc(ExchangeRecord record) {
+        JsonFieldNames names = props.getOutput().getFieldNames();
+        RequestSnapshot request = record.getRequest();
+        if (request != null) {
+            putMdc(names.getRequestMethod(), request.getMethod());
+            putMdc(names.getRequestUrl(), request.getUrl());
+            putMdc(names.getRequestIpAddress(), request.getIpAddress());
+            putMdc(names.getRequestContentType(), request.getContentType());
+            putMdc(names.getRequestContentLength(), Long.toString(request.getContentLength()));
+        }
+        ResponseSnapshot response = record.getResponse();
+        if (response != null && response.getFailure() != null) {
+            putMdc(names.getResponseFailure(), response.getFailure());
+        } else if (response != null) {
+            putMdc(names.getResponseStatusCode(), Integer.toString(response.getStatus()));
+            putMdc(names.getResponseContentType(), response.getContentType());
+        }
+    }
+
+    private static void putMdc(String key, String value) {
+        if (value != null) {
+            MDC.put(key, value);
+        }
+    }
+
+    private void removeMdc() {
+        JsonFieldNames names = props.getOutput().getFieldNames();
+        MDC.remove(names.getRequestMethod());
+        MDC.remove(names.getRequestUrl());
+        MDC.remove(names.getRequestIpAddress());
+        MDC.remove(names.getRequestContentType());
+        MDC.remove(names.getRequestContentLength());
+        MDC.remove(names.getResponseStatusCode());
+        MDC.remove(names.getResponseContentType());
+        MDC.remove(names.getResponseFailure());
+    }
+
+    String format(ExchangeRecord record) {
+        StringBuilder sb = new StringBuilder(512);
+        if (record.getRequest() != null) {
+            appendRequest(sb, record.getRequest(), record.getPlan().getRequestMasks(), record.getPlan().getRequestMaxPayloadSize());
+        }
+        if (record.getResponse() != null) {
+            appendResponse(sb, record.getResponse(), record.getPlan().getResponseMasks(), record.getPlan().getResponseMaxPayloadSize());
+        }
+        if (record.getElapsedNanos() >= 0) {
+            appendTimeElapsed(sb, record.getElapsedNanos());
+        }
+        return sb.toString();
+    }
+
+    private void appendRequest(StringBuilder sb, RequestSnapshot request, List<CompiledMask> masks, int maxPayloadSize) {
+        sb.append('\n').append(BEFORE_REQUEST_MESSAGE).append('\n');
+        sb.append("Method: ").append(request.getMethod()).append('\n');
+        sb.append("Url: ").append(request.getUrl()).append('\n');
+        if (request.getQueryParams() != null) {
+            sb.append("Query-Params: ");
+            appendQueryParams(sb, request.getQueryParams(), masks);
+            sb.append('\n');
+        }
+        if (request.getHeaders() != null) {
+            sb.append("Headers: ");
+            appendHeaders(sb, request.getHeaders());
+            sb.append('\n');
+        }
+        if (request.getIpAddress() != null) {
+            sb.append("Ip-Address: ").append(request.getIpAddress()).append('\n');
+        }
+        sb.append("Content-Type: ").append(request.getContentType()).append('\n');
+        sb.append("Content-Length: ").append(request.getContentLength()).append('\n');
+        sb.append("Character-Encoding: ").append(request.getCharacterEncoding()).append('\n');
+        if (request.getBody() != null) {
+            appendBody(sb, request.getBody(), maxPayloadSize, request.getContentType(), masks);
+        }
+        sb.append(AFTER_REQUEST_MESSAGE);
+    }
+
+    private void appendResponse(StringBuilder sb, ResponseSnapshot response, List<CompiledMask> masks, int maxPayloadSize) {
+        sb.append('\n').append(BEFORE_RESPONSE_MESSAGE).append('\n');
+        if (response.getFailure() != null) {
+            sb.append("Failure: ").append(response.getFailure()).append('\n');
+            sb.append(AFTER_RESPONSE_MESSAGE);
+            return;
+        }
+        sb.append("Status-Code: ").append(response.getStatus()).append('\n');
+        sb.append("Content-Type: ").append(response.getContentType()).append('\n');
+        sb.append("Character-Encoding: ").append(response.getCharacterEncoding()).append('\n');
+        if (response.getHeaders() != null) {
+            sb.append("Headers: ");
+            appendHeaders(sb, response.getHeaders());
+            sb.append('\n');
+        }
+        if (response.getBody() != null) {
+            appendBody(sb, response.getBody(), maxPayloadSize, response.getContentType(), masks);
+        }
+        sb.append(AFTER_RESPONSE_MESSAGE);
+    }
+
+    private void appendBody(StringBuilder sb, ByteBuffer body, int maxLength, String contentType, List<CompiledMask> masks) {
+        JournalRef ref = journal != null ? journal.spill(body, maxLength, contentType, masks) : null;
+        if (ref != null) {
+            sb.append("Body-Ref: ").append(ref).append('\n');
+        } else if (dedup == null) {
+            sb.append("Body: ").append(maskBody(body, maxLength, contentType, masks)).append('\n');
+        } else {
+            appendDeduplicatedBody(sb, body, maxLength, contentType, masks);
+        }
+    }
+
+    /**
+     * The body is followed by its hash, or replaced by it when it was logged within the dedup window.
+     */
+    private void appendDeduplicatedBody(StringBuilder sb, ByteBuffer body, int maxLength, String contentType, List<CompiledMask> masks) {
+        PayloadBuffer masked = PayloadBuffer.acquire();
+        try {
+            maskBody(body, maxLength, contentType, masks, masked);
+            long hash = dedup.hash(masked);
+            if (hash == 0 || !dedup.isRepeated(hash)) {
+                sb.append("Body: ").append(masked.toString(UTF_8)).append('\n');
+            }
+            if (hash != 0) {
+                sb.append("Body-Hash: ").append(BodyDedup.format(hash)).append('\n');
+            }
+        } finally {
+            masked.release();
+        }
+    }
+
+    /**
+     * Milliseconds with microsecond precision, formatted without {@link String#format}.
+     */
+    private static void appendTimeElapsed(StringBuilder sb, long elapsedNanos) {
+        appendMillis(sb.append('\n').append("Time-Elapsed: "), elapsedNanos).append(" ms");
+    }
+
+    private static void appendQueryParams(StringBuilder sb, Map<String, String[]> queryParams, List<CompiledMask> masks) {
+        sb.append('{');
+        boolean first = true;
+        for (Map.Entry<String, String[]> param : queryParams.entrySet()) {
+            if (!first) {
+                sb.append(", ");
+            }
+            first = false;
+            sb.append(param.getKey()).append("=[");
+            if (isMaskedQueryParam(param.getKey(), masks)) {
+                sb.append(MASK);
+            } else {
+                String[] values = param.getValue();
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        sb.append(", ");
+                    }
+                    sb.append(values[i]);
+                }
+            }
+            sb.append(']');
+        }
+        sb.append('}');
+    }
+
+    /**
+     * Header values are masked when snapshotted.
+     */
+    private static void appendHeaders(StringBuilder sb, String[] headers) {
+        sb.append('{');
+        for (int i = 0; i < headers.length; i += 2) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(headers[i]).append('=').append(headers[i + 1]);
+        }
+        sb.append('}');
+    }
+
+}
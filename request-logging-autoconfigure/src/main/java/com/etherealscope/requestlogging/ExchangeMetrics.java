@@ -0,0 +1,33 @@
+package com.etherealscope.requestlogging;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Records timing and payload sizes of every exchange passing the filter, whether it is logged or not.
+ * Keeps the filter free of metrics library classes, so it works without Micrometer on the classpath.
+ */
+interface ExchangeMetrics {
+
+    ExchangeMetrics NONE = (request, response, status, elapsedNanos, overheadNanos) -> { };
+
+    /**
+     * @param status status the exchange completed with, 500 when it failed with an exception
+     * @param elapsedNanos whole exchange duration
+     * @param overheadNanos time spent in the filter itself
+     */
+    void record(HttpServletRequest request, HttpServletResponse response, int status, long elapsedNanos, long overheadNanos);
+
+    default void bind(AsyncExchangeLogger asyncLogger) {
+    }
+
+    default void bind(ExchangeExporter exporter) {
+    }
+
+    default void bind(BodyDedup dedup) {
+    }
+
+    default void bind(String name, SlabPool pool) {
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.etherealscope.requestlogging;
+
+import lombok.Value;
+
+/**
+ * Immutable snapshot of one request and response exchange, handed from the filter or client to the logger.
+ * Either part is null when it is not going to be logged, elapsed time is negative when not included.
+ * Bodies are views of pooled captures, which have to be released once the record is logged or dropped.
+ */
+@Value
+class ExchangeRecord {
+
+    LoggingPlan plan;
+    RequestSnapshot request;
+    ResponseSnapshot response;
+    long elapsedNanos;
+    CaptureBuffer requestCapture;
+    CaptureBuffer responseCapture;
+    /**
+     * Exchange sent by an http client rather than received by a filter, logged by the client logger.
+     */
+    boolean outbound;
+
+    /**
+     * Gives the captured bodies back to their pools, the snapshots must not be used afterwards.
+     */
+    void release() {
+        release(requestCapture, responseCapture);
+    }
+
+    static void release(CaptureBuffer requestCapture, CaptureBuffer responseCapture) {
+        if (requestCapture != null) {
+            requestCapture.release();
+        }
+        if (responseCapture != null) {
+            responseCapture.release();
+        }
+    }
+
+}
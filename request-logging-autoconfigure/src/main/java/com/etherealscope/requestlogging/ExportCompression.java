@@ -0,0 +1,17 @@
+package com.etherealscope.requestlogging;
+
+/**
+ * Compression of a batch of exported exchanges.
+ */
+public enum ExportCompression {
+
+    /**
+     * Plain json lines.
+     */
+    NONE,
+    /**
+     * Every batch a complete gzip member.
+     */
+    GZIP
+
+}
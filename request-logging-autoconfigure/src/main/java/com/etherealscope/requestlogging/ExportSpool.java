@@ -0,0 +1,136 @@
+package com.etherealscope.requestlogging;
+
+import com.etherealscope.requestlogging.ExchangeExporter.Batch;
+import com.etherealscope.requestlogging.RequestLoggingProperties.Export;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.etherealscope.requestlogging.ExportCompression.GZIP;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.util.Comparator.comparingLong;
+
+/**
+ * Batches waiting on disk while the collector is unavailable, one file per batch, sent oldest first.
+ * Files left by a previous run with the same compression are picked up, so batches spilled before
+ * a restart are sent as well. When the spool grows above its max size, the oldest batches are deleted.
+ * Used by the single worker of {@link ExchangeExporter} only.
+ */
+class ExportSpool {
+
+    private static final Pattern FILE_NAME = Pattern.compile("export-(\\d{12})-(\\d+)\\.ndjson(\\.gz)?");
+
+    private final Path directory;
+    private final long maxSize;
+    private final String suffix;
+    private final Deque<Path> files = new ArrayDeque<>();
+    private long size;
+    private long sequence;
+
+    ExportSpool(Export config) {
+        this.directory = Paths.get(config.getSpillDirectory());
+        this.maxSize = config.getSpillMaxSize().toBytes();
+        this.suffix = config.getCompression() == GZIP ? ".ndjson.gz" : ".ndjson";
+        try {
+            Files.createDirectories(directory);
+            for (Path file : existing()) {
+                files.add(file);
+                size += Files.size(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open request logging export spool in " + directory, e);
+        }
+    }
+
+    boolean isEmpty() {
+        return files.isEmpty();
+    }
+
+    /**
+     * The oldest batch, null when the spool is empty.
+     */
+    Batch peek() throws IOException {
+        Path file = files.peekFirst();
+        return file != null ? new Batch(Files.readAllBytes(file), recordsOf(file)) : null;
+    }
+
+    /**
+     * Deletes the oldest batch.
+     *
+     * @return number of exchanges in it
+     */
+    int remove() throws IOException {
+        Path file = files.removeFirst();
+        try {
+            size -= Files.size(file);
+            Files.delete(file);
+        } catch (NoSuchFileException e) {
+            // deleted by someone else
+        }
+        return recordsOf(file);
+    }
+
+    /**
+     * Appends the batch, written to a temporary file first, so a crash never leaves half a batch behind.
+     *
+     * @return number of exchanges in the oldest batches deleted to stay within the max size
+     */
+    int write(Batch batch) throws IOException {
+        Path file = directory.resolve(String.format("export-%012d-%d%s", ++sequence, batch.getRecords(), suffix));
+        Path temporary = directory.resolve(file.getFileName() + ".tmp");
+        Files.write(temporary, batch.getContent());
+        Files.move(temporary, file, ATOMIC_MOVE);
+        files.addLast(file);
+        size += batch.getContent().length;
+        int deleted = 0;
+        while (size > maxSize && files.size() > 1) {
+            deleted += remove();
+        }
+        return deleted;
+    }
+
+    private List<Path> existing() throws IOException {
+        List<Path> existing = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (FILE_NAME.matcher(name).matches()) {
+                    sequence = Math.max(sequence, sequenceOf(file));
+                    if (name.endsWith(suffix)) {
+                        existing.add(file);
+                    }
+                }
+            }
+        }
+        existing.sort(comparingLong(ExportSpool::sequenceOf));
+        return existing;
+    }
+
+    private static long sequenceOf(Path file) {
+        return Long.parseLong(match(file).group(1));
+    }
+
+    private static int recordsOf(Path file) {
+        return Integer.parseInt(match(file).group(2));
+    }
+
+    private static Matcher match(Path file) {
+        Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+        if (!matcher.matches()) {
+            throw new IllegalStateException("Not a spooled batch " + file);
+        }
+        return matcher;
+    }
+
+}
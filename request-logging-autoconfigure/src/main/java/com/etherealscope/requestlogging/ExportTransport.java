@@ -0,0 +1,184 @@
+package com.etherealscope.requestlogging;
+
+import com.etherealscope.requestlogging.RequestLoggingProperties.Export;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+
+import static com.etherealscope.requestlogging.ExportCompression.GZIP;
+
+/**
+ * Sends batches of json lines to the collector, used by the single worker of {@link ExchangeExporter}.
+ */
+interface ExportTransport extends Closeable {
+
+    /**
+     * @throws Rejected    when the collector refused the batch for good, it is dropped then
+     * @throws IOException when the collector did not take the batch, it is retried then
+     */
+    void send(byte[] batch) throws IOException;
+
+    @Override
+    void close();
+
+    static ExportTransport create(Export config) {
+        if ("tcp".equals(config.getUrl().getScheme())) {
+            return new Tcp(config);
+        }
+        return new Http(config);
+    }
+
+    /**
+     * Failure sending the batch again would not fix, like a malformed batch or missing credentials.
+     */
+    final class Rejected extends IOException {
+
+        Rejected(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Writes batches to one long lived socket, reconnecting after a failure. Plain json lines are written as they are,
+     * a gzip batch is framed by its length as a four byte big endian integer. A write only fails once the broken
+     * connection is noticed, so the batch written just before may be lost.
+     */
+    final class Tcp implements ExportTransport {
+
+        private static final int BUFFER_SIZE = 64 * 1024;
+
+        private final String host;
+        private final int port;
+        private final int timeoutMillis;
+        private final boolean framed;
+        private Socket socket;
+        private DataOutputStream out;
+
+        Tcp(Export config) {
+            this.host = config.getUrl().getHost();
+            this.port = config.getUrl().getPort();
+            this.timeoutMillis = (int) config.getTimeout().toMillis();
+            this.framed = config.getCompression() == GZIP;
+        }
+
+        @Override
+        public void send(byte[] batch) throws IOException {
+            try {
+                if (socket == null) {
+                    connect();
+                }
+                if (framed) {
+                    out.writeInt(batch.length);
+                }
+                out.write(batch);
+                out.flush();
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // nothing left to send on it
+                }
+                socket = null;
+                out = null;
+            }
+        }
+
+        /**
+         * Resolves the host again on every connect, so a collector moving to another address is followed.
+         */
+        private void connect() throws IOException {
+            Socket connecting = new Socket();
+            try {
+                connecting.connect(new InetSocketAddress(host, port), timeoutMillis);
+                out = new DataOutputStream(new BufferedOutputStream(connecting.getOutputStream(), BUFFER_SIZE));
+                socket = connecting;
+            } catch (IOException e) {
+                connecting.close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Posts every batch as an {@code application/x-ndjson} body. The JDK keeps the connection alive and reuses it
+     * for the next batch as long as responses are read to the end. A batch is taken on any 2xx status
+     * and rejected on a 4xx status other than 408 request timeout and 429 too many requests, which are retried.
+     */
+    final class Http implements ExportTransport {
+
+        private static final int REQUEST_TIMEOUT = 408;
+        private static final int TOO_MANY_REQUESTS = 429;
+
+        private final URL url;
+        private final int timeoutMillis;
+        private final boolean gzip;
+        private final byte[] drain = new byte[4096];
+
+        Http(Export config) {
+            try {
+                this.url = config.getUrl().toURL();
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Invalid export url " + config.getUrl(), e);
+            }
+            this.timeoutMillis = (int) config.getTimeout().toMillis();
+            this.gzip = config.getCompression() == GZIP;
+        }
+
+        @Override
+        public void send(byte[] batch) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            try {
+                connection.setConnectTimeout(timeoutMillis);
+                connection.setReadTimeout(timeoutMillis);
+                connection.setRequestMethod("POST");
+                connection.setRequestProperty("Content-Type", "application/x-ndjson");
+                if (gzip) {
+                    connection.setRequestProperty("Content-Encoding", "gzip");
+                }
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(batch.length);
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(batch);
+                }
+                int status = connection.getResponseCode();
+                try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                    if (in != null) {
+                        while (in.read(drain) >= 0) {
+                            // drained, so the connection is reused
+                        }
+                    }
+                }
+                if (status / 100 == 4 && status != REQUEST_TIMEOUT && status != TOO_MANY_REQUESTS) {
+                    throw new Rejected("Collector " + url + " rejected the batch with status " + status);
+                }
+                if (status / 100 != 2) {
+                    throw new IOException("Collector " + url + " responded with status " + status);
+                }
+            } catch (IOException e) {
+                connection.disconnect();
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
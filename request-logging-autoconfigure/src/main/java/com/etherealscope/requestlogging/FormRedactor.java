@@ -0,0 +1,93 @@
+package com.etherealscope.requestlogging;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static com.etherealscope.requestlogging.CommonUtils.indexOf;
+import static com.etherealscope.requestlogging.CommonUtils.utf8Boundary;
+import static com.etherealscope.requestlogging.MaskUtils.MASK;
+import static java.lang.Math.min;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Single pass redaction of form url encoded bodies over raw bytes. Field names are percent decoded
+ * while compared with the masked query params, so {@code pass%77ord} is masked like {@code password}.
+ * The values of masked fields are replaced by the mask, everything else is copied as it is.
+ */
+final class FormRedactor {
+
+    private static final byte[] MASK_BYTES = MASK.getBytes(UTF_8);
+
+    private FormRedactor() {
+    }
+
+    /**
+     * Writes at most {@code maxLength} bytes of the body, cut on a character boundary, to the output.
+     */
+    static void redact(ByteBuffer body, int maxLength, List<CompiledMask> masks, PayloadBuffer out) {
+        int start = body.position();
+        int end = utf8Boundary(body, start, min(body.limit(), start + maxLength));
+        int copyFrom = start;
+        int i = start;
+        while (i < end) {
+            int fieldEnd = indexOf(body, i, end, (byte) '&');
+            int equals = indexOf(body, i, fieldEnd, (byte) '=');
+            if (equals < fieldEnd && isMaskedField(body, i, equals, masks)) {
+                out.write(body, copyFrom, equals + 1).write(MASK_BYTES);
+                copyFrom = fieldEnd;
+            }
+            i = fieldEnd + 1;
+        }
+        out.write(body, copyFrom, end);
+    }
+
+    private static boolean isMaskedField(ByteBuffer body, int from, int to, List<CompiledMask> masks) {
+        for (CompiledMask mask : masks) {
+            for (byte[] param : mask.getQueryParams()) {
+                if (decodedEquals(body, from, to, param)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares the percent encoded name with the expected bytes, decoding it on the fly.
+     */
+    private static boolean decodedEquals(ByteBuffer body, int from, int to, byte[] expected) {
+        int k = 0;
+        int i = from;
+        while (i < to) {
+            int b = body.get(i);
+            if (b == '+') {
+                b = ' ';
+                i++;
+            } else if (b == '%' && i + 2 < to && hex(body.get(i + 1)) >= 0 && hex(body.get(i + 2)) >= 0) {
+                b = hex(body.get(i + 1)) << 4 | hex(body.get(i + 2));
+                i += 3;
+            } else {
+                i++;
+            }
+            if (k == expected.length || (expected[k] & 0xff) != (b & 0xff)) {
+                return false;
+            }
+            k++;
+        }
+        return k == expected.length;
+    }
+
+    private static int hex(byte c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.etherealscope.requestlogging;
+
+import lombok.experimental.FieldDefaults;
+import org.springframework.http.HttpHeaders;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.etherealscope.requestlogging.MaskUtils.MASK;
+import static java.util.Collections.addAll;
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Headers of a route to log, resolved once with its {@link LoggingPlan}. Header names are compared ignoring case.
+ * With a white list only the listed headers are looked up, values of masked headers are replaced when taken.
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+final class HeaderPlan {
+
+    String[] whiteList;
+    String[] blackList;
+    String[] masked;
+
+    HeaderPlan(String[] whiteList, String[] blackList, List<CompiledMask> masks) {
+        Set<String> masked = new LinkedHashSet<>();
+        for (CompiledMask mask : masks) {
+            addAll(masked, mask.getMask().getMaskedHeaders());
+        }
+        this.whiteList = whiteList;
+        this.blackList = blackList;
+        this.masked = masked.toArray(new String[0]);
+    }
+
+    boolean hasWhiteList() {
+        return whiteList.length > 0;
+    }
+
+    /**
+     * Header names to look up one by one, when {@link #hasWhiteList()}.
+     */
+    String[] getWhiteList() {
+        return whiteList;
+    }
+
+    boolean isSelected(String name) {
+        return whiteList.length > 0 ? contains(whiteList, name) : !contains(blackList, name);
+    }
+
+    boolean isMasked(String name) {
+        return contains(masked, name);
+    }
+
+    /**
+     * Adds a header taken from the request or response to the alternating names and values, masked if needed.
+     */
+    void add(List<String> headers, String name, String value) {
+        if (value != null) {
+            headers.add(name);
+            headers.add(isMasked(name) ? MASK : value);
+        }
+    }
+
+    /**
+     * First value of every selected header, as logged by the servlet filter.
+     */
+    String[] select(HttpHeaders headers) {
+        List<String> result = new ArrayList<>();
+        if (hasWhiteList()) {
+            for (String name : whiteList) {
+                add(result, name, headers.getFirst(name));
+            }
+        } else {
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                if (isSelected(header.getKey())) {
+                    add(result, header.getKey(), header.getValue().isEmpty() ? "" : header.getValue().get(0));
+                }
+            }
+        }
+        return result.toArray(new String[0]);
+    }
+
+    private static boolean contains(String[] names, String name) {
+        for (String candidate : names) {
+            if (candidate.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.etherealscope.requestlogging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Fetches a body spilled to the request logging journal by the reference found in the log line.
+ * <pre>
+ * java -cp request-logging-autoconfigure.jar com.etherealscope.requestlogging.JournalReader &lt;directory&gt; &lt;reference&gt;
+ * </pre>
+ */
+public final class JournalReader {
+
+    private JournalReader() {
+    }
+
+    /**
+     * @param directory journal directory
+     * @param reference reference in the form {@code file:offset:length:crc32}
+     * @return the masked body
+     * @throws IOException when the segment was deleted by retention or the body does not match its checksum
+     */
+    public static byte[] read(Path directory, String reference) throws IOException {
+        JournalRef ref = JournalRef.parse(reference);
+        if (!PayloadJournal.SEGMENT_NAME.matcher(ref.getFile()).matches()) {
+            throw new IllegalArgumentException("Not a journal segment: " + ref.getFile());
+        }
+        Path segment = directory.resolve(ref.getFile());
+        ByteBuffer body = ByteBuffer.allocate(ref.getLength());
+        try (FileChannel channel = FileChannel.open(segment, READ)) {
+            while (body.hasRemaining()) {
+                if (channel.read(body, ref.getOffset() + body.position()) < 0) {
+                    throw new IOException("Journal segment " + segment + " ends before " + reference);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            throw new IOException("Journal segment " + segment + " does not exist, it may have been deleted by retention", e);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body.array(), 0, body.capacity());
+        if (crc.getValue() != ref.getCrc32()) {
+            throw new IOException("Journal entry " + reference + " does not match its checksum");
+        }
+        return body.array();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: JournalReader <directory> <reference>");
+            System.exit(2);
+        }
+        System.out.write(read(Paths.get(args[0]), args[1]));
+        System.out.flush();
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.etherealscope.requestlogging;
+
+import lombok.Value;
+
+/**
+ * Reference to a body spilled to the {@link PayloadJournal}, written to the log line instead of the body.
+ * Its text form is {@code file:offset:length:crc32}.
+ */
+@Value
+class JournalRef {
+
+    private static final char SEPARATOR = ':';
+
+    String file;
+    int offset;
+    int length;
+    long crc32;
+
+    static JournalRef parse(String reference) {
+        String[] parts = reference.trim().split(String.valueOf(SEPARATOR));
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Journal reference must be file:offset:length:crc32, was " + reference);
+        }
+        return new JournalRef(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2]), Long.parseLong(parts[3], 16));
+    }
+
+    @Override
+    public String toString() {
+        return file + SEPARATOR + offset + SEPARATOR + length + SEPARATOR + Long.toHexString(crc32);
+    }
+
+}
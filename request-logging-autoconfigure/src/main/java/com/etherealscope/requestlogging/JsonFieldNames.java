@@ -0,0 +1,67 @@
+package com.etherealscope.requestlogging;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import static lombok.AccessLevel.PACKAGE;
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Field names used by json output and MDC fields.
+ */
+@Getter(PACKAGE)
+@RequiredArgsConstructor
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public enum JsonFieldNames {
+
+    /**
+     * Names following the text output, prefixed by request and response.
+     */
+    DEFAULT("request.method", "request.url", "request.query-params", "request.headers", "request.ip-address",
+            "request.content-type", "request.content-length", "request.character-encoding", "request.body",
+            "response.status-code", "response.content-type", "response.character-encoding", "response.headers", "response.body",
+            "request.body-ref", "response.body-ref", "time-elapsed-nanos", "timestamp", "direction",
+            "request.body-hash", "response.body-hash", "response.failure"),
+    /**
+     * Elastic Common Schema names, fields not defined by the schema are placed next to related ones.
+     */
+    ECS("http.request.method", "url.full", "http.request.query_params", "http.request.headers", "client.ip",
+            "http.request.mime_type", "http.request.bytes", "http.request.character_encoding", "http.request.body.content",
+            "http.response.status_code", "http.response.mime_type", "http.response.character_encoding", "http.response.headers", "http.response.body.content",
+            "http.request.body.ref", "http.response.body.ref", "event.duration", "@timestamp", "network.direction",
+            "http.request.body.hash", "http.response.body.hash", "error.type");
+
+    String requestMethod;
+    String requestUrl;
+    String requestQueryParams;
+    String requestHeaders;
+    String requestIpAddress;
+    String requestContentType;
+    String requestContentLength;
+    String requestCharacterEncoding;
+    String requestBody;
+    String responseStatusCode;
+    String responseContentType;
+    String responseCharacterEncoding;
+    String responseHeaders;
+    String responseBody;
+    String requestBodyRef;
+    String responseBodyRef;
+    String timeElapsed;
+    /**
+     * Fields of exported exchanges only, the log event carries them otherwise.
+     */
+    String timestamp;
+    String direction;
+    /**
+     * Hash of a deduplicated body, logged with the body or instead of it.
+     */
+    String requestBodyHash;
+    String responseBodyHash;
+    /**
+     * Exception class of an outbound exchange failed before a response arrived, logged instead of the status code.
+     */
+    String responseFailure;
+
+}
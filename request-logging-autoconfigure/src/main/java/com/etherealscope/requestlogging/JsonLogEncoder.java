@@ -0,0 +1,151 @@
+package com.etherealscope.requestlogging;
+
+import lombok.experimental.FieldDefaults;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static com.etherealscope.requestlogging.MaskUtils.MASK;
+import static com.etherealscope.requestlogging.MaskUtils.isMaskedQueryParam;
+import static com.etherealscope.requestlogging.MaskUtils.maskBody;
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Encodes an exchange record as one flat json object straight into a pooled {@link PayloadBuffer}.
+ * Bodies are masked into a second pooled buffer and copied in escaped, no intermediate maps or strings are built.
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+class JsonLogEncoder {
+
+    RequestLoggingProperties props;
+    PayloadJournal journal;
+    BodyDedup dedup;
+    JsonFieldNames names;
+
+    JsonLogEncoder(RequestLoggingProperties props, PayloadJournal journal, BodyDedup dedup) {
+        this.props = props;
+        this.journal = journal;
+        this.dedup = dedup;
+        this.names = props.getOutput().getFieldNames();
+    }
+
+    void encode(ExchangeRecord record, PayloadBuffer out) {
+        encode(record, new JsonWriter(out).beginObject());
+    }
+
+    /**
+     * Like {@link #encode(ExchangeRecord, PayloadBuffer)}, led by the time and direction of the exchange,
+     * which are carried by the log event when it is logged.
+     */
+    void encodeExported(ExchangeRecord record, PayloadBuffer out) {
+        JsonWriter json = new JsonWriter(out).beginObject();
+        json.field(names.getTimestamp(), Instant.now().toString());
+        json.field(names.getDirection(), record.isOutbound() ? "outbound" : "inbound");
+        encode(record, json);
+    }
+
+    private void encode(ExchangeRecord record, JsonWriter json) {
+        if (record.getRequest() != null) {
+            writeRequest(json, record.getRequest(), record.getPlan().getRequestMasks(), record.getPlan().getRequestMaxPayloadSize());
+        }
+        if (record.getResponse() != null) {
+            writeResponse(json, record.getResponse(), record.getPlan().getResponseMasks(), record.getPlan().getResponseMaxPayloadSize());
+        }
+        if (record.getElapsedNanos() >= 0) {
+            json.name(names.getTimeElapsed()).value(record.getElapsedNanos());
+        }
+        json.endObject();
+    }
+
+    private void writeRequest(JsonWriter json, RequestSnapshot request, List<CompiledMask> masks, int maxPayloadSize) {
+        json.field(names.getRequestMethod(), request.getMethod());
+        json.field(names.getRequestUrl(), request.getUrl());
+        if (request.getQueryParams() != null) {
+            writeQueryParams(json.name(names.getRequestQueryParams()), request.getQueryParams(), masks);
+        }
+        if (request.getHeaders() != null) {
+            writeHeaders(json.name(names.getRequestHeaders()), request.getHeaders());
+        }
+        json.field(names.getRequestIpAddress(), request.getIpAddress());
+        json.field(names.getRequestContentType(), request.getContentType());
+        json.name(names.getRequestContentLength()).value(request.getContentLength());
+        json.field(names.getRequestCharacterEncoding(), request.getCharacterEncoding());
+        if (request.getBody() != null) {
+            writeBody(json, names.getRequestBody(), names.getRequestBodyRef(), names.getRequestBodyHash(), request.getBody(), maxPayloadSize, request.getContentType(), masks);
+        }
+    }
+
+    private void writeResponse(JsonWriter json, ResponseSnapshot response, List<CompiledMask> masks, int maxPayloadSize) {
+        if (response.getFailure() != null) {
+            json.field(names.getResponseFailure(), response.getFailure());
+            return;
+        }
+        json.name(names.getResponseStatusCode()).value(response.getStatus());
+        json.field(names.getResponseContentType(), response.getContentType());
+        json.field(names.getResponseCharacterEncoding(), response.getCharacterEncoding());
+        if (response.getHeaders() != null) {
+            writeHeaders(json.name(names.getResponseHeaders()), response.getHeaders());
+        }
+        if (response.getBody() != null) {
+            writeBody(json, names.getResponseBody(), names.getResponseBodyRef(), names.getResponseBodyHash(), response.getBody(), maxPayloadSize, response.getContentType(), masks);
+        }
+    }
+
+    private static void writeQueryParams(JsonWriter json, Map<String, String[]> queryParams, List<CompiledMask> masks) {
+        json.beginObject();
+        for (Map.Entry<String, String[]> param : queryParams.entrySet()) {
+            json.name(param.getKey()).beginArray();
+            if (isMaskedQueryParam(param.getKey(), masks)) {
+                json.value(MASK);
+            } else {
+                for (String value : param.getValue()) {
+                    json.value(value);
+                }
+            }
+            json.endArray();
+        }
+        json.endObject();
+    }
+
+    /**
+     * Header values are masked when snapshotted.
+     */
+    private static void writeHeaders(JsonWriter json, String[] headers) {
+        json.beginObject();
+        for (int i = 0; i < headers.length; i += 2) {
+            json.name(headers[i]).value(headers[i + 1]);
+        }
+        json.endObject();
+    }
+
+    /**
+     * A deduplicated body is followed by its hash, or replaced by it when it was logged within the dedup window.
+     */
+    private void writeBody(JsonWriter json, String name, String refName, String hashName, ByteBuffer body, int maxLength,
+                           String contentType, List<CompiledMask> masks) {
+        if (!body.hasRemaining()) {
+            return;
+        }
+        JournalRef ref = journal != null ? journal.spill(body, maxLength, contentType, masks) : null;
+        if (ref != null) {
+            json.field(refName, ref.toString());
+            return;
+        }
+        PayloadBuffer masked = PayloadBuffer.acquire();
+        try {
+            maskBody(body, maxLength, contentType, masks, masked);
+            long hash = dedup != null ? dedup.hash(masked) : 0;
+            if (hash == 0 || !dedup.isRepeated(hash)) {
+                json.name(name).value(masked);
+            }
+            if (hash != 0) {
+                json.field(hashName, BodyDedup.format(hash));
+            }
+        } finally {
+            masked.release();
+        }
+    }
+
+}
@@ -0,0 +1,235 @@
+package com.etherealscope.requestlogging;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static com.etherealscope.requestlogging.CommonUtils.utf8Boundary;
+import static com.etherealscope.requestlogging.MaskUtils.MASK;
+import static java.lang.Math.min;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Single pass json redaction over raw bytes. The body is never decoded to a string: unmasked
+ * ranges are copied as they are and the value of every masked field, at any depth and of any
+ * type, is replaced by the mask. Field names are unescaped while compared with the masked json fields,
+ * so a name spelled with escapes is masked like the plain one. Malformed or truncated json is copied as far as it goes.
+ */
+final class JsonRedactor {
+
+    private static final byte[] MASKED_VALUE = ("\"" + MASK + "\"").getBytes(UTF_8);
+
+    private JsonRedactor() {
+    }
+
+    /**
+     * Writes at most {@code maxLength} bytes of the body, cut on a character boundary, to the output.
+     */
+    static void redact(ByteBuffer body, int maxLength, List<CompiledMask> masks, PayloadBuffer out) {
+        int start = body.position();
+        int end = utf8Boundary(body, start, min(body.limit(), start + maxLength));
+        int copyFrom = start;
+        int i = start;
+        while (i < end) {
+            if (body.get(i) != '"') {
+                i++;
+                continue;
+            }
+            int stringEnd = skipString(body, i, end);
+            int colon = skipWhitespace(body, stringEnd, end);
+            if (colon < end && body.get(colon) == ':' && isMaskedField(body, i + 1, stringEnd - 1, masks)) {
+                int valueStart = skipWhitespace(body, colon + 1, end);
+                if (valueStart == end) {
+                    break;
+                }
+                int valueEnd = skipValue(body, valueStart, end);
+                out.write(body, copyFrom, valueStart).write(MASKED_VALUE);
+                copyFrom = valueEnd;
+                i = valueEnd;
+            } else {
+                i = stringEnd;
+            }
+        }
+        out.write(body, copyFrom, end);
+    }
+
+    private static boolean isMaskedField(ByteBuffer body, int from, int to, List<CompiledMask> masks) {
+        for (CompiledMask mask : masks) {
+            for (byte[] field : mask.getJsonFields()) {
+                if (unescapedEquals(body, from, to, field)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares the escaped name with the expected UTF-8 bytes, unescaping it on the fly. A unicode escape
+     * is encoded as UTF-8, joined with the following one when they form a surrogate pair.
+     */
+    private static boolean unescapedEquals(ByteBuffer body, int from, int to, byte[] expected) {
+        int k = 0;
+        int i = from;
+        while (i < to) {
+            byte b = body.get(i);
+            if (b != '\\') {
+                if (k == expected.length || expected[k] != b) {
+                    return false;
+                }
+                k++;
+                i++;
+                continue;
+            }
+            if (i + 1 == to) {
+                return false;
+            }
+            int c;
+            byte escaped = body.get(i + 1);
+            if (escaped == 'u') {
+                c = hex4(body, i + 2, to);
+                i += 6;
+                if (Character.isHighSurrogate((char) c) && i + 1 < to && body.get(i) == '\\' && body.get(i + 1) == 'u') {
+                    int low = hex4(body, i + 2, to);
+                    if (Character.isLowSurrogate((char) low)) {
+                        c = Character.toCodePoint((char) c, (char) low);
+                        i += 6;
+                    }
+                }
+            } else {
+                c = unescape(escaped);
+                i += 2;
+            }
+            if (c < 0) {
+                return false;
+            }
+            k = matchUtf8(c, expected, k);
+            if (k < 0) {
+                return false;
+            }
+        }
+        return k == expected.length;
+    }
+
+    /**
+     * Index in the expected bytes after the UTF-8 encoding of the code point, or -1 when they differ.
+     */
+    private static int matchUtf8(int c, byte[] expected, int k) {
+        int length = c < 0x80 ? 1 : c < 0x800 ? 2 : c < 0x10000 ? 3 : 4;
+        if (k + length > expected.length) {
+            return -1;
+        }
+        int first = length == 1 ? c : length == 2 ? 0xc0 | c >> 6 : length == 3 ? 0xe0 | c >> 12 : 0xf0 | c >> 18;
+        if ((expected[k] & 0xff) != first) {
+            return -1;
+        }
+        for (int j = 1; j < length; j++) {
+            if ((expected[k + j] & 0xff) != (0x80 | (c >> (6 * (length - 1 - j)) & 0x3f))) {
+                return -1;
+            }
+        }
+        return k + length;
+    }
+
+    /**
+     * Value of the four hex digits at {@code i}, or -1 when they are not.
+     */
+    private static int hex4(ByteBuffer body, int i, int to) {
+        if (i + 4 > to) {
+            return -1;
+        }
+        int value = 0;
+        for (int j = i; j < i + 4; j++) {
+            int digit = Character.digit((char) body.get(j), 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+
+    private static int unescape(byte c) {
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                return c;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Index after the closing quote of the string starting at {@code i}, or {@code end} if it is not closed.
+     */
+    private static int skipString(ByteBuffer body, int i, int end) {
+        int j = i + 1;
+        while (j < end) {
+            byte c = body.get(j);
+            if (c == '\\') {
+                j += 2;
+            } else if (c == '"') {
+                return j + 1;
+            } else {
+                j++;
+            }
+        }
+        return end;
+    }
+
+    private static int skipWhitespace(ByteBuffer body, int i, int end) {
+        while (i < end && isWhitespace(body.get(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipValue(ByteBuffer body, int i, int end) {
+        byte c = body.get(i);
+        if (c == '"') {
+            return skipString(body, i, end);
+        }
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            int j = i;
+            while (j < end) {
+                c = body.get(j);
+                if (c == '"') {
+                    j = skipString(body, j, end);
+                    continue;
+                }
+                if (c == '{' || c == '[') {
+                    depth++;
+                } else if ((c == '}' || c == ']') && --depth == 0) {
+                    return j + 1;
+                }
+                j++;
+            }
+            return end;
+        }
+        int j = i;
+        while (j < end && !isValueEnd(body.get(j))) {
+            j++;
+        }
+        return j;
+    }
+
+    private static boolean isValueEnd(byte c) {
+        return c == ',' || c == '}' || c == ']' || isWhitespace(c);
+    }
+
+    private static boolean isWhitespace(byte c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+}
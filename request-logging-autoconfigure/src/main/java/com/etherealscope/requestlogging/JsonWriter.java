@@ -0,0 +1,174 @@
+package com.etherealscope.requestlogging;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal streaming json writer encoding straight to UTF-8 bytes in a {@link PayloadBuffer},
+ * without intermediate strings or maps.
+ */
+final class JsonWriter {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+    private final PayloadBuffer out;
+    private boolean comma;
+
+    JsonWriter(PayloadBuffer out) {
+        this.out = out;
+    }
+
+    JsonWriter beginObject() {
+        separate();
+        out.write((byte) '{');
+        comma = false;
+        return this;
+    }
+
+    JsonWriter endObject() {
+        out.write((byte) '}');
+        comma = true;
+        return this;
+    }
+
+    JsonWriter beginArray() {
+        separate();
+        out.write((byte) '[');
+        comma = false;
+        return this;
+    }
+
+    JsonWriter endArray() {
+        out.write((byte) ']');
+        comma = true;
+        return this;
+    }
+
+    JsonWriter name(String name) {
+        separate();
+        writeString(name);
+        out.write((byte) ':');
+        comma = false;
+        return this;
+    }
+
+    JsonWriter value(String value) {
+        separate();
+        if (value == null) {
+            out.write(NULL);
+        } else {
+            writeString(value);
+        }
+        comma = true;
+        return this;
+    }
+
+    JsonWriter value(long value) {
+        separate();
+        if (value == Long.MIN_VALUE) {
+            writeRaw(Long.toString(value));
+        } else {
+            if (value < 0) {
+                out.write((byte) '-');
+                value = -value;
+            }
+            writeDigits(value);
+        }
+        comma = true;
+        return this;
+    }
+
+    /**
+     * Writes UTF-8 encoded text as a json string, escaping what json requires.
+     */
+    JsonWriter value(PayloadBuffer utf8) {
+        separate();
+        out.write((byte) '"');
+        for (int i = 0; i < utf8.length(); i++) {
+            byte b = utf8.get(i);
+            if (b >= 0) {
+                writeAscii((char) b);
+            } else {
+                out.write(b);
+            }
+        }
+        out.write((byte) '"');
+        comma = true;
+        return this;
+    }
+
+    JsonWriter field(String name, String value) {
+        return value == null ? this : name(name).value(value);
+    }
+
+    private void separate() {
+        if (comma) {
+            out.write((byte) ',');
+        }
+    }
+
+    private void writeString(String s) {
+        out.write((byte) '"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                writeAscii(c);
+            } else if (c < 0x800) {
+                out.write((byte) (0xC0 | (c >> 6)));
+                out.write((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                out.write((byte) (0xF0 | (codePoint >> 18)));
+                out.write((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                out.write((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                out.write((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                out.write((byte) '?');
+            } else {
+                out.write((byte) (0xE0 | (c >> 12)));
+                out.write((byte) (0x80 | ((c >> 6) & 0x3F)));
+                out.write((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        out.write((byte) '"');
+    }
+
+    private void writeAscii(char c) {
+        switch (c) {
+            case '"':
+            case '\\':
+                out.write((byte) '\\').write((byte) c);
+                break;
+            case '\n':
+                out.write((byte) '\\').write((byte) 'n');
+                break;
+            case '\r':
+                out.write((byte) '\\').write((byte) 'r');
+                break;
+            case '\t':
+                out.write((byte) '\\').write((byte) 't');
+                break;
+            default:
+                if (c < 0x20) {
+                    out.write((byte) '\\').write((byte) 'u').write((byte) '0').write((byte) '0')
+                            .write(HEX[c >> 4]).write(HEX[c & 0xF]);
+                } else {
+                    out.write((byte) c);
+                }
+        }
+    }
+
+    private void writeDigits(long value) {
+        if (value >= 10) {
+            writeDigits(value / 10);
+        }
+        out.write((byte) ('0' + (value % 10)));
+    }
+
+    private void writeRaw(String ascii) {
+        for (int i = 0; i < ascii.length(); i++) {
+            out.write((byte) ascii.charAt(i));
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.etherealscope.requestlogging;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Everything about logging a request that depends only on its http method and servlet path,
+ * resolved once from {@link RequestLoggingProperties} and cached by {@link LoggingPlans}.
+ */
+@Value
+class LoggingPlan {
+
+    boolean logRequest;
+    /**
+     * Request body is eligible for logging, its content type still has to be checked.
+     */
+    boolean logRequestBody;
+    boolean logResponse;
+    /**
+     * Response body is captured, its content type decides later whether it is logged.
+     */
+    boolean captureResponseBody;
+    /**
+     * Request headers to log, null when no headers are logged.
+     */
+    HeaderPlan requestHeaders;
+    /**
+     * Response headers to log, null when no headers are logged.
+     */
+    HeaderPlan responseHeaders;
+    List<CompiledMask> requestMasks;
+    List<CompiledMask> responseMasks;
+    int requestMaxPayloadSize;
+    int responseMaxPayloadSize;
+    /**
+     * Sampling rule of the route, null when every request is logged.
+     */
+    Sampler sampler;
+    /**
+     * Aggregation rule of the route, null when its exchanges are logged one by one.
+     * Aggregated exchanges are neither sampled nor captured.
+     */
+    Aggregator aggregator;
+
+    boolean logsAnything() {
+        return logRequest || logResponse;
+    }
+
+    boolean sample() {
+        return sampler == null || sampler.sample();
+    }
+
+}
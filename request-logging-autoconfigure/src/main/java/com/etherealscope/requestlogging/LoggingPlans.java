@@ -0,0 +1,135 @@
+package com.etherealscope.requestlogging;
+
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+import static com.etherealscope.requestlogging.CommonUtils.METHODS;
+import static com.etherealscope.requestlogging.CommonUtils.contentTypeEnabled;
+import static com.etherealscope.requestlogging.CommonUtils.methodIndex;
+import static com.etherealscope.requestlogging.CommonUtils.servletPathEnabled;
+import static com.etherealscope.requestlogging.MaskUtils.compileMasks;
+import static com.etherealscope.requestlogging.MaskUtils.filterMasks;
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Compiles {@link RequestLoggingProperties} into {@link LoggingPlan}s and memoizes them per http method
+ * and servlet path, so a request walks the path patterns and masks only on a cache miss.
+ * Never changed once built, a runtime configuration change builds new plans instead.
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+class LoggingPlans {
+
+    private static final String[] NO_CONTENT_TYPES = new String[] {};
+
+    RequestLoggingProperties props;
+    CompiledMask[] requestMasks;
+    CompiledMask[] responseMasks;
+    Samplers samplers;
+    Aggregators aggregators;
+    StatusCodeSet statusCodes;
+    boolean tailEnabled;
+    long tailLatencyThresholdNanos;
+    StatusCodeSet tailStatusCodes;
+    /**
+     * Plan caches by {@link CommonUtils#methodIndex(String)}, plans of unknown methods are not cached.
+     */
+    BoundedCache<String, LoggingPlan>[] caches;
+
+    LoggingPlans(RequestLoggingProperties props, Samplers samplers, Aggregators aggregators) {
+        this.props = props;
+        this.samplers = samplers;
+        this.aggregators = aggregators;
+        this.requestMasks = compileMasks(props.getRequest().getMasks());
+        this.responseMasks = compileMasks(props.getResponse().getMasks());
+        this.statusCodes = StatusCodeSet.compile(props.getStatusCodes());
+        this.tailEnabled = props.getTail().isEnabled();
+        this.tailLatencyThresholdNanos = props.getTail().getLatencyThreshold().toNanos();
+        this.tailStatusCodes = StatusCodeSet.compile(props.getTail().getStatusCodes());
+        this.caches = newCaches(props.getPlanCacheSize());
+    }
+
+    RequestLoggingProperties getProps() {
+        return props;
+    }
+
+    Samplers getSamplers() {
+        return samplers;
+    }
+
+    Aggregators getAggregators() {
+        return aggregators;
+    }
+
+    LoggingPlan get(String method, String servletPath) {
+        int index = methodIndex(method);
+        if (index == METHODS.length) {
+            return compile(method, servletPath);
+        }
+        return caches[index].get(servletPath);
+    }
+
+    /**
+     * Decided once the exchange completed and before anything is copied or formatted.
+     */
+    boolean shouldLogExchange(int status, long elapsedNanos) {
+        return statusCodes.contains(status)
+                && (!tailEnabled || elapsedNanos >= tailLatencyThresholdNanos || tailStatusCodes.contains(status));
+    }
+
+    boolean shouldLogRequestBody(LoggingPlan plan, String contentType) {
+        return plan.isLogRequestBody()
+                && contentTypeEnabled(contentType, props.getRequest().getWhiteListedContentTypes(), props.getRequest().getBlackListedContentTypes());
+    }
+
+    /**
+     * Streamed responses are never captured, so they flush immediately and use no memory for logging.
+     */
+    boolean shouldLogResponseBody(LoggingPlan plan, String contentType) {
+        return plan.isCaptureResponseBody()
+                && contentTypeEnabled(contentType, props.getResponse().getWhiteListedContentTypes(), props.getResponse().getBlackListedContentTypes())
+                && contentTypeEnabled(contentType, NO_CONTENT_TYPES, props.getResponse().getStreamingContentTypes());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private BoundedCache<String, LoggingPlan>[] newCaches(int size) {
+        BoundedCache<String, LoggingPlan>[] caches = new BoundedCache[METHODS.length];
+        for (int i = 0; i < METHODS.length; i++) {
+            String method = METHODS[i].name();
+            caches[i] = new BoundedCache<>(size, servletPath -> compile(method, servletPath));
+        }
+        return caches;
+    }
+
+    private LoggingPlan compile(String method, String servletPath) {
+        RequestLoggingProperties.Request request = props.getRequest();
+        RequestLoggingProperties.Response response = props.getResponse();
+        boolean logRequest = props.isEnabled()
+                && request.isEnabled()
+                && servletPathEnabled(servletPath, request.getWhiteListedServletPaths(), request.getBlackListedServletPaths());
+        boolean logResponse = props.isEnabled()
+                && response.isEnabled()
+                && servletPathEnabled(servletPath, response.getWhiteListedServletPaths(), response.getBlackListedServletPaths());
+        Aggregator aggregator = logRequest || logResponse ? aggregators.match(method, servletPath) : null;
+        boolean logRequestBody = logRequest
+                && aggregator == null
+                && request.isIncludePayload()
+                && ("POST".equals(method) || "PUT".equals(method) || "PATCH".equals(method));
+        List<CompiledMask> requestMasks = filterMasks(method, servletPath, this.requestMasks);
+        List<CompiledMask> responseMasks = filterMasks(method, servletPath, this.responseMasks);
+        return new LoggingPlan(
+                logRequest,
+                logRequestBody,
+                logResponse,
+                logResponse && aggregator == null && response.isIncludePayload(),
+                request.isIncludeHeaders() ? new HeaderPlan(request.getWhiteListedHeaders(), request.getBlackListedHeaders(), requestMasks) : null,
+                response.isIncludeHeaders() ? new HeaderPlan(response.getWhiteListedHeaders(), response.getBlackListedHeaders(), responseMasks) : null,
+                requestMasks,
+                responseMasks,
+                request.getMaxPayloadSize(),
+                response.getMaxPayloadSize(),
+                aggregator == null ? samplers.match(method, servletPath) : null,
+                aggregator);
+    }
+
+}
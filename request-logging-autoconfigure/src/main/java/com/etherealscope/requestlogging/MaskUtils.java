@@ -2,13 +2,15 @@ package com.etherealscope.requestlogging;
 
 import com.etherealscope.requestlogging.RequestLoggingProperties.Mask;
 import org.springframework.util.AntPathMatcher;
-import org.springframework.util.MultiValueMap;
 
+import java.nio.ByteBuffer;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Stream;
 
-import static java.util.Collections.singletonList;
+import static com.etherealscope.requestlogging.CommonUtils.NOTHING;
+import static com.etherealscope.requestlogging.CommonUtils.utf8Boundary;
+import static java.lang.Math.min;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.stream.Collectors.toList;
 import static org.springframework.http.MediaType.APPLICATION_FORM_URLENCODED_VALUE;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
@@ -18,45 +20,75 @@ class MaskUtils {
     static final String MASK = "*****";
     static final AntPathMatcher MATCHER = new AntPathMatcher();
 
-    static List<Mask> filterMasks(String method, String servletPath, Mask... masks) {
+    private static final String MULTIPART_PREFIX = "multipart/";
+    private static final String XML = "xml";
+
+    static CompiledMask[] compileMasks(Mask... masks) {
+        return Stream.of(masks)
+                .map(CompiledMask::new)
+                .toArray(CompiledMask[]::new);
+    }
+
+    static List<CompiledMask> filterMasks(String method, String servletPath, CompiledMask... masks) {
         return Stream.of(masks)
-                .filter(m -> maskMatches(m, method, servletPath))
+                .filter(m -> maskMatches(m.getMask(), method, servletPath))
                 .collect(toList());
     }
 
-    static String maskBody(String body, String contentType, List<Mask> masks) {
-        String maskedBody = body;
-        if (contentType == null || contentType.contains(APPLICATION_JSON_VALUE)) {
-            for (Mask mask : masks) {
-                for (String field : mask.getMaskedJsonFields()) {
-                    maskedBody = maskedBody.replaceAll(String.format("(\"%s\":)(\"[^\"]+\")", field), String.format("$1\"%s\"", MASK));
-                }
-            }
+    /**
+     * Masks at most {@code maxLength} bytes of the body. Bodies are redacted on the raw bytes,
+     * so only the (possibly cut) output is ever turned into a string.
+     */
+    static String maskBody(ByteBuffer body, int maxLength, String contentType, List<CompiledMask> masks) {
+        if (!body.hasRemaining()) {
+            return NOTHING;
         }
-        if (contentType == null || contentType.contains(APPLICATION_FORM_URLENCODED_VALUE)) {
-            for (Mask mask : masks) {
-                for (String param : mask.getMaskedQueryParams()) {
-                    maskedBody = maskedBody.replaceAll(String.format("%s=([^&]+)", param), String.format("%s=%s", param, MASK));
-                }
-            }
+        PayloadBuffer out = PayloadBuffer.acquire();
+        try {
+            maskBody(body, maxLength, contentType, masks, out);
+            return out.toString(UTF_8);
+        } finally {
+            out.release();
         }
-        return maskedBody;
     }
 
-    static void maskHeaders(Map<String, String> headers, List<Mask> masks) {
-        for (Mask mask : masks) {
-            for (String header : mask.getMaskedHeaders()) {
-                headers.replace(header, MASK);
+    /**
+     * Writes at most {@code maxLength} masked bytes of the body to the output, redacted in one pass
+     * by a redactor of its content type. Json is assumed when the content type is unknown.
+     */
+    static void maskBody(ByteBuffer body, int maxLength, String contentType, List<CompiledMask> masks, PayloadBuffer out) {
+        if (contentType == null || contentType.contains(APPLICATION_JSON_VALUE)) {
+            JsonRedactor.redact(body, maxLength, masks, out);
+        } else if (contentType.contains(APPLICATION_FORM_URLENCODED_VALUE)) {
+            FormRedactor.redact(body, maxLength, masks, out);
+        } else if (contentType.startsWith(MULTIPART_PREFIX)) {
+            String boundary = MultipartRedactor.boundary(contentType);
+            if (boundary != null) {
+                MultipartRedactor.redact(body, maxLength, boundary, masks, out);
+            } else {
+                copyBody(body, maxLength, out);
             }
+        } else if (contentType.contains(XML)) {
+            XmlRedactor.redact(body, maxLength, masks, out);
+        } else {
+            copyBody(body, maxLength, out);
         }
     }
 
-    static void maskQueryParams(MultiValueMap<String, String> queryParams, List<Mask> masks) {
-        for (Mask mask : masks) {
-            for (String param : mask.getMaskedQueryParams()) {
-                queryParams.replace(param, singletonList(MASK));
+    private static void copyBody(ByteBuffer body, int maxLength, PayloadBuffer out) {
+        int start = body.position();
+        out.write(body, start, utf8Boundary(body, start, min(body.limit(), start + maxLength)));
+    }
+
+    static boolean isMaskedQueryParam(String param, List<CompiledMask> masks) {
+        for (CompiledMask mask : masks) {
+            for (String masked : mask.getMask().getMaskedQueryParams()) {
+                if (masked.equals(param)) {
+                    return true;
+                }
             }
         }
+        return false;
     }
 
     private static boolean maskMatches(Mask mask, String method, String servletPath) {
@@ -0,0 +1,203 @@
+package com.etherealscope.requestlogging;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.experimental.FieldDefaults;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.etherealscope.requestlogging.CommonUtils.METHODS;
+import static com.etherealscope.requestlogging.CommonUtils.methodIndex;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static lombok.AccessLevel.PRIVATE;
+import static org.springframework.web.servlet.HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE;
+import static org.springframework.web.util.WebUtils.getNativeResponse;
+
+/**
+ * Micrometer based exchange metrics. Meters are tagged by the matched handler pattern, not the raw path,
+ * registered once per route, method and status class and afterwards looked up from arrays without allocation.
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+class MicrometerExchangeMetrics implements ExchangeMetrics {
+
+    private static final String UNMATCHED = "UNMATCHED";
+    private static final String OTHER = "OTHER";
+    private static final String[] STATUS_CLASSES = new String[] {"1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    MeterRegistry registry;
+    Timer overhead;
+    ConcurrentMap<String, RouteMeters> routes = new ConcurrentHashMap<>();
+
+    MicrometerExchangeMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.overhead = Timer.builder("ethereal.logging.filter.overhead")
+                .description("Time spent in the request logging filter itself")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    @Override
+    public void record(HttpServletRequest request, HttpServletResponse response, int status, long elapsedNanos, long overheadNanos) {
+        RouteMeters meters = route(request);
+        int method = methodIndex(request.getMethod());
+        meters.timer(method, statusClassIndex(status)).record(elapsedNanos, NANOSECONDS);
+        long requestBytes = request.getContentLengthLong();
+        if (requestBytes >= 0) {
+            meters.requestSize(method).record(requestBytes);
+        }
+        long responseBytes = responseBytes(response);
+        if (responseBytes >= 0) {
+            meters.responseSize(method).record(responseBytes);
+        }
+        overhead.record(overheadNanos, NANOSECONDS);
+    }
+
+    @Override
+    public void bind(AsyncExchangeLogger asyncLogger) {
+        Gauge.builder("ethereal.logging.async.queue.size", asyncLogger, AsyncExchangeLogger::getQueueSize)
+                .description("Exchanges waiting to be logged")
+                .register(registry);
+        FunctionCounter.builder("ethereal.logging.async.dropped", asyncLogger, AsyncExchangeLogger::getDroppedCount)
+                .description("Exchanges dropped because the logging queue was full")
+                .register(registry);
+    }
+
+    @Override
+    public void bind(ExchangeExporter exporter) {
+        Gauge.builder("ethereal.logging.export.queue.size", exporter, ExchangeExporter::getQueueSize)
+                .description("Exchanges waiting to be exported")
+                .register(registry);
+        FunctionCounter.builder("ethereal.logging.export.dropped", exporter, ExchangeExporter::getDroppedCount)
+                .description("Exchanges dropped because they could not be exported or spilled")
+                .register(registry);
+        FunctionCounter.builder("ethereal.logging.export.failures", exporter, ExchangeExporter::getFailureCount)
+                .description("Failed attempts to send a batch to the collector")
+                .register(registry);
+    }
+
+    @Override
+    public void bind(BodyDedup dedup) {
+        FunctionCounter.builder("ethereal.logging.dedup.repeated", dedup, BodyDedup::getRepeatedCount)
+                .description("Bodies logged by their hash only because they were logged in full recently")
+                .register(registry);
+    }
+
+    @Override
+    public void bind(String name, SlabPool pool) {
+        Gauge.builder("ethereal.logging.capture.slabs.allocated", pool, SlabPool::getAllocated)
+                .description("Direct buffers allocated for captured bodies")
+                .tag("pool", name)
+                .register(registry);
+        Gauge.builder("ethereal.logging.capture.slabs.used", pool, SlabPool::getInUse)
+                .description("Direct buffers holding bodies not logged yet")
+                .tag("pool", name)
+                .register(registry);
+        FunctionCounter.builder("ethereal.logging.capture.slabs.exhausted", pool, SlabPool::getExhaustedCount)
+                .description("Bodies captured into heap buffers because all direct buffers were in use")
+                .tag("pool", name)
+                .register(registry);
+        if (pool.getOverflow() != null) {
+            Gauge.builder("ethereal.logging.capture.overflow.used", pool.getOverflow(), SlabPool::getInUse)
+                    .description("Overflow chunks holding bodies captured beyond max payload size")
+                    .tag("pool", name)
+                    .register(registry);
+            FunctionCounter.builder("ethereal.logging.capture.overflow.exhausted", pool.getOverflow(), SlabPool::getExhaustedCount)
+                    .description("Bodies cut at max payload size because all overflow chunks were in use")
+                    .tag("pool", name)
+                    .register(registry);
+        }
+    }
+
+    private RouteMeters route(HttpServletRequest request) {
+        Object pattern = request.getAttribute(BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String route = pattern != null ? pattern.toString() : UNMATCHED;
+        RouteMeters meters = routes.get(route);
+        if (meters == null) {
+            meters = routes.computeIfAbsent(route, RouteMeters::new);
+        }
+        return meters;
+    }
+
+    private static long responseBytes(HttpServletResponse response) {
+        BoundedCaptureResponseWrapper wrapper = getNativeResponse(response, BoundedCaptureResponseWrapper.class);
+        if (wrapper != null) {
+            return wrapper.getTotalBytes();
+        }
+        String contentLength = response.getHeader("Content-Length");
+        if (contentLength != null) {
+            try {
+                return Long.parseLong(contentLength);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static int statusClassIndex(int status) {
+        return Math.min(Math.max(status / 100 - 1, 0), STATUS_CLASSES.length - 1);
+    }
+
+    private static String methodName(int index) {
+        return index < METHODS.length ? METHODS[index].name() : OTHER;
+    }
+
+    private final class RouteMeters {
+
+        private final String route;
+        private final AtomicReferenceArray<Timer> timers = new AtomicReferenceArray<>((METHODS.length + 1) * STATUS_CLASSES.length);
+        private final AtomicReferenceArray<DistributionSummary> requestSizes = new AtomicReferenceArray<>(METHODS.length + 1);
+        private final AtomicReferenceArray<DistributionSummary> responseSizes = new AtomicReferenceArray<>(METHODS.length + 1);
+
+        RouteMeters(String route) {
+            this.route = route;
+        }
+
+        Timer timer(int method, int statusClass) {
+            int index = method * STATUS_CLASSES.length + statusClass;
+            Timer timer = timers.get(index);
+            if (timer == null) {
+                timer = Timer.builder("ethereal.logging.exchange")
+                        .description("Duration of exchanges passing the request logging filter")
+                        .tag("route", route)
+                        .tag("method", methodName(method))
+                        .tag("status", STATUS_CLASSES[statusClass])
+                        .publishPercentileHistogram()
+                        .register(registry);
+                timers.set(index, timer);
+            }
+            return timer;
+        }
+
+        DistributionSummary requestSize(int method) {
+            return size(requestSizes, method, "ethereal.logging.request.size", "Request payload sizes");
+        }
+
+        DistributionSummary responseSize(int method) {
+            return size(responseSizes, method, "ethereal.logging.response.size", "Response payload sizes");
+        }
+
+        private DistributionSummary size(AtomicReferenceArray<DistributionSummary> summaries, int method, String name, String description) {
+            DistributionSummary summary = summaries.get(method);
+            if (summary == null) {
+                summary = DistributionSummary.builder(name)
+                        .description(description)
+                        .baseUnit("bytes")
+                        .tag("route", route)
+                        .tag("method", methodName(method))
+                        .publishPercentileHistogram()
+                        .register(registry);
+                summaries.set(method, summary);
+            }
+            return summary;
+        }
+    }
+
+}
@@ -0,0 +1,216 @@
+package com.etherealscope.requestlogging;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import static com.etherealscope.requestlogging.MaskUtils.MASK;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Single pass redaction of multipart bodies over raw bytes. Part headers are copied, text parts are masked
+ * by their own content type and binary parts, files or parts of a content type other than text, json, xml
+ * or form, are replaced by their size and SHA-256 digest. Parts named in the masked query params are
+ * replaced by the mask. Output stops at {@code maxLength} bytes. Binary parts are digested from the captured
+ * bytes once the exchange completed, not while they pass through, so a part cut off by the capture
+ * is summarized by the size captured of it only.
+ */
+final class MultipartRedactor {
+
+    private static final byte[] CRLF = "\r\n".getBytes(ISO_8859_1);
+    private static final byte[] HEADERS_END = "\r\n\r\n".getBytes(ISO_8859_1);
+    private static final byte[] MASK_BYTES = MASK.getBytes(UTF_8);
+    private static final String BOUNDARY = "boundary=";
+    private static final String CONTENT_TYPE = "content-type:";
+    private static final String NAME = "name=\"";
+    private static final String FILENAME = "filename=";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private MultipartRedactor() {
+    }
+
+    /**
+     * Boundary of the multipart content type, null when it has none.
+     */
+    static String boundary(String contentType) {
+        int i = contentType.indexOf(BOUNDARY);
+        if (i < 0) {
+            return null;
+        }
+        int from = i + BOUNDARY.length();
+        int to = contentType.indexOf(';', from);
+        String boundary = (to < 0 ? contentType.substring(from) : contentType.substring(from, to)).trim();
+        if (boundary.length() > 1 && boundary.charAt(0) == '"' && boundary.charAt(boundary.length() - 1) == '"') {
+            boundary = boundary.substring(1, boundary.length() - 1);
+        }
+        return boundary.isEmpty() ? null : boundary;
+    }
+
+    /**
+     * Writes the redacted body to the output, at most {@code maxLength} bytes.
+     */
+    static void redact(ByteBuffer body, int maxLength, String boundary, List<CompiledMask> masks, PayloadBuffer out) {
+        byte[] delimiter = ("--" + boundary).getBytes(ISO_8859_1);
+        int outputEnd = out.length() + maxLength;
+        int end = body.limit();
+        int i = indexOf(body, body.position(), end, delimiter);
+        if (i < 0) {
+            return;
+        }
+        while (i < end && out.length() < outputEnd) {
+            int afterDelimiter = i + delimiter.length;
+            if (startsWith(body, afterDelimiter, end, (byte) '-', (byte) '-')) {
+                write(out, outputEnd, body, i, Math.min(afterDelimiter + 2, end));
+                return;
+            }
+            int headersEnd = indexOf(body, afterDelimiter, end, HEADERS_END);
+            if (headersEnd < 0) {
+                write(out, outputEnd, body, i, end);
+                return;
+            }
+            int contentStart = headersEnd + HEADERS_END.length;
+            int next = indexOf(body, contentStart, end, CRLF, delimiter);
+            int contentEnd = next < 0 ? end : next;
+            write(out, outputEnd, body, i, contentStart);
+            writePart(out, outputEnd, body, afterDelimiter, headersEnd, contentStart, contentEnd, next < 0, masks);
+            if (next < 0) {
+                return;
+            }
+            write(out, outputEnd, body, next, next + CRLF.length);
+            i = next + CRLF.length;
+        }
+    }
+
+    private static void writePart(PayloadBuffer out, int outputEnd, ByteBuffer body, int headersStart, int headersEnd,
+                                  int contentStart, int contentEnd, boolean truncated, List<CompiledMask> masks) {
+        String headers = decode(body, headersStart, headersEnd);
+        String lowerCaseHeaders = headers.toLowerCase();
+        String name = headerParameter(headers, lowerCaseHeaders, NAME);
+        String contentType = contentType(headers, lowerCaseHeaders);
+        if (name != null && isMaskedField(name, masks)) {
+            write(out, outputEnd, MASK_BYTES);
+        } else if (lowerCaseHeaders.contains(FILENAME) || !isText(contentType)) {
+            int size = contentEnd - contentStart;
+            String summary = truncated
+                    ? "[binary, at least " + size + " bytes]"
+                    : "[binary, " + size + " bytes, sha-256 " + digest(body, contentStart, contentEnd) + "]";
+            write(out, outputEnd, summary.getBytes(UTF_8));
+        } else if (out.length() < outputEnd) {
+            ByteBuffer content = body.duplicate();
+            content.limit(contentEnd).position(contentStart);
+            MaskUtils.maskBody(content, outputEnd - out.length(), contentType != null ? contentType : "text/plain", masks, out);
+        }
+    }
+
+    private static boolean isText(String contentType) {
+        if (contentType == null) {
+            return true;
+        }
+        String type = contentType.toLowerCase();
+        return type.startsWith("text/") || type.contains("json") || type.contains("xml") || type.contains("x-www-form-urlencoded");
+    }
+
+    private static boolean isMaskedField(String name, List<CompiledMask> masks) {
+        for (CompiledMask mask : masks) {
+            for (String param : mask.getMask().getMaskedQueryParams()) {
+                if (param.equals(name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String headerParameter(String headers, String lowerCaseHeaders, String parameter) {
+        int i = lowerCaseHeaders.indexOf(parameter);
+        while (i > 0 && Character.isLetter(lowerCaseHeaders.charAt(i - 1))) {
+            i = lowerCaseHeaders.indexOf(parameter, i + 1);
+        }
+        if (i < 0) {
+            return null;
+        }
+        int from = i + parameter.length();
+        int to = headers.indexOf('"', from);
+        return to < 0 ? null : headers.substring(from, to);
+    }
+
+    private static String contentType(String headers, String lowerCaseHeaders) {
+        int i = lowerCaseHeaders.indexOf(CONTENT_TYPE);
+        if (i < 0) {
+            return null;
+        }
+        int from = i + CONTENT_TYPE.length();
+        int to = headers.indexOf('\r', from);
+        return (to < 0 ? headers.substring(from) : headers.substring(from, to)).trim();
+    }
+
+    private static String digest(ByteBuffer body, int from, int to) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer content = body.duplicate();
+        content.limit(to).position(from);
+        digest.update(content);
+        byte[] hash = digest.digest();
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    private static String decode(ByteBuffer body, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        ByteBuffer view = body.duplicate();
+        view.limit(to).position(from);
+        view.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void write(PayloadBuffer out, int outputEnd, ByteBuffer body, int from, int to) {
+        out.write(body, from, Math.min(to, from + outputEnd - out.length()));
+    }
+
+    private static void write(PayloadBuffer out, int outputEnd, byte[] bytes) {
+        out.write(bytes, 0, Math.max(0, Math.min(bytes.length, outputEnd - out.length())));
+    }
+
+    private static boolean startsWith(ByteBuffer body, int i, int end, byte first, byte second) {
+        return i + 1 < end && body.get(i) == first && body.get(i + 1) == second;
+    }
+
+    /**
+     * Index of the first occurrence of the concatenated byte sequences, or -1 when there is none.
+     */
+    private static int indexOf(ByteBuffer body, int from, int end, byte[]... sequence) {
+        int length = 0;
+        for (byte[] part : sequence) {
+            length += part.length;
+        }
+        for (int i = from; i + length <= end; i++) {
+            if (matches(body, i, sequence)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matches(ByteBuffer body, int i, byte[]... sequence) {
+        int k = i;
+        for (byte[] part : sequence) {
+            for (byte b : part) {
+                if (body.get(k++) != b) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.etherealscope.requestlogging;
+
+/**
+ * Format of the logged exchange.
+ */
+public enum OutputFormat {
+
+    /**
+     * Multi line text block with request and response sections.
+     */
+    TEXT,
+    /**
+     * One json object per exchange on a single line.
+     */
+    JSON
+
+}
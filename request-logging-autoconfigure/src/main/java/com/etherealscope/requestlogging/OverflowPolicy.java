@@ -0,0 +1,21 @@
+package com.etherealscope.requestlogging;
+
+/**
+ * What asynchronous logging does with an exchange when its queue is full.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Drop the exchange being logged.
+     */
+    DROP_NEWEST,
+    /**
+     * Drop the oldest queued exchange to make room.
+     */
+    DROP_OLDEST,
+    /**
+     * Wait for free space up to the block timeout, then drop the exchange being logged.
+     */
+    BLOCK
+
+}
@@ -0,0 +1,135 @@
+package com.etherealscope.requestlogging;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.Math.max;
+
+/**
+ * Growable byte buffer for building log output. Instances are pooled, so steady state
+ * logging reuses the same backing arrays instead of allocating per request.
+ */
+final class PayloadBuffer {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_POOLED_CAPACITY = 64 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 256;
+
+    private static final Queue<PayloadBuffer> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
+    private byte[] bytes = new byte[INITIAL_CAPACITY];
+    private int length;
+
+    private PayloadBuffer() {
+    }
+
+    /**
+     * Takes an empty buffer from the pool, or creates one when the pool is empty.
+     */
+    static PayloadBuffer acquire() {
+        PayloadBuffer buffer = POOL.poll();
+        if (buffer == null) {
+            return new PayloadBuffer();
+        }
+        POOLED.decrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Returns the buffer to the pool. Buffers grown beyond the pooled capacity are dropped.
+     */
+    void release() {
+        length = 0;
+        if (bytes.length > MAX_POOLED_CAPACITY) {
+            return;
+        }
+        if (POOLED.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+            POOL.offer(this);
+        } else {
+            POOLED.decrementAndGet();
+        }
+    }
+
+    int length() {
+        return length;
+    }
+
+    byte get(int index) {
+        return bytes[index];
+    }
+
+    PayloadBuffer write(byte b) {
+        ensureCapacity(1);
+        bytes[length++] = b;
+        return this;
+    }
+
+    PayloadBuffer write(byte[] src) {
+        return write(src, 0, src.length);
+    }
+
+    PayloadBuffer write(byte[] src, int offset, int count) {
+        ensureCapacity(count);
+        System.arraycopy(src, offset, bytes, length, count);
+        length += count;
+        return this;
+    }
+
+    /**
+     * Copies bytes between the absolute indexes {@code from} and {@code to} of the source,
+     * without changing its position.
+     */
+    PayloadBuffer write(ByteBuffer src, int from, int to) {
+        int count = to - from;
+        if (count <= 0) {
+            return this;
+        }
+        if (src.hasArray()) {
+            return write(src.array(), src.arrayOffset() + from, count);
+        }
+        ensureCapacity(count);
+        ByteBuffer view = src.duplicate();
+        view.limit(to);
+        view.position(from);
+        view.get(bytes, length, count);
+        length += count;
+        return this;
+    }
+
+    /**
+     * Copies the content to the destination from its position on.
+     */
+    void writeTo(ByteBuffer dst) {
+        dst.put(bytes, 0, length);
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, 0, length);
+    }
+
+    /**
+     * {@link XxHash64} of the content.
+     */
+    long hash() {
+        return XxHash64.hash(bytes, 0, length);
+    }
+
+    String toString(Charset charset) {
+        return new String(bytes, 0, length, charset);
+    }
+
+    private void ensureCapacity(int count) {
+        if (length + count > bytes.length) {
+            byte[] grown = new byte[max(bytes.length << 1, length + count)];
+            System.arraycopy(bytes, 0, grown, 0, length);
+            bytes = grown;
+        }
+    }
+
+}
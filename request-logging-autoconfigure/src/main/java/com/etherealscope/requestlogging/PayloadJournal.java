@@ -0,0 +1,246 @@
+package com.etherealscope.requestlogging;
+
+import com.etherealscope.requestlogging.RequestLoggingProperties.Journal;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import static com.etherealscope.requestlogging.MaskUtils.maskBody;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Rolling journal of masked bodies too large to be logged inline, kept in memory mapped segment files.
+ * Appending only reserves space in the current segment and copies the bytes into the mapping, segment files
+ * are created, mapped and deleted by a background thread, so a logging thread never issues a write syscall.
+ * When the next segment is not ready in time, the body is logged inline cut to max payload size instead.
+ */
+@Slf4j
+class PayloadJournal implements Closeable {
+
+    static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d{12})\\.bin");
+    private static final long RETENTION_INTERVAL_SECONDS = 10;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long maxSize;
+    private final long maxAgeMillis;
+    private final AtomicReference<Segment> current = new AtomicReference<>();
+    private final AtomicReference<Segment> next = new AtomicReference<>();
+    private final LongAdder rejected = new LongAdder();
+    private final ScheduledExecutorService executor;
+    private long sequence;
+
+    PayloadJournal(Journal config) {
+        this.directory = Paths.get(config.getDirectory());
+        this.segmentSize = (int) config.getSegmentSize().toBytes();
+        this.maxSize = config.getMaxSize().toBytes();
+        this.maxAgeMillis = config.getMaxAge().toMillis();
+        try {
+            Files.createDirectories(directory);
+            this.sequence = lastSequence();
+            this.current.set(createSegment());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open request logging journal in " + directory, e);
+        }
+        this.executor = newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "request-logging-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.execute(this::prepareNext);
+        executor.scheduleWithFixedDelay(this::applyRetention, RETENTION_INTERVAL_SECONDS, RETENTION_INTERVAL_SECONDS, SECONDS);
+    }
+
+    /**
+     * Masks the whole body into the journal, when it is longer than {@code maxLength}.
+     *
+     * @return reference to the masked body, or null when it is to be logged inline
+     */
+    JournalRef spill(ByteBuffer body, int maxLength, String contentType, List<CompiledMask> masks) {
+        if (body.remaining() <= maxLength) {
+            return null;
+        }
+        PayloadBuffer masked = PayloadBuffer.acquire();
+        try {
+            maskBody(body, body.remaining(), contentType, masks, masked);
+            return append(masked);
+        } finally {
+            masked.release();
+        }
+    }
+
+    /**
+     * Number of bodies logged inline because the journal had no room for them.
+     */
+    long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        if (getRejectedCount() > 0) {
+            log.warn("Request logging journal had no room for {} bodies", getRejectedCount());
+        }
+    }
+
+    private JournalRef append(PayloadBuffer data) {
+        int length = data.length();
+        if (length > segmentSize) {
+            rejected.increment();
+            return null;
+        }
+        Segment segment = current.get();
+        int offset = segment.reserve(length);
+        while (offset < 0) {
+            segment = roll(segment);
+            if (segment == null) {
+                rejected.increment();
+                return null;
+            }
+            offset = segment.reserve(length);
+        }
+        ByteBuffer target = segment.buffer.duplicate();
+        target.position(offset);
+        data.writeTo(target);
+        target.flip();
+        target.position(offset);
+        CRC32 crc = new CRC32();
+        crc.update(target);
+        return new JournalRef(segment.name, offset, length, crc.getValue());
+    }
+
+    /**
+     * Replaces the full segment by the prepared one. Only the thread taking the prepared segment
+     * changes the current one, so the swap cannot race.
+     */
+    private Segment roll(Segment full) {
+        Segment segment = current.get();
+        if (segment != full) {
+            return segment;
+        }
+        Segment prepared = next.getAndSet(null);
+        if (prepared == null) {
+            return null;
+        }
+        current.set(prepared);
+        executor.execute(this::prepareNext);
+        return prepared;
+    }
+
+    private void prepareNext() {
+        if (next.get() != null) {
+            return;
+        }
+        try {
+            next.set(createSegment());
+        } catch (IOException e) {
+            log.warn("Cannot create request logging journal segment in {}", directory, e);
+        }
+        applyRetention();
+    }
+
+    private Segment createSegment() throws IOException {
+        String name = String.format("journal-%012d.bin", ++sequence);
+        try (FileChannel channel = FileChannel.open(directory.resolve(name), CREATE_NEW, READ, WRITE)) {
+            return new Segment(name, channel.map(READ_WRITE, 0, segmentSize));
+        }
+    }
+
+    /**
+     * Deletes the oldest segments while the journal is too large or they are too old,
+     * the current and the prepared segment are always kept.
+     */
+    private void applyRetention() {
+        try {
+            List<Path> segments = segments();
+            long total = (long) segments.size() * segmentSize;
+            long oldest = System.currentTimeMillis() - maxAgeMillis;
+            for (int i = 0; i < segments.size() - 2; i++) {
+                Path segment = segments.get(i);
+                if (total <= maxSize && Files.getLastModifiedTime(segment).toMillis() >= oldest) {
+                    break;
+                }
+                Files.deleteIfExists(segment);
+                total -= segmentSize;
+            }
+        } catch (IOException e) {
+            log.warn("Cannot apply request logging journal retention in {}", directory, e);
+        }
+    }
+
+    private long lastSequence() throws IOException {
+        List<Path> segments = segments();
+        if (segments.isEmpty()) {
+            return 0;
+        }
+        String name = segments.get(segments.size() - 1).getFileName().toString();
+        return Long.parseLong(name.substring("journal-".length(), name.length() - ".bin".length()));
+    }
+
+    /**
+     * Segment files ordered from the oldest, names are zero padded so they sort by sequence.
+     */
+    private List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                if (SEGMENT_NAME.matcher(path.getFileName().toString()).matches()) {
+                    segments.add(path);
+                }
+            }
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    private static final class Segment {
+
+        private final String name;
+        private final MappedByteBuffer buffer;
+        private final AtomicInteger position = new AtomicInteger();
+
+        Segment(String name, MappedByteBuffer buffer) {
+            this.name = name;
+            this.buffer = buffer;
+        }
+
+        /**
+         * @return offset of the reserved space, or -1 when the segment is full
+         */
+        int reserve(int length) {
+            while (true) {
+                int offset = position.get();
+                if ((long) offset + length > buffer.capacity()) {
+                    return -1;
+                }
+                if (position.compareAndSet(offset, offset + length)) {
+                    return offset;
+                }
+            }
+        }
+    }
+
+}
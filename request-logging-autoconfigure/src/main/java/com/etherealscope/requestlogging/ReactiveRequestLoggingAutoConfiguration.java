@@ -0,0 +1,37 @@
+package com.etherealscope.requestlogging;
+
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.web.reactive.WebFluxAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.server.WebFilter;
+import reactor.core.publisher.Flux;
+
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.REACTIVE;
+
+@Configuration
+@ConditionalOnWebApplication(type = REACTIVE)
+@ConditionalOnProperty(name = "ethereal.logging.enabled", havingValue = "true", matchIfMissing = true)
+@ConditionalOnClass({ WebFilter.class, Flux.class })
+@EnableConfigurationProperties(RequestLoggingProperties.class)
+@AutoConfigureAfter(WebFluxAutoConfiguration.class)
+public class ReactiveRequestLoggingAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean(RequestLoggingControl.class)
+    public RequestLoggingControl requestLoggingControl(RequestLoggingProperties requestLoggingProperties) {
+        return new RequestLoggingControl(requestLoggingProperties);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(ReactiveRequestLoggingFilter.class)
+    public ReactiveRequestLoggingFilter reactiveRequestLoggingFilter(RequestLoggingControl requestLoggingControl) {
+        return new ReactiveRequestLoggingFilter(requestLoggingControl);
+    }
+
+}
@@ -0,0 +1,225 @@
+package com.etherealscope.requestlogging;
+
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.etherealscope.requestlogging.CommonUtils.characterEncoding;
+import static java.lang.System.nanoTime;
+import static lombok.AccessLevel.PRIVATE;
+import static org.springframework.core.Ordered.HIGHEST_PRECEDENCE;
+import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
+
+/**
+ * Reactive counterpart of {@link RequestLoggingFilter}. Bodies are copied from the data buffers passing through,
+ * the exchange is snapshotted on completion and handed to {@link RequestLoggingControl#log(ExchangeRecord)},
+ * so with asynchronous logging the event loop only takes the snapshot.
+ * <p>
+ * An exchange whose chain failed before any error status was set is logged as 500, like a thrown chain
+ * of the servlet filter, and one cancelled by the client before a status was set as 499.
+ */
+@Slf4j(topic = "com.etherealscope.requestlogging.RequestLoggingFilter")
+@Order(HIGHEST_PRECEDENCE)
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public class ReactiveRequestLoggingFilter implements WebFilter, DisposableBean {
+
+    private static final ByteBuffer EMPTY_BODY = ByteBuffer.allocate(0);
+    private static final int DEFAULT_STATUS = 200;
+    private static final int CLIENT_CLOSED_REQUEST = 499;
+    private static final int INTERNAL_SERVER_ERROR = 500;
+
+    RequestLoggingControl control;
+    boolean ownsControl;
+    SlabPool requestPool;
+    SlabPool responsePool;
+
+    public ReactiveRequestLoggingFilter(RequestLoggingProperties props) {
+        this(new RequestLoggingControl(props), true);
+    }
+
+    public ReactiveRequestLoggingFilter(RequestLoggingControl control) {
+        this(control, false);
+    }
+
+    private ReactiveRequestLoggingFilter(RequestLoggingControl control, boolean ownsControl) {
+        RequestLoggingProperties props = control.getStartupProperties();
+        this.control = control;
+        this.ownsControl = ownsControl;
+        this.requestPool = SlabPool.requestPool(props);
+        this.responsePool = SlabPool.responsePool(props);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+
+        if (!log.isDebugEnabled()) {
+            return chain.filter(exchange);
+        }
+
+        ServerHttpRequest request = exchange.getRequest();
+        LoggingPlans plans = control.getPlans();
+        LoggingPlan plan = plans.get(ReactiveUtils.method(request), request.getPath().pathWithinApplication().value());
+        if (!plan.sample()) {
+            return chain.filter(exchange);
+        }
+
+        long startNanos = nanoTime();
+
+        CapturingServerHttpRequest capturedRequest = null;
+        if (plans.shouldLogRequestBody(plan, request.getHeaders().getFirst(CONTENT_TYPE))) {
+            capturedRequest = new CapturingServerHttpRequest(request, requestPool);
+        }
+
+        CapturingServerHttpResponse capturedResponse = null;
+        if (plan.isCaptureResponseBody()) {
+            capturedResponse = new CapturingServerHttpResponse(exchange.getResponse(), responsePool,
+                    contentType -> plans.shouldLogResponseBody(plan, contentType));
+        }
+
+        ServerWebExchange decorated = exchange;
+        if (capturedRequest != null || capturedResponse != null) {
+            ServerWebExchange.Builder builder = exchange.mutate();
+            if (capturedRequest != null) {
+                builder.request(capturedRequest);
+            }
+            if (capturedResponse != null) {
+                builder.response(capturedResponse);
+            }
+            decorated = builder.build();
+        }
+
+        ServerWebExchange logged = decorated;
+        CapturingServerHttpRequest requestBody = capturedRequest;
+        CapturingServerHttpResponse responseBody = capturedResponse;
+        return chain.filter(decorated)
+                .doFinally(signal -> complete(logged, signal, plans, plan, requestBody, responseBody, nanoTime() - startNanos));
+    }
+
+    @Override
+    public void destroy() {
+        if (ownsControl) {
+            control.destroy();
+        }
+    }
+
+    private void complete(ServerWebExchange exchange, SignalType signal, LoggingPlans plans, LoggingPlan plan,
+                          CapturingServerHttpRequest requestBody, CapturingServerHttpResponse responseBody, long elapsedNanos) {
+        ServerHttpResponse response = exchange.getResponse();
+        int status = status(response, signal);
+        if (plan.getAggregator() != null) {
+            plan.getAggregator().record(ReactiveUtils.method(exchange.getRequest()), status, elapsedNanos);
+            return;
+        }
+        CaptureBuffer requestCapture = requestBody != null ? requestBody.getCapture() : null;
+        CaptureBuffer responseCapture = responseBody != null ? responseBody.getCapture() : null;
+        if (!plan.logsAnything() || !plans.shouldLogExchange(status, elapsedNanos)) {
+            ExchangeRecord.release(requestCapture, responseCapture);
+            return;
+        }
+        ExchangeRecord record;
+        try {
+            record = new ExchangeRecord(plan,
+                    plan.isLogRequest() ? snapshotRequest(exchange.getRequest(), requestBody, plans, plan) : null,
+                    plan.isLogResponse() ? snapshotResponse(response, status, responseBody, plans, plan) : null,
+                    plans.getProps().isIncludeTimeElapsed() ? elapsedNanos : -1,
+                    requestCapture,
+                    responseCapture,
+                    false);
+        } catch (RuntimeException e) {
+            ExchangeRecord.release(requestCapture, responseCapture);
+            throw e;
+        }
+        control.log(record);
+    }
+
+    private RequestSnapshot snapshotRequest(ServerHttpRequest request, CapturingServerHttpRequest requestBody, LoggingPlans plans, LoggingPlan plan) {
+        RequestLoggingProperties.Request config = plans.getProps().getRequest();
+        HttpHeaders headers = request.getHeaders();
+        String contentType = headers.getFirst(CONTENT_TYPE);
+        RequestSnapshot.RequestSnapshotBuilder snapshot = RequestSnapshot.builder()
+                .method(ReactiveUtils.method(request))
+                .url(request.getURI().toString())
+                .contentType(contentType)
+                .contentLength(headers.getContentLength())
+                .characterEncoding(characterEncoding(headers));
+
+        if (config.isIncludeQueryParams()) {
+            Map<String, String[]> queryParams = new LinkedHashMap<>();
+            for (Map.Entry<String, List<String>> param : request.getQueryParams().entrySet()) {
+                queryParams.put(param.getKey(), param.getValue().toArray(new String[0]));
+            }
+            snapshot.queryParams(queryParams);
+        }
+
+        if (plan.getRequestHeaders() != null) {
+            snapshot.headers(plan.getRequestHeaders().select(headers));
+        }
+
+        if (config.isIncludeIpAddress()) {
+            snapshot.ipAddress(ipAddress(request.getRemoteAddress()));
+        }
+
+        if (plans.shouldLogRequestBody(plan, contentType)) {
+            snapshot.body(requestBody != null ? requestBody.getContent() : EMPTY_BODY);
+        }
+
+        return snapshot.build();
+    }
+
+    private ResponseSnapshot snapshotResponse(ServerHttpResponse response, int status, CapturingServerHttpResponse responseBody,
+                                              LoggingPlans plans, LoggingPlan plan) {
+        HttpHeaders headers = response.getHeaders();
+        String contentType = headers.getFirst(CONTENT_TYPE);
+        ResponseSnapshot.ResponseSnapshotBuilder snapshot = ResponseSnapshot.builder()
+                .status(status)
+                .contentType(contentType)
+                .characterEncoding(characterEncoding(headers));
+
+        if (plan.getResponseHeaders() != null) {
+            snapshot.headers(plan.getResponseHeaders().select(headers));
+        }
+
+        if (plans.shouldLogResponseBody(plan, contentType)) {
+            snapshot.body(responseBody != null ? responseBody.getContent() : EMPTY_BODY);
+        }
+
+        return snapshot.build();
+    }
+
+    /**
+     * Status set on the response, unless the chain failed without an error status or was cancelled without any.
+     */
+    private static int status(ServerHttpResponse response, SignalType signal) {
+        Integer status = ReactiveUtils.status(response);
+        if (signal == SignalType.ON_ERROR && (status == null || status < 400)) {
+            return INTERNAL_SERVER_ERROR;
+        }
+        if (status == null) {
+            return signal == SignalType.CANCEL ? CLIENT_CLOSED_REQUEST : DEFAULT_STATUS;
+        }
+        return status;
+    }
+
+    private static String ipAddress(InetSocketAddress address) {
+        if (address == null) {
+            return null;
+        }
+        return address.getAddress() != null ? address.getAddress().getHostAddress() : address.getHostString();
+    }
+
+}
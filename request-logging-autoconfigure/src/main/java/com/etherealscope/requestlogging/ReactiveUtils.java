@@ -0,0 +1,36 @@
+package com.etherealscope.requestlogging;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.reactive.function.client.ClientResponse;
+
+/**
+ * Reactive api the filter and the web client logging use, where Spring 5 and Spring 6 differ.
+ * The jakarta variant has its own copy written against Spring 6.
+ */
+class ReactiveUtils {
+
+    static String method(ServerHttpRequest request) {
+        return request.getMethodValue();
+    }
+
+    /**
+     * @return null when no status was set yet
+     */
+    static Integer status(ServerHttpResponse response) {
+        return response.getRawStatusCode();
+    }
+
+    static int status(ClientResponse response) {
+        return response.rawStatusCode();
+    }
+
+    /**
+     * Copies the readable bytes of the buffer without moving its read position.
+     */
+    static void capture(DataBuffer buffer, CaptureBuffer capture) {
+        capture.write(buffer.asByteBuffer());
+    }
+
+}
@@ -1,6 +1,9 @@
 package com.etherealscope.requestlogging;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -14,18 +17,41 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 import javax.servlet.Servlet;
 
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.SERVLET;
+
 @Configuration
-@ConditionalOnWebApplication
+@ConditionalOnWebApplication(type = SERVLET)
 @ConditionalOnProperty(name = "ethereal.logging.enabled", havingValue = "true", matchIfMissing = true)
 @ConditionalOnClass({ Servlet.class, DispatcherServlet.class, WebMvcConfigurer.class })
 @EnableConfigurationProperties(RequestLoggingProperties.class)
-@AutoConfigureAfter(WebMvcAutoConfiguration.class)
+@AutoConfigureAfter(value = WebMvcAutoConfiguration.class,
+        name = "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration")
 public class RequestLoggingAutoConfiguration {
 
+    @Bean
+    @ConditionalOnMissingBean(RequestLoggingControl.class)
+    public RequestLoggingControl requestLoggingControl(RequestLoggingProperties requestLoggingProperties) {
+        return new RequestLoggingControl(requestLoggingProperties);
+    }
+
     @Bean
     @ConditionalOnMissingBean(RequestLoggingFilter.class)
-    public RequestLoggingFilter requestLoggingFilter(RequestLoggingProperties requestLoggingProperties) {
-        return new RequestLoggingFilter(requestLoggingProperties);
+    public RequestLoggingFilter requestLoggingFilter(RequestLoggingControl requestLoggingControl,
+                                                     ObjectProvider<ExchangeMetrics> exchangeMetrics) {
+        return new RequestLoggingFilter(requestLoggingControl, exchangeMetrics.getIfAvailable(() -> ExchangeMetrics.NONE));
+    }
+
+    @Configuration
+    @ConditionalOnClass(MeterRegistry.class)
+    @ConditionalOnBean(MeterRegistry.class)
+    @ConditionalOnProperty(name = "ethereal.logging.metrics.enabled", havingValue = "true", matchIfMissing = true)
+    static class RequestLoggingMetricsConfiguration {
+
+        @Bean
+        ExchangeMetrics requestLoggingExchangeMetrics(MeterRegistry meterRegistry) {
+            return new MicrometerExchangeMetrics(meterRegistry);
+        }
+
     }
 
 }
@@ -0,0 +1,189 @@
+package com.etherealscope.requestlogging;
+
+import lombok.experimental.FieldDefaults;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.etherealscope.requestlogging.CommonUtils.characterEncoding;
+import static lombok.AccessLevel.PRIVATE;
+import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
+
+/**
+ * Outbound exchange logging shared by {@link RequestLoggingClientInterceptor} and {@link RequestLoggingExchangeFilterFunction}.
+ * Plans are looked up by http method and route, the target host and path like {@code api.example.com/orders/1},
+ * so path lists and masks select outbound requests the way servlet paths select inbound ones.
+ * Records go to the exchange logger of the filter, under the {@value #LOGGER_NAME} logger.
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+final class RequestLoggingClient {
+
+    static final String LOGGER_NAME = "com.etherealscope.requestlogging.RequestLoggingClient";
+
+    RequestLoggingControl control;
+    SlabPool requestPool;
+    SlabPool responsePool;
+
+    RequestLoggingClient(RequestLoggingControl control) {
+        RequestLoggingProperties props = control.getStartupProperties().clientProperties();
+        this.control = control;
+        this.requestPool = SlabPool.requestPool(props);
+        this.responsePool = SlabPool.responsePool(props);
+    }
+
+    LoggingPlans getPlans() {
+        return control.getClientPlans();
+    }
+
+    /**
+     * Empty capture of a request body, taken from the pool on the first write.
+     */
+    CaptureBuffer requestCapture() {
+        return new CaptureBuffer(requestPool);
+    }
+
+    /**
+     * Empty capture of a response body, taken from the pool on the first write.
+     */
+    CaptureBuffer responseCapture() {
+        return new CaptureBuffer(responsePool);
+    }
+
+    /**
+     * Host and path of the target, the user info, port and query are left out.
+     */
+    static String route(URI uri) {
+        String path = uri.getRawPath();
+        return (uri.getHost() != null ? uri.getHost() : "") + (path == null || path.isEmpty() ? "/" : path);
+    }
+
+    /**
+     * Logs the completed exchange, or only releases the captures when its status is not selected
+     * or the snapshot fails. A capture is null when its body is not logged.
+     */
+    void complete(LoggingPlans plans, LoggingPlan plan, String method, URI uri, HttpHeaders requestHeaders, long requestContentLength,
+                  CaptureBuffer requestCapture, int status, HttpHeaders responseHeaders, CaptureBuffer responseCapture, long elapsedNanos) {
+        complete(plans, plan, method, uri, requestHeaders, requestContentLength, requestCapture, status, responseHeaders,
+                responseCapture, null, elapsedNanos);
+    }
+
+    /**
+     * Logs an exchange that failed before its response arrived, with the exception class in place of the response.
+     * Its status is 0, which status codes select like any status out of the valid range.
+     */
+    void fail(LoggingPlans plans, LoggingPlan plan, String method, URI uri, HttpHeaders requestHeaders, long requestContentLength,
+              CaptureBuffer requestCapture, CaptureBuffer responseCapture, Throwable failure, long elapsedNanos) {
+        complete(plans, plan, method, uri, requestHeaders, requestContentLength, requestCapture, 0, null,
+                responseCapture, failure.getClass().getName(), elapsedNanos);
+    }
+
+    private void complete(LoggingPlans plans, LoggingPlan plan, String method, URI uri, HttpHeaders requestHeaders, long requestContentLength,
+                          CaptureBuffer requestCapture, int status, HttpHeaders responseHeaders, CaptureBuffer responseCapture,
+                          String failure, long elapsedNanos) {
+        if (!plans.shouldLogExchange(status, elapsedNanos)) {
+            ExchangeRecord.release(requestCapture, responseCapture);
+            return;
+        }
+        ExchangeRecord record;
+        try {
+            ResponseSnapshot response = null;
+            if (failure != null) {
+                response = ResponseSnapshot.builder().failure(failure).build();
+            } else if (plan.isLogResponse()) {
+                response = snapshotResponse(status, responseHeaders, responseCapture, plan);
+            }
+            record = new ExchangeRecord(plan,
+                    plan.isLogRequest() ? snapshotRequest(method, uri, requestHeaders, requestContentLength, requestCapture, plans, plan) : null,
+                    response,
+                    plans.getProps().isIncludeTimeElapsed() ? elapsedNanos : -1,
+                    requestCapture,
+                    responseCapture,
+                    true);
+        } catch (RuntimeException e) {
+            ExchangeRecord.release(requestCapture, responseCapture);
+            throw e;
+        }
+        control.log(record);
+    }
+
+    private static RequestSnapshot snapshotRequest(String method, URI uri, HttpHeaders headers, long contentLength,
+                                                   CaptureBuffer requestCapture, LoggingPlans plans, LoggingPlan plan) {
+        RequestSnapshot.RequestSnapshotBuilder snapshot = RequestSnapshot.builder()
+                .method(method)
+                .url(url(uri))
+                .contentType(headers.getFirst(CONTENT_TYPE))
+                .contentLength(contentLength)
+                .characterEncoding(characterEncoding(headers));
+
+        if (plans.getProps().getRequest().isIncludeQueryParams() && uri.getRawQuery() != null) {
+            snapshot.queryParams(queryParams(uri));
+        }
+
+        if (plan.getRequestHeaders() != null) {
+            snapshot.headers(plan.getRequestHeaders().select(headers));
+        }
+
+        if (requestCapture != null) {
+            snapshot.body(requestCapture.content());
+        }
+
+        return snapshot.build();
+    }
+
+    private static ResponseSnapshot snapshotResponse(int status, HttpHeaders headers, CaptureBuffer responseCapture, LoggingPlan plan) {
+        ResponseSnapshot.ResponseSnapshotBuilder snapshot = ResponseSnapshot.builder()
+                .status(status)
+                .contentType(headers.getFirst(CONTENT_TYPE))
+                .characterEncoding(characterEncoding(headers));
+
+        if (plan.getResponseHeaders() != null) {
+            snapshot.headers(plan.getResponseHeaders().select(headers));
+        }
+
+        if (responseCapture != null) {
+            snapshot.body(responseCapture.content());
+        }
+
+        return snapshot.build();
+    }
+
+    /**
+     * Url without user info and query, which are logged as query params when configured.
+     */
+    private static String url(URI uri) {
+        StringBuilder sb = new StringBuilder();
+        if (uri.getScheme() != null) {
+            sb.append(uri.getScheme()).append("://");
+        }
+        if (uri.getHost() != null) {
+            sb.append(uri.getHost());
+        }
+        if (uri.getPort() >= 0) {
+            sb.append(':').append(uri.getPort());
+        }
+        if (uri.getRawPath() != null) {
+            sb.append(uri.getRawPath());
+        }
+        return sb.toString();
+    }
+
+    private static Map<String, String[]> queryParams(URI uri) {
+        MultiValueMap<String, String> params = UriComponentsBuilder.fromUri(uri).build().getQueryParams();
+        Map<String, String[]> queryParams = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> param : params.entrySet()) {
+            String[] values = new String[param.getValue().size()];
+            for (int i = 0; i < values.length; i++) {
+                String value = param.getValue().get(i);
+                values[i] = value != null ? value : "";
+            }
+            queryParams.put(param.getKey(), values);
+        }
+        return queryParams;
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.etherealscope.requestlogging;
+
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.client.RestTemplateCustomizer;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+@Configuration
+@ConditionalOnProperty(name = "ethereal.logging.client.enabled", havingValue = "true")
+@EnableConfigurationProperties(RequestLoggingProperties.class)
+@AutoConfigureAfter({ RequestLoggingAutoConfiguration.class, ReactiveRequestLoggingAutoConfiguration.class })
+public class RequestLoggingClientAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean(RequestLoggingControl.class)
+    public RequestLoggingControl requestLoggingControl(RequestLoggingProperties requestLoggingProperties) {
+        return new RequestLoggingControl(requestLoggingProperties);
+    }
+
+    @Configuration
+    @ConditionalOnClass({ RestTemplate.class, RestTemplateCustomizer.class })
+    static class RestTemplateLoggingConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean(RequestLoggingClientInterceptor.class)
+        public RequestLoggingClientInterceptor requestLoggingClientInterceptor(RequestLoggingControl requestLoggingControl) {
+            return new RequestLoggingClientInterceptor(requestLoggingControl);
+        }
+
+        /**
+         * Added last, so the request is logged as sent, with headers added by other interceptors.
+         */
+        @Bean
+        public RestTemplateCustomizer requestLoggingRestTemplateCustomizer(RequestLoggingClientInterceptor requestLoggingClientInterceptor) {
+            return restTemplate -> restTemplate.getInterceptors().add(requestLoggingClientInterceptor);
+        }
+
+    }
+
+    @Configuration
+    @ConditionalOnClass({ WebClient.class, Flux.class })
+    static class WebClientLoggingConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean(RequestLoggingExchangeFilterFunction.class)
+        public RequestLoggingExchangeFilterFunction requestLoggingExchangeFilterFunction(RequestLoggingControl requestLoggingControl) {
+            return new RequestLoggingExchangeFilterFunction(requestLoggingControl);
+        }
+
+        @Bean
+        public WebClientCustomizer requestLoggingWebClientCustomizer(RequestLoggingExchangeFilterFunction requestLoggingExchangeFilterFunction) {
+            return builder -> builder.filter(requestLoggingExchangeFilterFunction);
+        }
+
+    }
+
+}
@@ -0,0 +1,170 @@
+package com.etherealscope.requestlogging;
+
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+import static java.lang.System.nanoTime;
+import static lombok.AccessLevel.PRIVATE;
+import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
+
+/**
+ * Logs requests sent by a {@code RestTemplate} and their responses. The request body, already buffered by the
+ * template, is copied up to the max payload size. The response body is copied while the application reads it
+ * and the exchange is logged once the response is closed, so streamed responses are never buffered.
+ * A request failing before its response arrived is logged with the exception class in place of the response.
+ */
+@Slf4j(topic = RequestLoggingClient.LOGGER_NAME)
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public class RequestLoggingClientInterceptor implements ClientHttpRequestInterceptor {
+
+    RequestLoggingClient client;
+
+    public RequestLoggingClientInterceptor(RequestLoggingControl control) {
+        this.client = new RequestLoggingClient(control);
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+
+        if (!log.isDebugEnabled()) {
+            return execution.execute(request, body);
+        }
+
+        LoggingPlans plans = client.getPlans();
+        LoggingPlan plan = plans.get(request.getMethod().name(), RequestLoggingClient.route(request.getURI()));
+        if (!plan.logsAnything()) {
+            return execution.execute(request, body);
+        }
+
+        long startNanos = nanoTime();
+        CaptureBuffer requestCapture = null;
+        if (plans.shouldLogRequestBody(plan, request.getHeaders().getFirst(CONTENT_TYPE))) {
+            requestCapture = client.requestCapture();
+            requestCapture.write(body, 0, body.length);
+        }
+
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        } catch (IOException | RuntimeException e) {
+            client.fail(plans, plan, request.getMethod().name(), request.getURI(), request.getHeaders(), body.length,
+                    requestCapture, null, e, nanoTime() - startNanos);
+            throw e;
+        }
+        return new LoggingClientHttpResponse(response, request.getMethod().name(), request.getURI(), request.getHeaders(),
+                body.length, requestCapture, plans, plan, startNanos);
+    }
+
+    /**
+     * Whether the body is captured is decided by its content type when the application first asks for it.
+     */
+    private class LoggingClientHttpResponse extends DelegatingClientHttpResponse {
+
+        private final String method;
+        private final URI uri;
+        private final HttpHeaders requestHeaders;
+        private final long requestContentLength;
+        private final CaptureBuffer requestCapture;
+        private final LoggingPlans plans;
+        private final LoggingPlan plan;
+        private final long startNanos;
+        private CaptureBuffer responseCapture;
+        private InputStream body;
+        private boolean closed;
+
+        LoggingClientHttpResponse(ClientHttpResponse delegate, String method, URI uri, HttpHeaders requestHeaders,
+                                  long requestContentLength, CaptureBuffer requestCapture, LoggingPlans plans,
+                                  LoggingPlan plan, long startNanos) {
+            super(delegate);
+            this.method = method;
+            this.uri = uri;
+            this.requestHeaders = requestHeaders;
+            this.requestContentLength = requestContentLength;
+            this.requestCapture = requestCapture;
+            this.plans = plans;
+            this.plan = plan;
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                InputStream delegateBody = delegate.getBody();
+                if (plans.shouldLogResponseBody(plan, getHeaders().getFirst(CONTENT_TYPE))) {
+                    responseCapture = client.responseCapture();
+                    body = new CapturingInputStream(delegateBody, responseCapture);
+                } else {
+                    body = delegateBody;
+                }
+            }
+            return body;
+        }
+
+        /**
+         * Status and headers are taken before the connection is given back.
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                delegate.close();
+                return;
+            }
+            closed = true;
+            int status;
+            try {
+                status = status();
+            } catch (IOException e) {
+                delegate.close();
+                client.fail(plans, plan, method, uri, requestHeaders, requestContentLength, requestCapture,
+                        responseCapture, e, nanoTime() - startNanos);
+                return;
+            }
+            HttpHeaders responseHeaders = getHeaders();
+            delegate.close();
+            client.complete(plans, plan, method, uri, requestHeaders, requestContentLength, requestCapture,
+                    status, responseHeaders, responseCapture, nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Copies the first bytes read by the application, up to the slab size.
+     */
+    private static class CapturingInputStream extends FilterInputStream {
+
+        private final CaptureBuffer capture;
+
+        CapturingInputStream(InputStream in, CaptureBuffer capture) {
+            super(in);
+            this.capture = capture;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                capture.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            if (count > 0) {
+                capture.write(b, off, count);
+            }
+            return count;
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.etherealscope.requestlogging;
+
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.PropertiesPropertySourceLoader;
+import org.springframework.boot.env.PropertySourceLoader;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Checks the {@code ethereal.logging} configuration of application properties and yaml files at build time.
+ * The configuration is bound and validated the way it is at startup, unknown keys, which are ignored at startup,
+ * are rejected, and masks, status codes and path rules are compiled into logging plans, so a broken configuration
+ * fails the build rather than the deployment. Routes given as {@code METHOD:/path} are resolved and their plans printed.
+ * <pre>
+ * java -cp ... com.etherealscope.requestlogging.RequestLoggingConfigurationCheck src/main/resources/application.yml GET:/orders/1
+ * </pre>
+ * Files are merged in order, later ones taking precedence, profile specific documents included.
+ */
+public final class RequestLoggingConfigurationCheck {
+
+    private static final Pattern ROUTE = Pattern.compile("[A-Z]{3,}:.+");
+
+    private RequestLoggingConfigurationCheck() {
+    }
+
+    /**
+     * @param files application properties or yaml files
+     * @return the validated configuration
+     * @throws IllegalArgumentException when the configuration is invalid or has unknown keys
+     */
+    public static RequestLoggingProperties check(List<Path> files) throws IOException {
+        List<PropertySource<?>> sources = new ArrayList<>();
+        for (Path file : files) {
+            sources.addAll(load(file));
+        }
+        Collections.reverse(sources);
+        RequestLoggingProperties props = new RequestLoggingProperties();
+        RequestLoggingControl.bind(ConfigurationPropertySources.from(sources), props);
+        props.init();
+        plans(props);
+        new LoggingPlans(props.clientProperties(), new Samplers(), new Aggregators());
+        return props;
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<Path> files = new ArrayList<>();
+        List<String> routes = new ArrayList<>();
+        for (String arg : args) {
+            if (ROUTE.matcher(arg).matches()) {
+                routes.add(arg);
+            } else {
+                files.add(Paths.get(arg));
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: RequestLoggingConfigurationCheck <application properties or yaml>... [METHOD:/path]...");
+            System.exit(2);
+        }
+        RequestLoggingProperties props;
+        try {
+            props = check(files);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid ethereal.logging configuration: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        LoggingPlans plans = plans(props);
+        for (String route : routes) {
+            int separator = route.indexOf(':');
+            LoggingPlan plan = plans.get(route.substring(0, separator), route.substring(separator + 1));
+            System.out.println(route + " " + describe(plan));
+        }
+        System.out.println("ethereal.logging configuration is valid");
+    }
+
+    private static LoggingPlans plans(RequestLoggingProperties props) {
+        return new LoggingPlans(props, new Samplers(props.getSampling().getRules()), new Aggregators(props.getAggregation().getRules()));
+    }
+
+    private static List<PropertySource<?>> load(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        PropertySourceLoader loader = name.endsWith(".yml") || name.endsWith(".yaml")
+                ? new YamlPropertySourceLoader()
+                : new PropertiesPropertySourceLoader();
+        return loader.load(file.toString(), new FileSystemResource(file));
+    }
+
+    private static String describe(LoggingPlan plan) {
+        if (!plan.logsAnything()) {
+            return "not logged";
+        }
+        if (plan.getAggregator() != null) {
+            return "aggregated by " + plan.getAggregator().getRule().getPathMatcher();
+        }
+        return "request=" + (plan.isLogRequest() ? plan.isLogRequestBody() ? "with body" : "without body" : "no")
+                + " response=" + (plan.isLogResponse() ? plan.isCaptureResponseBody() ? "with body" : "without body" : "no")
+                + " request masks=" + plan.getRequestMasks().size()
+                + " response masks=" + plan.getResponseMasks().size()
+                + (plan.getSampler() != null ? " sampled" : "");
+    }
+
+}
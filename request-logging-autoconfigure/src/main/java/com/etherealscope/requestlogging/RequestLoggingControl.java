@@ -0,0 +1,373 @@
+package com.etherealscope.requestlogging;
+
+import lombok.Setter;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.properties.bind.BindException;
+import org.springframework.boot.context.properties.bind.BindHandler;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.bind.handler.NoUnboundElementsBindHandler;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySource;
+import org.springframework.boot.context.properties.source.InvalidConfigurationPropertyNameException;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.boot.convert.ApplicationConversionService;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Logging configuration changeable at runtime, without a restart. A change is validated like the bound properties,
+ * compiled into new {@link LoggingPlans} and swapped in atomically, so the filters read everything about a request
+ * with one volatile load. A change may expire, the configuration it replaced is restored then. A change that does not
+ * expire, made while timed changes are active, replaces the configuration they restore and takes effect once they expire.
+ * <p>
+ * Path lists, content types, masks, status codes, sampling, aggregation rules, tail logging and payload sizes
+ * up to the sizes configured at startup can be changed. Async, output, metrics, capture pool, journal, export, dedup,
+ * plan cache size, the sampling summary interval, the aggregation window and whether clients are logged
+ * are fixed at startup.
+ * <p>
+ * Also owns the exchange logger shared by the filter and the http clients, so they write to one journal.
+ * Changes are serialized by a lock rather than by synchronized methods, which would pin a virtual thread
+ * to its carrier while a change is logged.
+ */
+@Slf4j
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public class RequestLoggingControl implements DisposableBean {
+
+    private static final String PREFIX = "ethereal.logging";
+
+    RequestLoggingProperties startup;
+    int requestCaptureSize;
+    int responseCaptureSize;
+    int clientRequestCaptureSize;
+    int clientResponseCaptureSize;
+    ExchangeLogger exchangeLogger;
+    AsyncExchangeLogger asyncLogger;
+    Snapshot initial;
+    AtomicReference<Snapshot> current;
+    ScheduledExecutorService scheduler;
+    ReentrantLock changeLock = new ReentrantLock();
+
+    public RequestLoggingControl(RequestLoggingProperties props) {
+        this.startup = props.copy();
+        this.requestCaptureSize = startup.getRequest().getMaxPayloadSize();
+        this.responseCaptureSize = startup.getResponse().getMaxPayloadSize();
+        this.clientRequestCaptureSize = startup.getClient().getRequest().getMaxPayloadSize();
+        this.clientResponseCaptureSize = startup.getClient().getResponse().getMaxPayloadSize();
+        this.exchangeLogger = new ExchangeLogger(startup);
+        this.asyncLogger = startup.getAsync().isEnabled() ? new AsyncExchangeLogger(exchangeLogger, startup.getAsync()) : null;
+        this.initial = compile(startup, null, null);
+        this.current = new AtomicReference<>(initial);
+        this.scheduler = newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "request-logging-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = startup.getSampling().getSummaryInterval().toMillis();
+        scheduler.scheduleAtFixedRate(() -> getPlans().getSamplers().logSummary(), interval, interval, MILLISECONDS);
+        long window = startup.getAggregation().getWindow().toMillis();
+        scheduler.scheduleAtFixedRate(() -> getPlans().getAggregators().logSummary(), window, window, MILLISECONDS);
+    }
+
+    /**
+     * Plans of the current configuration, read once per request.
+     */
+    LoggingPlans getPlans() {
+        return current.get().getPlans();
+    }
+
+    /**
+     * Plans of outbound exchanges of the current configuration, read once per request.
+     */
+    LoggingPlans getClientPlans() {
+        return current.get().getClientPlans();
+    }
+
+    /**
+     * Configuration of the application properties, sizing what is fixed at startup.
+     */
+    RequestLoggingProperties getStartupProperties() {
+        return startup;
+    }
+
+    ExchangeLogger getExchangeLogger() {
+        return exchangeLogger;
+    }
+
+    /**
+     * Null when asynchronous logging is not enabled.
+     */
+    AsyncExchangeLogger getAsyncLogger() {
+        return asyncLogger;
+    }
+
+    /**
+     * Hands the record over to the background worker or logs it on the calling thread,
+     * its captures are released either way.
+     */
+    void log(ExchangeRecord record) {
+        if (asyncLogger != null) {
+            asyncLogger.log(record);
+        } else {
+            try {
+                exchangeLogger.log(record);
+            } finally {
+                record.release();
+            }
+        }
+    }
+
+    /**
+     * Copy of the current configuration.
+     */
+    public RequestLoggingProperties getProperties() {
+        return getPlans().getProps().copy();
+    }
+
+    /**
+     * When the current configuration expires, null if it does not.
+     */
+    public Instant getExpiresAt() {
+        return current.get().getExpiresAt();
+    }
+
+    /**
+     * Changes the current configuration by properties named relative to {@code ethereal.logging}, in any form
+     * accepted in application properties, like {@code request.white-listed-servlet-paths}. Arrays are replaced
+     * as a whole, nested maps and lists are accepted as well. A timed change is made to the current configuration,
+     * a change that does not expire to the one restored once the active timed changes expire.
+     *
+     * @param properties  properties to change
+     * @param expireAfter how long the change lasts, null when it does not expire
+     * @throws IllegalArgumentException when a property is unknown, invalid or cannot be changed at runtime
+     */
+    public void apply(Map<String, ?> properties, Duration expireAfter) {
+        Map<String, Object> source = new LinkedHashMap<>();
+        flatten(PREFIX, properties, source);
+        changeLock.lock();
+        try {
+            Snapshot target = expireAfter != null ? current.get() : current.get().getBase();
+            RequestLoggingProperties props = target.getPlans().getProps().copy();
+            bind(singletonList(new MapConfigurationPropertySource(source)), props);
+            apply(props, expireAfter);
+        } finally {
+            changeLock.unlock();
+        }
+    }
+
+    /**
+     * Binds {@code ethereal.logging} properties of the sources onto the target, properties not known to
+     * {@link RequestLoggingProperties} are rejected rather than ignored.
+     *
+     * @throws IllegalArgumentException when a property is unknown or cannot be converted
+     */
+    static void bind(Iterable<ConfigurationPropertySource> sources, RequestLoggingProperties target) {
+        try {
+            new Binder(sources, null, ApplicationConversionService.getSharedInstance())
+                    .bind(PREFIX, Bindable.ofInstance(target), new NoUnboundElementsBindHandler(BindHandler.DEFAULT));
+        } catch (BindException | InvalidConfigurationPropertyNameException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new IllegalArgumentException(e.getMessage() + ": " + cause.getMessage(), e);
+        }
+    }
+
+    /**
+     * Replaces the current configuration, or when it does not expire and timed changes are active,
+     * the configuration restored once they expire.
+     *
+     * @param properties  new configuration, copied
+     * @param expireAfter how long the change lasts, null when it does not expire
+     * @throws IllegalArgumentException when the configuration is invalid or changes what is fixed at startup
+     */
+    public void apply(RequestLoggingProperties properties, Duration expireAfter) {
+        if (expireAfter != null && (expireAfter.isNegative() || expireAfter.isZero())) {
+            throw new IllegalArgumentException("Expire after must be positive");
+        }
+        RequestLoggingProperties props = properties.copy();
+        props.init();
+        changeLock.lock();
+        try {
+            checkChangeable(props);
+            Snapshot previous = current.get();
+            if (expireAfter != null) {
+                Snapshot snapshot = compile(props, Instant.now().plus(expireAfter), previous);
+                swap(previous, snapshot);
+                scheduler.schedule(() -> expire(snapshot), expireAfter.toMillis(), MILLISECONDS);
+                log.info("Request logging configuration changed until {}", snapshot.getExpiresAt());
+            } else if (previous.getExpiresAt() != null) {
+                previous.getLastTimed().setPrevious(compile(props, null, null));
+                log.info("Request logging configuration changed once the timed changes expire");
+            } else {
+                swap(previous, compile(props, null, null));
+                log.info("Request logging configuration changed");
+            }
+        } finally {
+            changeLock.unlock();
+        }
+    }
+
+    /**
+     * Restores the configuration of the application properties.
+     */
+    public void reset() {
+        changeLock.lock();
+        try {
+            swap(current.get(), initial);
+            log.info("Request logging configuration reset");
+        } finally {
+            changeLock.unlock();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+        if (asyncLogger != null) {
+            asyncLogger.close();
+        }
+        exchangeLogger.close();
+    }
+
+    /**
+     * Restores the configuration replaced by an expired change, skipping changes which expired meanwhile.
+     * Nothing is restored when the expired change was already replaced.
+     */
+    private void expire(Snapshot snapshot) {
+        changeLock.lock();
+        try {
+            if (current.get() != snapshot) {
+                return;
+            }
+            Instant now = Instant.now();
+            Snapshot restored = snapshot.getPrevious();
+            while (restored.isExpired(now)) {
+                restored = restored.getPrevious();
+            }
+            swap(snapshot, restored);
+            log.info("Request logging configuration change expired");
+        } finally {
+            changeLock.unlock();
+        }
+    }
+
+    /**
+     * Numbers of requests skipped and aggregated by the replaced rules are logged before they are lost.
+     */
+    private void swap(Snapshot previous, Snapshot next) {
+        current.set(next);
+        previous.getPlans().getSamplers().logSummary();
+        previous.getPlans().getAggregators().logSummary();
+    }
+
+    private void checkChangeable(RequestLoggingProperties props) {
+        if (!props.getAsync().equals(startup.getAsync())
+                || !props.getOutput().equals(startup.getOutput())
+                || !props.getMetrics().equals(startup.getMetrics())
+                || !props.getCapturePool().equals(startup.getCapturePool())
+                || !props.getJournal().equals(startup.getJournal())
+                || !props.getExport().equals(startup.getExport())
+                || !props.getDedup().equals(startup.getDedup())
+                || props.getPlanCacheSize() != startup.getPlanCacheSize()
+                || !props.getSampling().getSummaryInterval().equals(startup.getSampling().getSummaryInterval())
+                || !props.getAggregation().getWindow().equals(startup.getAggregation().getWindow())
+                || props.getClient().isEnabled() != startup.getClient().isEnabled()) {
+            throw new IllegalArgumentException("Async, output, metrics, capture pool, journal, export, dedup, plan cache size, "
+                    + "sampling summary interval, aggregation window and client enabled cannot be changed at runtime");
+        }
+        if (props.getRequest().getMaxPayloadSize() > requestCaptureSize || props.getResponse().getMaxPayloadSize() > responseCaptureSize) {
+            throw new IllegalArgumentException("Max payload size cannot be raised above the size bodies are captured with, "
+                    + requestCaptureSize + " bytes for requests and " + responseCaptureSize + " bytes for responses");
+        }
+        if (props.getClient().getRequest().getMaxPayloadSize() > clientRequestCaptureSize
+                || props.getClient().getResponse().getMaxPayloadSize() > clientResponseCaptureSize) {
+            throw new IllegalArgumentException("Client max payload size cannot be raised above the size bodies are captured with, "
+                    + clientRequestCaptureSize + " bytes for requests and " + clientResponseCaptureSize + " bytes for responses");
+        }
+    }
+
+    private static Snapshot compile(RequestLoggingProperties props, Instant expiresAt, Snapshot previous) {
+        LoggingPlans plans = new LoggingPlans(props, new Samplers(props.getSampling().getRules()), new Aggregators(props.getAggregation().getRules()));
+        LoggingPlans clientPlans = new LoggingPlans(props.clientProperties(), new Samplers(), new Aggregators());
+        return new Snapshot(plans, clientPlans, expiresAt, previous);
+    }
+
+    /**
+     * Nested maps and lists become dotted and indexed property names, an empty list becomes an empty value.
+     */
+    private static void flatten(String name, Object value, Map<String, Object> target) {
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                flatten(name + "." + entry.getKey(), entry.getValue(), target);
+            }
+        } else if (value instanceof Collection) {
+            Collection<?> values = (Collection<?>) value;
+            if (values.isEmpty()) {
+                target.put(name, "");
+            }
+            int i = 0;
+            for (Object element : values) {
+                flatten(name + "[" + i++ + "]", element, target);
+            }
+        } else if (value == null) {
+            throw new IllegalArgumentException("Value of " + name + " cannot be null");
+        } else {
+            target.put(name, value);
+        }
+    }
+
+    @Value
+    private static class Snapshot {
+
+        LoggingPlans plans;
+        LoggingPlans clientPlans;
+        /**
+         * Null when the configuration does not expire.
+         */
+        Instant expiresAt;
+        /**
+         * Configuration restored on expiry, null when the configuration does not expire.
+         * Replaced by a change that does not expire, under the change lock.
+         */
+        @NonFinal
+        @Setter(PRIVATE)
+        Snapshot previous;
+
+        boolean isExpired(Instant now) {
+            return expiresAt != null && !expiresAt.isAfter(now);
+        }
+
+        /**
+         * Newest configuration of the chain that does not expire, this one when it does not.
+         */
+        Snapshot getBase() {
+            return expiresAt != null ? getLastTimed().getPrevious() : this;
+        }
+
+        /**
+         * Oldest timed change of the chain, the one restoring the newest configuration that does not expire.
+         */
+        Snapshot getLastTimed() {
+            Snapshot timed = this;
+            while (timed.getPrevious().getExpiresAt() != null) {
+                timed = timed.getPrevious();
+            }
+            return timed;
+        }
+    }
+
+}
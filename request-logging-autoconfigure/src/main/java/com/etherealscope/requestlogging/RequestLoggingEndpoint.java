@@ -0,0 +1,84 @@
+package com.etherealscope.requestlogging;
+
+import com.etherealscope.requestlogging.RequestLoggingProperties.Aggregation;
+import com.etherealscope.requestlogging.RequestLoggingProperties.Client;
+import com.etherealscope.requestlogging.RequestLoggingProperties.Request;
+import com.etherealscope.requestlogging.RequestLoggingProperties.Response;
+import com.etherealscope.requestlogging.RequestLoggingProperties.Sampling;
+import com.etherealscope.requestlogging.RequestLoggingProperties.Tail;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Actuator endpoint showing and changing the request logging configuration at runtime, see {@link RequestLoggingControl}.
+ * A change is posted as properties named relative to {@code ethereal.logging}, optionally expiring:
+ * <pre>
+ * {"properties": {"request.white-listed-servlet-paths": ["/orders/**"]}, "expireAfter": "10m"}
+ * </pre>
+ */
+@Endpoint(id = "requestlogging")
+@RequiredArgsConstructor
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public class RequestLoggingEndpoint {
+
+    RequestLoggingControl control;
+
+    @ReadOperation
+    public RequestLoggingDescriptor configuration() {
+        RequestLoggingProperties props = control.getProperties();
+        return new RequestLoggingDescriptor(props.isEnabled(), props.isIncludeTimeElapsed(), props.getStatusCodes(),
+                props.getRequest(), props.getResponse(), props.getSampling(), props.getAggregation(), props.getTail(),
+                props.getClient(), control.getExpiresAt());
+    }
+
+    @WriteOperation
+    public RequestLoggingDescriptor configure(Map<String, Object> properties, @Nullable Duration expireAfter) {
+        try {
+            control.apply(properties, expireAfter);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage());
+        }
+        return configuration();
+    }
+
+    @DeleteOperation
+    public RequestLoggingDescriptor reset() {
+        control.reset();
+        return configuration();
+    }
+
+    /**
+     * Part of the configuration changeable at runtime.
+     */
+    @Value
+    public static class RequestLoggingDescriptor {
+
+        boolean enabled;
+        boolean includeTimeElapsed;
+        String[] statusCodes;
+        Request request;
+        Response response;
+        Sampling sampling;
+        Aggregation aggregation;
+        Tail tail;
+        Client client;
+        /**
+         * When the configuration expires, null if it does not.
+         */
+        Instant expiresAt;
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.etherealscope.requestlogging;
+
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnClass(value = Endpoint.class,
+        name = "org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint")
+@ConditionalOnBean(RequestLoggingControl.class)
+@AutoConfigureAfter({ RequestLoggingAutoConfiguration.class, ReactiveRequestLoggingAutoConfiguration.class,
+        RequestLoggingClientAutoConfiguration.class })
+public class RequestLoggingEndpointAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean(RequestLoggingEndpoint.class)
+    @ConditionalOnAvailableEndpoint(endpoint = RequestLoggingEndpoint.class)
+    public RequestLoggingEndpoint requestLoggingEndpoint(RequestLoggingControl requestLoggingControl) {
+        return new RequestLoggingEndpoint(requestLoggingControl);
+    }
+
+}
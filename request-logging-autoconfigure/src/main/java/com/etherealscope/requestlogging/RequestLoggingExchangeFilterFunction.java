@@ -0,0 +1,177 @@
+package com.etherealscope.requestlogging;
+
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.client.reactive.ClientHttpRequest;
+import org.springframework.http.client.reactive.ClientHttpRequestDecorator;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.System.nanoTime;
+import static lombok.AccessLevel.PRIVATE;
+import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
+
+/**
+ * Logs requests sent by a {@code WebClient} and their responses. Bodies are copied from the data buffers passing
+ * through, up to the max payload size, buffers are neither joined nor retained. The exchange is logged once the
+ * response body completes, is cancelled or released, so streamed responses flow through unbuffered.
+ * An exchange failing before its response arrived is logged with the exception class, one cancelled before
+ * is only released. From the decorated response on the captures belong to the response body.
+ */
+@Slf4j(topic = RequestLoggingClient.LOGGER_NAME)
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public class RequestLoggingExchangeFilterFunction implements ExchangeFilterFunction {
+
+    RequestLoggingClient client;
+
+    public RequestLoggingExchangeFilterFunction(RequestLoggingControl control) {
+        this.client = new RequestLoggingClient(control);
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+
+        if (!log.isDebugEnabled()) {
+            return next.exchange(request);
+        }
+
+        LoggingPlans plans = client.getPlans();
+        LoggingPlan plan = plans.get(request.method().name(), RequestLoggingClient.route(request.url()));
+        if (!plan.logsAnything()) {
+            return next.exchange(request);
+        }
+
+        Exchange exchange = new Exchange(request, plans, plan);
+        ClientRequest sent = request;
+        if (plans.shouldLogRequestBody(plan, request.headers().getFirst(CONTENT_TYPE))) {
+            exchange.requestCapture = client.requestCapture();
+            sent = ClientRequest.from(request)
+                    .body((outputMessage, context) -> request.body().insert(new CapturingClientHttpRequest(outputMessage, exchange.requestCapture), context))
+                    .build();
+        }
+
+        exchange.startNanos = nanoTime();
+        return next.exchange(sent)
+                .map(exchange::decorate)
+                .doOnError(exchange::fail)
+                .doOnCancel(exchange::abandon);
+    }
+
+    /**
+     * State of one exchange, either failed or abandoned before its response is decorated or completed
+     * by the response body, exactly once.
+     */
+    private class Exchange {
+
+        private static final int SENT = 0;
+        private static final int DECORATED = 1;
+        private static final int DONE = 2;
+
+        private final ClientRequest request;
+        private final LoggingPlans plans;
+        private final LoggingPlan plan;
+        private final AtomicInteger state = new AtomicInteger(SENT);
+        private long startNanos;
+        private CaptureBuffer requestCapture;
+        private CaptureBuffer responseCapture;
+        private long requestContentLength;
+
+        Exchange(ClientRequest request, LoggingPlans plans, LoggingPlan plan) {
+            this.request = request;
+            this.plans = plans;
+            this.plan = plan;
+            this.requestContentLength = request.headers().getContentLength();
+        }
+
+        /**
+         * Whether the body is captured is decided by its content type once the response headers arrived.
+         * The response of an exchange already abandoned is passed on as it is.
+         */
+        ClientResponse decorate(ClientResponse response) {
+            if (!state.compareAndSet(SENT, DECORATED)) {
+                return response;
+            }
+            if (requestCapture != null) {
+                requestContentLength = requestCapture.total();
+            }
+            if (plans.shouldLogResponseBody(plan, response.headers().asHttpHeaders().getFirst(CONTENT_TYPE))) {
+                responseCapture = client.responseCapture();
+            }
+            return response.mutate()
+                    .body(body -> body
+                            .doOnNext(this::capture)
+                            .doFinally(signal -> complete(response)))
+                    .build();
+        }
+
+        private void capture(DataBuffer buffer) {
+            if (responseCapture != null) {
+                ReactiveUtils.capture(buffer, responseCapture);
+            }
+        }
+
+        private void complete(ClientResponse response) {
+            if (state.compareAndSet(DECORATED, DONE)) {
+                client.complete(plans, plan, request.method().name(), request.url(), request.headers(), requestContentLength,
+                        requestCapture, ReactiveUtils.status(response), response.headers().asHttpHeaders(), responseCapture,
+                        nanoTime() - startNanos);
+            }
+        }
+
+        /**
+         * Logs an exchange that failed before its response arrived.
+         */
+        void fail(Throwable failure) {
+            if (state.compareAndSet(SENT, DONE)) {
+                if (requestCapture != null) {
+                    requestContentLength = requestCapture.total();
+                }
+                client.fail(plans, plan, request.method().name(), request.url(), request.headers(), requestContentLength,
+                        requestCapture, responseCapture, failure, nanoTime() - startNanos);
+            }
+        }
+
+        void abandon() {
+            if (state.compareAndSet(SENT, DONE)) {
+                ExchangeRecord.release(requestCapture, responseCapture);
+            }
+        }
+    }
+
+    /**
+     * Copies the first bytes of the request body data buffers, up to the slab size, as they are written.
+     */
+    private static class CapturingClientHttpRequest extends ClientHttpRequestDecorator {
+
+        private final CaptureBuffer capture;
+
+        CapturingClientHttpRequest(ClientHttpRequest delegate, CaptureBuffer capture) {
+            super(delegate);
+            this.capture = capture;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            return super.writeWith(Flux.<DataBuffer>from(body).doOnNext(this::capture));
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            return super.writeAndFlushWith(Flux.<Publisher<? extends DataBuffer>>from(body)
+                    .map(part -> Flux.<DataBuffer>from(part).doOnNext(this::capture)));
+        }
+
+        private void capture(DataBuffer buffer) {
+            ReactiveUtils.capture(buffer, capture);
+        }
+    }
+
+}
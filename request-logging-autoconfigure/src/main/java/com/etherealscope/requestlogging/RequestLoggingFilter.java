@@ -1,257 +1,361 @@
 package com.etherealscope.requestlogging;
 
-import com.etherealscope.requestlogging.RequestLoggingProperties.Mask;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.annotation.Order;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
 import org.springframework.web.filter.OncePerRequestFilter;
-import org.springframework.web.util.ContentCachingRequestWrapper;
-import org.springframework.web.util.ContentCachingResponseWrapper;
 
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.FilterChain;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
-
-import static com.etherealscope.requestlogging.CommonUtils.NOTHING;
-import static com.etherealscope.requestlogging.CommonUtils.byteArrayToString;
-import static com.etherealscope.requestlogging.CommonUtils.enumerationAsStream;
-import static com.etherealscope.requestlogging.CommonUtils.servletPathEnabled;
-import static com.etherealscope.requestlogging.CommonUtils.shouldLogStatusCode;
-import static com.etherealscope.requestlogging.MaskUtils.filterMasks;
-import static com.etherealscope.requestlogging.MaskUtils.maskBody;
-import static com.etherealscope.requestlogging.MaskUtils.maskHeaders;
-import static com.etherealscope.requestlogging.MaskUtils.maskQueryParams;
-import static java.lang.System.currentTimeMillis;
-import static java.util.stream.Collectors.joining;
+
+import static java.lang.System.nanoTime;
+import static javax.servlet.http.HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
 import static lombok.AccessLevel.PRIVATE;
 import static org.springframework.core.Ordered.HIGHEST_PRECEDENCE;
-import static org.springframework.http.HttpStatus.resolve;
 import static org.springframework.web.util.WebUtils.getNativeRequest;
 import static org.springframework.web.util.WebUtils.getNativeResponse;
 
 @Slf4j
 @Order(HIGHEST_PRECEDENCE)
-@RequiredArgsConstructor
 @FieldDefaults(level = PRIVATE, makeFinal = true)
 public class RequestLoggingFilter extends OncePerRequestFilter {
 
-    private static final String BEFORE_REQUEST_MESSAGE = "--- REQUEST START ---";
-    private static final String AFTER_REQUEST_MESSAGE = "--- REQUEST END ---";
-    private static final String BEFORE_RESPONSE_MESSAGE = "--- RESPONSE START ---";
-    private static final String AFTER_RESPONSE_MESSAGE = "--- RESPONSE END ---";
+    private static final ByteBuffer EMPTY_BODY = ByteBuffer.allocate(0);
+
+    RequestLoggingControl control;
+    boolean ownsControl;
+    ExchangeMetrics metrics;
+    SlabPool requestPool;
+    SlabPool responsePool;
+
+    public RequestLoggingFilter(RequestLoggingProperties props) {
+        this(new RequestLoggingControl(props), true, ExchangeMetrics.NONE);
+    }
+
+    public RequestLoggingFilter(RequestLoggingControl control) {
+        this(control, false, ExchangeMetrics.NONE);
+    }
 
-    RequestLoggingProperties props;
+    RequestLoggingFilter(RequestLoggingControl control, ExchangeMetrics metrics) {
+        this(control, false, metrics);
+    }
+
+    private RequestLoggingFilter(RequestLoggingControl control, boolean ownsControl, ExchangeMetrics metrics) {
+        RequestLoggingProperties props = control.getStartupProperties();
+        this.control = control;
+        this.ownsControl = ownsControl;
+        this.metrics = metrics;
+        this.requestPool = SlabPool.requestPool(props);
+        this.responsePool = SlabPool.responsePool(props);
+        if (control.getAsyncLogger() != null) {
+            metrics.bind(control.getAsyncLogger());
+        }
+        if (control.getExchangeLogger().getExporter() != null) {
+            metrics.bind(control.getExchangeLogger().getExporter());
+        }
+        if (control.getExchangeLogger().getDedup() != null) {
+            metrics.bind(control.getExchangeLogger().getDedup());
+        }
+        metrics.bind("request", requestPool);
+        metrics.bind("response", responsePool);
+    }
+
+    /**
+     * Async dispatches pass the filter too, so buffered writer output reaches the client before the exchange completes.
+     */
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
 
     @SneakyThrows
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) {
 
-        long start = 0;
-        if (props.isIncludeTimeElapsed()) {
-            start = currentTimeMillis();
+        if (isAsyncDispatch(request)) {
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                if (!request.isAsyncStarted()) {
+                    flushResponse(response);
+                }
+            }
+            return;
         }
 
-        String method = request.getMethod();
-        String contentType = request.getContentType();
-        String servletPath = request.getServletPath();
+        long startNanos = nanoTime();
+
+        if (!log.isDebugEnabled()) {
+            doFilterMeasured(request, response, filterChain, startNanos);
+            return;
+        }
 
-        if (shouldLogRequestBody(servletPath, method, contentType) && !(request instanceof ContentCachingRequestWrapper)) {
-            request = new ContentCachingRequestWrapper(request);
+        LoggingPlans plans = control.getPlans();
+        LoggingPlan plan = plans.get(request.getMethod(), request.getServletPath());
+        if (!plan.sample()) {
+            doFilterMeasured(request, response, filterChain, startNanos);
+            return;
         }
 
-        if (shouldCacheResponse(servletPath) && !(response instanceof ContentCachingResponseWrapper)) {
-            response = new ContentCachingResponseWrapper(response);
+        if (plans.shouldLogRequestBody(plan, request.getContentType()) && !(request instanceof BoundedCaptureRequestWrapper)) {
+            request = new BoundedCaptureRequestWrapper(request, requestPool);
         }
 
+        if (plan.isCaptureResponseBody() && !(response instanceof BoundedCaptureResponseWrapper)) {
+            response = new BoundedCaptureResponseWrapper(response, responsePool,
+                    contentType -> plans.shouldLogResponseBody(plan, contentType));
+        }
+
+        long chainStartNanos = nanoTime();
+        boolean failed = true;
         try {
             filterChain.doFilter(request, response);
+            failed = false;
         } finally {
-            String logMessage = "";
-            if (shouldLogRequest(servletPath)) {
-                List<Mask> requestMasks = filterMasks(method, servletPath, props.getRequest().getMasks());
-                logMessage += getRequestLogMessage(request, requestMasks);
-            }
-            if (shouldLogResponse(servletPath)) {
-                List<Mask> responseMasks = filterMasks(method, servletPath, props.getResponse().getMasks());
-                logMessage += getResponseLogMessage(servletPath, response, responseMasks);
-            }
-            if (!logMessage.isEmpty() && shouldLogStatusCode(resolve(response.getStatus()), props.getStatusCodes())) {
-                log.debug(logMessage);
-            }
-            if (shouldCacheResponse(servletPath)) {
-                updateResponse(response);
-            }
-        }
-
-        if (props.isIncludeTimeElapsed()) {
-            log.debug("Request time elapsed: " + (currentTimeMillis() - start) + " ms");
+            completeOrDefer(request, response, failed, plans, plan, startNanos, chainStartNanos - startNanos);
         }
     }
 
-    private boolean shouldLogRequest(String servletPath) {
-        return log.isDebugEnabled()
-                && props.isEnabled()
-                && props.getRequest().isEnabled()
-                && servletPathEnabled(servletPath, props.getRequest().getWhiteListedServletPaths(), props.getRequest().getBlackListedServletPaths());
+    /**
+     * Exchanges not logged are still measured, when metrics are enabled.
+     */
+    private void doFilterMeasured(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain, long startNanos) throws Exception {
+        if (metrics == ExchangeMetrics.NONE) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        long chainStartNanos = nanoTime();
+        boolean failed = true;
+        try {
+            filterChain.doFilter(request, response);
+            failed = false;
+        } finally {
+            completeOrDefer(request, response, failed, null, null, startNanos, chainStartNanos - startNanos);
+        }
     }
 
-    private boolean shouldLogResponse(String servletPath) {
-        return log.isDebugEnabled()
-                && props.isEnabled()
-                && props.getResponse().isEnabled()
-                && servletPathEnabled(servletPath, props.getResponse().getWhiteListedServletPaths(), props.getResponse().getBlackListedServletPaths());
+    /**
+     * With async processing started, the response does not exist yet when the chain returns,
+     * the exchange is completed by the async listener instead.
+     *
+     * @param failed whether the chain threw, the container sets the error status only after the exception
+     *               passed the filter, so the exchange is completed as 500
+     */
+    private void completeOrDefer(HttpServletRequest request, HttpServletResponse response, boolean failed, LoggingPlans plans,
+                                 LoggingPlan plan, long startNanos, long overheadNanos) {
+        if (request.isAsyncStarted() && !failed) {
+            request.getAsyncContext().addListener(new CompletionListener(request, response, plans, plan, startNanos, overheadNanos));
+        } else {
+            complete(request, response, failed ? SC_INTERNAL_SERVER_ERROR : response.getStatus(), plans, plan, startNanos, overheadNanos);
+        }
     }
 
-    private boolean shouldLogRequestBody(String servletPath, String method, String contentType) {
-        if (!shouldLogRequest(servletPath)) {
-            return false;
-        }
-        if(!props.getRequest().isIncludePayload()) {
-            return false;
-        }
-        if (!"POST".equals(method) && !"PUT".equals(method) && !"PATCH".equals(method)) {
-            return false;
-        }
-        if (props.getRequest().getWhiteListedContentTypes().length > 0) {
-            for (String s : props.getRequest().getWhiteListedContentTypes()) {
-                if (contentType != null && contentType.contains(s)) {
-                    return true;
-                }
+    /**
+     * Logs and measures the completed exchange with the configuration it started with,
+     * plans and plan are null when it is only measured.
+     */
+    private void complete(HttpServletRequest request, HttpServletResponse response, int status, LoggingPlans plans, LoggingPlan plan,
+                          long startNanos, long overheadNanos) {
+        long endNanos = nanoTime();
+        long elapsedNanos = endNanos - startNanos;
+        if (plan != null && plan.getAggregator() != null) {
+            plan.getAggregator().record(request.getMethod(), status, elapsedNanos);
+        } else if (plan != null) {
+            if (plan.isCaptureResponseBody()) {
+                flushResponse(response);
             }
-            return false;
-        }
-        if (props.getRequest().getBlackListedContentTypes().length > 0) {
-            for (String s : props.getRequest().getBlackListedContentTypes()) {
-                if (s != null && contentType.contains(s)) {
-                    return false;
+            CaptureBuffer requestCapture = getRequestCapture(request);
+            CaptureBuffer responseCapture = getResponseCapture(response);
+            if (plan.logsAnything() && plans.shouldLogExchange(status, elapsedNanos)) {
+                ExchangeRecord record;
+                try {
+                    record = new ExchangeRecord(plan,
+                            plan.isLogRequest() ? snapshotRequest(request, plans, plan) : null,
+                            plan.isLogResponse() ? snapshotResponse(response, status, plans, plan) : null,
+                            plans.getProps().isIncludeTimeElapsed() ? elapsedNanos : -1,
+                            requestCapture,
+                            responseCapture,
+                            false);
+                } catch (RuntimeException e) {
+                    ExchangeRecord.release(requestCapture, responseCapture);
+                    throw e;
                 }
+                control.log(record);
+            } else {
+                ExchangeRecord.release(requestCapture, responseCapture);
             }
         }
-        return true;
-    }
-
-    private boolean shouldCacheResponse(String servletPath) {
-        if (!shouldLogResponse(servletPath)) {
-            return false;
+        if (metrics != ExchangeMetrics.NONE) {
+            metrics.record(request, response, status, elapsedNanos, overheadNanos + (nanoTime() - endNanos));
         }
-        return props.getResponse().isEnabled() && props.getResponse().isIncludePayload();
     }
 
-    private boolean shouldLogResponseBody(String servletPath, String contentType) {
-        if(!shouldCacheResponse(servletPath)) {
-            return false;
-        }
-        if (props.getResponse().getWhiteListedContentTypes().length > 0) {
-            for (String s : props.getResponse().getWhiteListedContentTypes()) {
-                if (contentType != null && contentType.contains(s)) {
-                    return true;
-                }
-            }
-            return false;
-        }
-        if (props.getResponse().getBlackListedContentTypes().length > 0) {
-            for (String s : props.getResponse().getBlackListedContentTypes()) {
-                if (s != null && contentType.contains(s)) {
-                    return false;
-                }
-            }
+    @Override
+    public void destroy() {
+        if (ownsControl) {
+            control.destroy();
         }
-        return true;
     }
 
-    private String getRequestLogMessage(HttpServletRequest request, List<Mask> masks) {
-        Map<String, Object> logMap = new LinkedHashMap<>();
-        logMap.put("Method: ", request.getMethod());
-        logMap.put("Url: ", request.getRequestURL().toString());
+    private RequestSnapshot snapshotRequest(HttpServletRequest request, LoggingPlans plans, LoggingPlan plan) {
+        RequestLoggingProperties.Request config = plans.getProps().getRequest();
+        RequestSnapshot.RequestSnapshotBuilder snapshot = RequestSnapshot.builder()
+                .method(request.getMethod())
+                .url(request.getRequestURL().toString())
+                .contentType(request.getContentType())
+                .contentLength(request.getContentLengthLong())
+                .characterEncoding(request.getCharacterEncoding());
+
+        if (config.isIncludeQueryParams()) {
+            snapshot.queryParams(new LinkedHashMap<>(request.getParameterMap()));
+        }
 
-        if (props.getRequest().isIncludeQueryParams()) {
-            MultiValueMap<String, String> queryParams = new LinkedMultiValueMap<>();
-            request.getParameterMap().forEach((key, value) -> queryParams.addAll(key, Arrays.asList(value)));
-            maskQueryParams(queryParams, masks);
-            logMap.put("Query-Params: ", queryParams);
+        if (plan.getRequestHeaders() != null) {
+            snapshot.headers(requestHeaders(request, plan.getRequestHeaders()));
         }
 
-        if (props.getRequest().isIncludeHeaders()) {
-            Map<String, String> headers = new LinkedHashMap<>();
-            enumerationAsStream(request.getHeaderNames()).forEach(s -> headers.put(s, request.getHeader(s)));
-            maskHeaders(headers, masks);
-            logMap.put("Headers: ", headers);
+        if (config.isIncludeIpAddress()) {
+            snapshot.ipAddress(request.getRemoteAddr());
         }
 
-        if (props.getRequest().isIncludeIpAddress()) {
-            logMap.put("Ip-Address: ", request.getRemoteAddr());
+        if (plans.shouldLogRequestBody(plan, request.getContentType())) {
+            snapshot.body(getRequestPayload(request));
         }
 
-        logMap.put("Content-Type: ", request.getContentType());
-        logMap.put("Content-Length: ", request.getContentLengthLong());
-        logMap.put("Character-Encoding: ", request.getCharacterEncoding());
+        return snapshot.build();
+    }
+
+    private ResponseSnapshot snapshotResponse(HttpServletResponse response, int status, LoggingPlans plans, LoggingPlan plan) {
+        ResponseSnapshot.ResponseSnapshotBuilder snapshot = ResponseSnapshot.builder()
+                .status(status)
+                .contentType(response.getContentType())
+                .characterEncoding(response.getCharacterEncoding());
+
+        if (plan.getResponseHeaders() != null) {
+            snapshot.headers(responseHeaders(response, plan.getResponseHeaders()));
+        }
 
-        if (shouldLogRequestBody(request.getServletPath(), request.getMethod(), request.getContentType())) {
-            logMap.put("Body: ", maskBody(getRequestPayload(request), request.getContentType(), masks));
+        if (plans.shouldLogResponseBody(plan, response.getContentType())) {
+            snapshot.body(getResponsePayload(response));
         }
 
-        return "\n"
-                + BEFORE_REQUEST_MESSAGE
-                + "\n"
-                + logMap.entrySet().stream().map(e -> e.getKey() + e.getValue()).collect(joining("\n"))
-                + "\n"
-                + AFTER_REQUEST_MESSAGE;
+        return snapshot.build();
     }
 
-    private String getResponseLogMessage(String servletPath, HttpServletResponse response, List<Mask> masks) {
-        Map<String, Object> logMap = new LinkedHashMap<>();
-        logMap.put("Status-Code: ", response.getStatus());
-        logMap.put("Content-Type: ", response.getContentType());
-        logMap.put("Character-Encoding: ", response.getCharacterEncoding());
-
-        if (props.getResponse().isIncludeHeaders()) {
-            Map<String, String> headers = new LinkedHashMap<>();
-            response.getHeaderNames().forEach(s -> headers.put(s, response.getHeader(s)));
-            maskHeaders(headers, masks);
-            logMap.put("Headers: ", headers);
+    private static String[] requestHeaders(HttpServletRequest request, HeaderPlan headerPlan) {
+        List<String> headers = new ArrayList<>();
+        if (headerPlan.hasWhiteList()) {
+            for (String name : headerPlan.getWhiteList()) {
+                headerPlan.add(headers, name, request.getHeader(name));
+            }
+        } else {
+            for (Enumeration<String> names = request.getHeaderNames(); names.hasMoreElements(); ) {
+                String name = names.nextElement();
+                if (headerPlan.isSelected(name)) {
+                    headerPlan.add(headers, name, request.getHeader(name));
+                }
+            }
         }
+        return headers.toArray(new String[0]);
+    }
 
-        if (shouldLogResponseBody(servletPath, response.getContentType())) {
-            logMap.put("Body: ", maskBody(getResponsePayload(response), response.getContentType(), masks));
+    private static String[] responseHeaders(HttpServletResponse response, HeaderPlan headerPlan) {
+        List<String> headers = new ArrayList<>();
+        if (headerPlan.hasWhiteList()) {
+            for (String name : headerPlan.getWhiteList()) {
+                headerPlan.add(headers, name, response.getHeader(name));
+            }
+        } else {
+            for (String name : response.getHeaderNames()) {
+                if (headerPlan.isSelected(name)) {
+                    headerPlan.add(headers, name, response.getHeader(name));
+                }
+            }
         }
-
-        return "\n"
-                + BEFORE_RESPONSE_MESSAGE
-                + "\n"
-                + logMap.entrySet().stream().map(e -> e.getKey() + e.getValue()).collect(joining("\n"))
-                + "\n"
-                + AFTER_RESPONSE_MESSAGE;
+        return headers.toArray(new String[0]);
     }
 
-    private String getResponsePayload(HttpServletResponse response) {
-        ContentCachingResponseWrapper wrapper = getNativeResponse(response, ContentCachingResponseWrapper.class);
+    private ByteBuffer getResponsePayload(HttpServletResponse response) {
+        BoundedCaptureResponseWrapper wrapper = getNativeResponse(response, BoundedCaptureResponseWrapper.class);
         if (wrapper != null) {
-            return byteArrayToString(wrapper.getContentAsByteArray(), props.getResponse().getMaxPayloadSize());
+            return wrapper.getContent();
         }
-        return NOTHING;
+        return EMPTY_BODY;
     }
 
-    private String getRequestPayload(HttpServletRequest request) {
-        ContentCachingRequestWrapper wrapper = getNativeRequest(request, ContentCachingRequestWrapper.class);
+    private ByteBuffer getRequestPayload(HttpServletRequest request) {
+        BoundedCaptureRequestWrapper wrapper = getNativeRequest(request, BoundedCaptureRequestWrapper.class);
         if (wrapper != null) {
-            return byteArrayToString(wrapper.getContentAsByteArray(), props.getRequest().getMaxPayloadSize());
+            return wrapper.getContent();
         }
-        return NOTHING;
+        return EMPTY_BODY;
     }
 
-    @SneakyThrows
-    private void updateResponse(HttpServletResponse response) {
-        ContentCachingResponseWrapper wrapper = getNativeResponse(response, ContentCachingResponseWrapper.class);
+    private CaptureBuffer getRequestCapture(HttpServletRequest request) {
+        BoundedCaptureRequestWrapper wrapper = getNativeRequest(request, BoundedCaptureRequestWrapper.class);
+        return wrapper != null ? wrapper.getCapture() : null;
+    }
+
+    private CaptureBuffer getResponseCapture(HttpServletResponse response) {
+        BoundedCaptureResponseWrapper wrapper = getNativeResponse(response, BoundedCaptureResponseWrapper.class);
+        return wrapper != null ? wrapper.getCapture() : null;
+    }
+
+    private void flushResponse(HttpServletResponse response) {
+        BoundedCaptureResponseWrapper wrapper = getNativeResponse(response, BoundedCaptureResponseWrapper.class);
         if (wrapper != null) {
-            wrapper.copyBodyToResponse();
+            wrapper.flushWriter();
+        }
+    }
+
+    @RequiredArgsConstructor
+    @FieldDefaults(level = PRIVATE, makeFinal = true)
+    private class CompletionListener implements AsyncListener {
+
+        HttpServletRequest request;
+        HttpServletResponse response;
+        LoggingPlans plans;
+        LoggingPlan plan;
+        long startNanos;
+        long overheadNanos;
+        @NonFinal
+        volatile boolean failed;
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            int status = response.getStatus();
+            complete(request, response, failed && status < 400 ? SC_INTERNAL_SERVER_ERROR : status, plans, plan, startNanos, overheadNanos);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        /**
+         * Completed as 500 like a chain throwing, unless an error page set the status meanwhile.
+         */
+        @Override
+        public void onError(AsyncEvent event) {
+            failed = true;
+        }
+
+        /**
+         * Listeners are not carried over to a new async cycle.
+         */
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
         }
     }
 
-}
\ No newline at end of file
+}
@@ -4,14 +4,22 @@ import lombok.Data;
 import lombok.experimental.FieldDefaults;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.http.HttpMethod;
+import org.springframework.util.unit.DataSize;
 
 import javax.annotation.PostConstruct;
+import java.net.URI;
+import java.time.Duration;
 
+import static com.etherealscope.requestlogging.ExportCompression.GZIP;
+import static com.etherealscope.requestlogging.OverflowPolicy.DROP_NEWEST;
+import static com.etherealscope.requestlogging.StatusCode.SC_5XX;
 import static com.etherealscope.requestlogging.StatusCode.SC_ANY;
 import static lombok.AccessLevel.PRIVATE;
 import static org.springframework.http.MediaType.APPLICATION_FORM_URLENCODED_VALUE;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
 import static org.springframework.http.MediaType.APPLICATION_XML_VALUE;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE;
 import static org.springframework.http.MediaType.TEXT_PLAIN_VALUE;
 import static org.springframework.http.MediaType.TEXT_XML_VALUE;
 
@@ -36,13 +44,19 @@ public class RequestLoggingProperties {
      */
     boolean enabled = true;
     /**
-     * If true, at the filter end elapsed time will be logged.
+     * If true, elapsed time of the exchange will be logged together with it.
      */
     boolean includeTimeElapsed = true;
     /**
-     * Response status codes when to log request and response.
+     * Response status codes when to log request and response, classes like sc_2xx or sc_any,
+     * exact codes like 429 and ranges like 500-504.
      */
-    StatusCode[] statusCodes = new StatusCode[] {SC_ANY};
+    String[] statusCodes = new String[] {SC_ANY.name()};
+    /**
+     * Max number of cached logging decisions per http method. Up to twice as many are kept
+     * while older entries are being replaced.
+     */
+    int planCacheSize = 1024;
     /**
      * Request related config.
      */
@@ -51,6 +65,128 @@ public class RequestLoggingProperties {
      * Response related config
      */
     Response response = new Response();
+    /**
+     * Asynchronous logging config.
+     */
+    Async async = new Async();
+    /**
+     * Request sampling config.
+     */
+    Sampling sampling = new Sampling();
+    /**
+     * Aggregation of frequent exchanges into periodic summaries.
+     */
+    Aggregation aggregation = new Aggregation();
+    /**
+     * Tail based logging config.
+     */
+    Tail tail = new Tail();
+    /**
+     * Log message output config.
+     */
+    Output output = new Output();
+    /**
+     * Micrometer metrics config, used when a meter registry is available.
+     */
+    Metrics metrics = new Metrics();
+    /**
+     * Pool of direct buffers holding captured bodies.
+     */
+    CapturePool capturePool = new CapturePool();
+    /**
+     * Journal of bodies too large to be logged inline.
+     */
+    Journal journal = new Journal();
+    /**
+     * Logging of requests sent by RestTemplate and WebClient.
+     */
+    Client client = new Client();
+    /**
+     * Export of exchanges to a log collector.
+     */
+    Export export = new Export();
+    /**
+     * Deduplication of bodies logged over and over.
+     */
+    Dedup dedup = new Dedup();
+
+    /**
+     * Deep copy, changed at runtime by {@link RequestLoggingControl} without touching the bound properties.
+     */
+    RequestLoggingProperties copy() {
+        RequestLoggingProperties copy = new RequestLoggingProperties();
+        copy.enabled = enabled;
+        copy.includeTimeElapsed = includeTimeElapsed;
+        copy.statusCodes = copyOf(statusCodes);
+        copy.planCacheSize = planCacheSize;
+        copy.request = request.copy();
+        copy.response = response.copy();
+        copy.async = async.copy();
+        copy.sampling = sampling.copy();
+        copy.aggregation = aggregation.copy();
+        copy.tail = tail.copy();
+        copy.output = output.copy();
+        copy.metrics = metrics.copy();
+        copy.capturePool = capturePool.copy();
+        copy.journal = journal.copy();
+        copy.client = client.copy();
+        copy.export = export.copy();
+        copy.dedup = dedup.copy();
+        return copy;
+    }
+
+    /**
+     * Configuration of outbound exchanges in the shape of inbound ones. Request and response config, status codes
+     * and the enabled flag come from {@link Client}, sampling, aggregation and tail logging do not apply.
+     */
+    RequestLoggingProperties clientProperties() {
+        RequestLoggingProperties props = copy();
+        props.enabled = enabled && client.enabled;
+        props.statusCodes = copyOf(client.statusCodes);
+        props.request = client.request.copy();
+        props.response = client.response.copy();
+        props.sampling.rules = new SamplingRule[] {};
+        props.aggregation.rules = new AggregationRule[] {};
+        props.tail.enabled = false;
+        return props;
+    }
+
+    public void setStatusCodes(String[] statusCodes) {
+        this.statusCodes = statusCodes;
+    }
+
+    /**
+     * Status code classes as they were configured before exact codes and ranges were accepted.
+     */
+    public void setStatusCodes(StatusCode[] statusCodes) {
+        this.statusCodes = namesOf(statusCodes);
+    }
+
+    private static String[] copyOf(String[] values) {
+        return values != null ? values.clone() : null;
+    }
+
+    private static String[] namesOf(StatusCode[] statusCodes) {
+        if (statusCodes == null) {
+            return null;
+        }
+        String[] names = new String[statusCodes.length];
+        for (int i = 0; i < statusCodes.length; i++) {
+            names[i] = statusCodes[i].name();
+        }
+        return names;
+    }
+
+    private static Mask[] copyOf(Mask[] masks) {
+        if (masks == null) {
+            return null;
+        }
+        Mask[] copy = new Mask[masks.length];
+        for (int i = 0; i < masks.length; i++) {
+            copy[i] = masks[i].copy();
+        }
+        return copy;
+    }
 
     @Data
     @FieldDefaults(level = PRIVATE)
@@ -88,6 +224,14 @@ public class RequestLoggingProperties {
          * Black listed content types where to log body.
          */
         String[] blackListedContentTypes = new String[] {};
+        /**
+         * Header names to log, compared ignoring case. Empty means all headers not black listed.
+         */
+        String[] whiteListedHeaders = new String[] {};
+        /**
+         * Header names not to log, compared ignoring case.
+         */
+        String[] blackListedHeaders = new String[] {};
         /**
          * White listed servlet paths where to log request.
          */
@@ -100,6 +244,24 @@ public class RequestLoggingProperties {
          * Masks to apply for request due to security.
          */
         Mask[] masks = new Mask[] {};
+
+        Request copy() {
+            Request copy = new Request();
+            copy.enabled = enabled;
+            copy.includeHeaders = includeHeaders;
+            copy.includePayload = includePayload;
+            copy.includeQueryParams = includeQueryParams;
+            copy.includeIpAddress = includeIpAddress;
+            copy.maxPayloadSize = maxPayloadSize;
+            copy.whiteListedContentTypes = copyOf(whiteListedContentTypes);
+            copy.blackListedContentTypes = copyOf(blackListedContentTypes);
+            copy.whiteListedHeaders = copyOf(whiteListedHeaders);
+            copy.blackListedHeaders = copyOf(blackListedHeaders);
+            copy.whiteListedServletPaths = copyOf(whiteListedServletPaths);
+            copy.blackListedServletPaths = copyOf(blackListedServletPaths);
+            copy.masks = copyOf(masks);
+            return copy;
+        }
     }
 
     @Data
@@ -130,6 +292,18 @@ public class RequestLoggingProperties {
          * Black listed content types where to log body.
          */
         String[] blackListedContentTypes = new String[] {};
+        /**
+         * Content types of streamed responses like server sent events, written through without capturing their body.
+         */
+        String[] streamingContentTypes = new String[] {TEXT_EVENT_STREAM_VALUE, APPLICATION_NDJSON_VALUE};
+        /**
+         * Header names to log, compared ignoring case. Empty means all headers not black listed.
+         */
+        String[] whiteListedHeaders = new String[] {};
+        /**
+         * Header names not to log, compared ignoring case.
+         */
+        String[] blackListedHeaders = new String[] {};
         /**
          * White listed servlet paths where to log response.
          */
@@ -142,6 +316,23 @@ public class RequestLoggingProperties {
          * Masks to apply for response due to security.
          */
         Mask[] masks = new Mask[] {};
+
+        Response copy() {
+            Response copy = new Response();
+            copy.enabled = enabled;
+            copy.includeHeaders = includeHeaders;
+            copy.includePayload = includePayload;
+            copy.maxPayloadSize = maxPayloadSize;
+            copy.whiteListedContentTypes = copyOf(whiteListedContentTypes);
+            copy.blackListedContentTypes = copyOf(blackListedContentTypes);
+            copy.streamingContentTypes = copyOf(streamingContentTypes);
+            copy.whiteListedHeaders = copyOf(whiteListedHeaders);
+            copy.blackListedHeaders = copyOf(blackListedHeaders);
+            copy.whiteListedServletPaths = copyOf(whiteListedServletPaths);
+            copy.blackListedServletPaths = copyOf(blackListedServletPaths);
+            copy.masks = copyOf(masks);
+            return copy;
+        }
     }
 
     @Data
@@ -161,13 +352,452 @@ public class RequestLoggingProperties {
          */
         String[] maskedJsonFields = new String[] {};
         /**
-         * Query params to mask like password, newPassword, oldPassword.
+         * Query params, form and multipart fields to mask like password, newPassword, oldPassword.
          */
         String[] maskedQueryParams = new String[] {};
+        /**
+         * Xml element and attribute names to mask like password, compared by their local names.
+         */
+        String[] maskedXmlElements = new String[] {};
         /**
          * Headers to mask like authorization, cookie.
          */
         String[] maskedHeaders = new String[] {};
+
+        Mask copy() {
+            Mask copy = new Mask();
+            copy.method = method;
+            copy.pathMatcher = pathMatcher;
+            copy.maskedJsonFields = copyOf(maskedJsonFields);
+            copy.maskedQueryParams = copyOf(maskedQueryParams);
+            copy.maskedXmlElements = copyOf(maskedXmlElements);
+            copy.maskedHeaders = copyOf(maskedHeaders);
+            return copy;
+        }
+    }
+
+    @Data
+    @FieldDefaults(level = PRIVATE)
+    public static class Async {
+
+        /**
+         * If true, masking, formatting and logging is done by a background worker instead of the request thread.
+         */
+        boolean enabled = false;
+        /**
+         * Max number of exchanges waiting to be logged.
+         */
+        int queueCapacity = 1024;
+        /**
+         * What to do with an exchange when the queue is full.
+         */
+        OverflowPolicy overflowPolicy = DROP_NEWEST;
+        /**
+         * How long the request thread waits for free space with the block overflow policy.
+         */
+        Duration blockTimeout = Duration.ofMillis(10);
+
+        Async copy() {
+            Async copy = new Async();
+            copy.enabled = enabled;
+            copy.queueCapacity = queueCapacity;
+            copy.overflowPolicy = overflowPolicy;
+            copy.blockTimeout = blockTimeout;
+            return copy;
+        }
+    }
+
+    @Data
+    @FieldDefaults(level = PRIVATE)
+    public static class Sampling {
+
+        /**
+         * Sampling rules, the first rule matching a request decides whether it is logged.
+         * Requests matching no rule are always logged.
+         */
+        SamplingRule[] rules = new SamplingRule[] {};
+        /**
+         * How often the numbers of requests skipped by sampling are logged.
+         */
+        Duration summaryInterval = Duration.ofMinutes(1);
+
+        Sampling copy() {
+            Sampling copy = new Sampling();
+            if (rules != null) {
+                copy.rules = new SamplingRule[rules.length];
+                for (int i = 0; i < rules.length; i++) {
+                    copy.rules[i] = rules[i].copy();
+                }
+            } else {
+                copy.rules = null;
+            }
+            copy.summaryInterval = summaryInterval;
+            return copy;
+        }
+    }
+
+    @Data
+    @FieldDefaults(level = PRIVATE)
+    public static class SamplingRule {
+
+        /**
+         * Http method to apply for.
+         */
+        HttpMethod method;
+        /**
+         * Path matcher like /users/**, /users/*, /users.
+         */
+        String pathMatcher;
+        /**
+         * Fraction of matching requests to log, between 0 and 1.
+         */
+        double rate = 1.0;
+        /**
+         * Max number of matching requests logged per second, 0 means no limit.
+         */
+        int maxPerSecond = 0;
+
+        SamplingRule copy() {
+            SamplingRule copy = new SamplingRule();
+            copy.method = method;
+            copy.pathMatcher = pathMatcher;
+            copy.rate = rate;
+            copy.maxPerSecond = maxPerSecond;
+            return copy;
+        }
+    }
+
+    @Data
+    @FieldDefaults(level = PRIVATE)
+    public static class Aggregation {
+
+        /**
+         * Aggregation rules, exchanges matching a rule are counted instead of logged
+         * and summarized once per window. The first matching rule applies.
+         */
+        AggregationRule[] rules = new AggregationRule[] {};
+        /**
+         * How often the summaries of aggregated exchanges are logged.
+         */
+        Duration window = Duration.ofMinutes(1);
+
+        Aggregation copy() {
+            Aggregation copy = new Aggregation();
+            if (rules != null) {
+                copy.rules = new AggregationRule[rules.length];
+                for (int i = 0; i < rules.length; i++) {
+                    copy.rules[i] = rules[i].copy();
+                }
+            } else {
+                copy.rules = null;
+            }
+            copy.window = window;
+            return copy;
+        }
+    }
+
+    @Data
+    @FieldDefaults(level = PRIVATE)
+    public static class AggregationRule {
+
+        /**
+         * Http method to apply for.
+         */
+        HttpMethod method;
+        /**
+         * Path matcher like /health/**, the summary is logged per path matcher.
+         */
+        String pathMatcher;
+
+        AggregationRule copy() {
+            AggregationRule copy = new AggregationRule();
+            copy.method = method;
+            copy.pathMatcher = pathMatcher;
+            return copy;
+        }
+    }
+
+    @Data
+    @FieldDefaults(level = PRIVATE)
+    public static class Tail {
+
+        /**
+         * If true, an exchange is logged only when it is slow or failed, decided after it completes.
+         * Exchanges not qualifying are dropped without being masked or formatted.
+         */
+        boolean enabled = false;
+        /**
+         * Exchanges taking at least this long are logged.
+         */
+        Duration latencyThreshold = Duration.ofSeconds(1);
+        /**
+         * Response status codes of exchanges logged regardless of their latency, in the same forms as status codes.
+         */
+        String[] statusCodes = new String[] {SC_5XX.name()};
+
+        Tail copy() {
+            Tail copy = new Tail();
+            copy.enabled = enabled;
+            copy.latencyThreshold = latencyThreshold;
+            copy.statusCodes = copyOf(statusCodes);
+            return copy;
+        }
+
+        public void setStatusCodes(String[] statusCodes) {
+            this.statusCodes = statusCodes;
+        }
+
+        /**
+         * Status code classes as they were configured before exact codes and ranges were accepted.
+         */
+        public void setStatusCodes(StatusCode[] statusCodes) {
+            this.statusCodes = namesOf(statusCodes);
+        }
+    }
+
+    @Data
+    @FieldDefaults(level = PRIVATE)
+    public static class Output {
+
+        /**
+         * Format of the logged exchange.
+         */
+        OutputFormat format = OutputFormat.TEXT;
+        /**
+         * Field names of json output and MDC fields.
+         */
+        JsonFieldNames fieldNames = JsonFieldNames.DEFAULT;
+        /**
+         * If true, method, url, ip address, content types and lengths and status code
+         * are put to MDC while the exchange is logged.
+         */
+        boolean mdc = false;
+
+        Output copy() {
+            Output copy = new Output();
+            copy.format = format;
+            copy.fieldNames = fieldNames;
+            copy.mdc = mdc;
+            return copy;
+        }
+    }
+
+    @Data
+    @FieldDefaults(level = PRIVATE)
+    public static class Metrics {
+
+        /**
+         * If false, no exchange timings and payload sizes are recorded.
+         */
+        boolean enabled = true;
+
+        Metrics copy() {
+            Metrics copy = new Metrics();
+            copy.enabled = enabled;
+            return copy;
+        }
+    }
+
+    @Data
+    @FieldDefaults(level = PRIVATE)
+    public static class CapturePool {
+
+        /**
+         * Max number of direct buffers of max payload size in each of the request and response pools,
+         * bodies captured while all of them are in use get heap buffers. 0 means heap buffers only.
+         * Bodies captured beyond max payload size for the journal take chunks of its overflow pool instead.
+         */
+        int maxSlabs = 256;
+
+        CapturePool copy() {
+            CapturePool copy = new CapturePool();
+            copy.maxSlabs = maxSlabs;
+            return copy;
+        }
+    }
+
+    @Data
+    @FieldDefaults(level = PRIVATE)
+    public static class Journal {
+
+        /**
+         * If true, masked bodies longer than max payload size are written to a memory mapped journal
+         * and the log line carries a reference to them instead.
+         */
+        boolean enabled = false;
+        /**
+         * Directory of the journal segment files.
+         */
+        String directory = "request-logging-journal";
+        /**
+         * Size, where bodies written to the journal will be cut. Bodies longer than max payload size are captured
+         * up to this size into chunks of the overflow pool.
+         */
+        DataSize maxBodySize = DataSize.ofMegabytes(1);
+        /**
+         * Max size of the direct chunks capturing bodies beyond max payload size, in each of the request and
+         * response pools. Bodies overflowing while all of them are in use are cut at max payload size.
+         */
+        DataSize overflowPoolSize = DataSize.ofMegabytes(32);
+        /**
+         * Size of one journal segment file.
+         */
+        DataSize segmentSize = DataSize.ofMegabytes(64);
+        /**
+         * Max total size of the journal segment files, the oldest are deleted first.
+         */
+        DataSize maxSize = DataSize.ofGigabytes(1);
+        /**
+         * Journal segment files older than this are deleted.
+         */
+        Duration maxAge = Duration.ofDays(1);
+
+        Journal copy() {
+            Journal copy = new Journal();
+            copy.enabled = enabled;
+            copy.directory = directory;
+            copy.maxBodySize = maxBodySize;
+            copy.overflowPoolSize = overflowPoolSize;
+            copy.segmentSize = segmentSize;
+            copy.maxSize = maxSize;
+            copy.maxAge = maxAge;
+            return copy;
+        }
+    }
+
+    @Data
+    @FieldDefaults(level = PRIVATE)
+    public static class Client {
+
+        /**
+         * If true, requests sent by RestTemplate and WebClient instances built by the auto-configured builders are logged.
+         */
+        boolean enabled = false;
+        /**
+         * Response status codes when to log outbound request and response, in the same forms as status codes.
+         */
+        String[] statusCodes = new String[] {SC_ANY.name()};
+        /**
+         * Outbound request related config. Servlet paths and mask path matchers are matched against the target
+         * host and path, like api.example.com/orders/**, where a single star segment matches any host.
+         */
+        Request request = new Request();
+        /**
+         * Outbound response related config, matched like the request config.
+         */
+        Response response = new Response();
+
+        Client copy() {
+            Client copy = new Client();
+            copy.enabled = enabled;
+            copy.statusCodes = copyOf(statusCodes);
+            copy.request = request.copy();
+            copy.response = response.copy();
+            return copy;
+        }
+    }
+
+    @Data
+    @FieldDefaults(level = PRIVATE)
+    public static class Export {
+
+        /**
+         * If true, exchanges are sent to the collector in batches as json lines instead of being written to the log.
+         */
+        boolean enabled = false;
+        /**
+         * Collector endpoint, tcp://host:port for json lines over a socket or an http(s) url batches are posted to.
+         */
+        URI url = URI.create("tcp://localhost:5170");
+        /**
+         * Compression of a batch.
+         */
+        ExportCompression compression = GZIP;
+        /**
+         * Max number of exchanges in a batch.
+         */
+        int batchSize = 512;
+        /**
+         * Max time a batch is collected before it is sent, counted from its first exchange.
+         */
+        Duration batchInterval = Duration.ofSeconds(1);
+        /**
+         * Max number of exchanges waiting to be batched, more are dropped.
+         */
+        int queueCapacity = 8192;
+        /**
+         * Connect timeout, and read timeout of http collectors.
+         */
+        Duration timeout = Duration.ofSeconds(5);
+        /**
+         * Wait before the first retry of a failed batch, doubled with every further failure.
+         */
+        Duration retryBackoff = Duration.ofMillis(500);
+        /**
+         * Max wait between retries of a failed batch.
+         */
+        Duration maxRetryBackoff = Duration.ofSeconds(30);
+        /**
+         * Directory batches are spilled to while the collector is unavailable and sent from once it is back.
+         * Without it a failed batch is retried from memory and exchanges are dropped once the queue is full.
+         */
+        String spillDirectory;
+        /**
+         * Max total size of spilled batches, the oldest are deleted first.
+         */
+        DataSize spillMaxSize = DataSize.ofMegabytes(256);
+        /**
+         * If true, exported exchanges are written to the log as well.
+         */
+        boolean log = false;
+
+        Export copy() {
+            Export copy = new Export();
+            copy.enabled = enabled;
+            copy.url = url;
+            copy.compression = compression;
+            copy.batchSize = batchSize;
+            copy.batchInterval = batchInterval;
+            copy.queueCapacity = queueCapacity;
+            copy.timeout = timeout;
+            copy.retryBackoff = retryBackoff;
+            copy.maxRetryBackoff = maxRetryBackoff;
+            copy.spillDirectory = spillDirectory;
+            copy.spillMaxSize = spillMaxSize;
+            copy.log = log;
+            return copy;
+        }
+    }
+
+    @Data
+    @FieldDefaults(level = PRIVATE)
+    public static class Dedup {
+
+        /**
+         * If true, a masked body logged in full within the window is logged by its hash only.
+         */
+        boolean enabled = false;
+        /**
+         * How long a body logged in full is referred to by its hash, it is logged in full again afterwards.
+         */
+        Duration window = Duration.ofMinutes(5);
+        /**
+         * Number of recently logged body hashes kept, rounded up to a power of two.
+         */
+        int tableSize = 4096;
+        /**
+         * Masked bodies shorter than this are always logged in full.
+         */
+        int minSize = 256;
+
+        Dedup copy() {
+            Dedup copy = new Dedup();
+            copy.enabled = enabled;
+            copy.window = window;
+            copy.tableSize = tableSize;
+            copy.minSize = minSize;
+            return copy;
+        }
     }
 
     @PostConstruct
@@ -175,6 +805,117 @@ public class RequestLoggingProperties {
         if (statusCodes == null || statusCodes.length == 0) {
             throw new IllegalArgumentException("Status codes cannot be null or empty");
         }
+        StatusCodeSet.compile(statusCodes);
+        if (capturePool.maxSlabs < 0) {
+            throw new IllegalArgumentException("Capture pool max slabs cannot be negative");
+        }
+        if (journal.directory == null || journal.maxBodySize == null || journal.overflowPoolSize == null
+                || journal.segmentSize == null || journal.maxSize == null || journal.maxAge == null) {
+            throw new IllegalArgumentException("Journal directory, sizes and max age cannot be null");
+        }
+        if (journal.segmentSize.toBytes() <= 0 || journal.segmentSize.toBytes() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Journal segment size must be positive and less than 2GB");
+        }
+        if (journal.maxBodySize.toBytes() <= 0 || journal.maxBodySize.compareTo(journal.segmentSize) > 0) {
+            throw new IllegalArgumentException("Journal max body size must be positive and not larger than segment size");
+        }
+        if (journal.overflowPoolSize.isNegative()) {
+            throw new IllegalArgumentException("Journal overflow pool size cannot be negative");
+        }
+        if (journal.maxSize.compareTo(journal.segmentSize) < 0 || journal.maxAge.isNegative()) {
+            throw new IllegalArgumentException("Journal max size cannot be smaller than segment size, max age cannot be negative");
+        }
+        if (planCacheSize <= 0) {
+            throw new IllegalArgumentException("Plan cache size must be positive");
+        }
+        validate(request, response);
+        if (client.statusCodes == null || client.statusCodes.length == 0 || client.request == null || client.response == null) {
+            throw new IllegalArgumentException("Client status codes, request and response cannot be null or empty");
+        }
+        StatusCodeSet.compile(client.statusCodes);
+        validate(client.request, client.response);
+        if (async.queueCapacity <= 0) {
+            throw new IllegalArgumentException("Async queue capacity must be positive");
+        }
+        if (async.overflowPolicy == null) {
+            throw new IllegalArgumentException("Async overflow policy cannot be null");
+        }
+        if (async.blockTimeout == null || async.blockTimeout.isNegative()) {
+            throw new IllegalArgumentException("Async block timeout cannot be null or negative");
+        }
+        if (sampling.rules == null) {
+            throw new IllegalArgumentException("Sampling rules cannot be null, empty array required");
+        }
+        if (sampling.summaryInterval == null || sampling.summaryInterval.isNegative() || sampling.summaryInterval.isZero()) {
+            throw new IllegalArgumentException("Sampling summary interval must be positive");
+        }
+        if (aggregation.rules == null) {
+            throw new IllegalArgumentException("Aggregation rules cannot be null, empty array required");
+        }
+        if (aggregation.window == null || aggregation.window.isNegative() || aggregation.window.isZero()) {
+            throw new IllegalArgumentException("Aggregation window must be positive");
+        }
+        for (AggregationRule rule : aggregation.rules) {
+            if (rule.pathMatcher == null) {
+                throw new IllegalArgumentException("Aggregation rule path matcher cannot be null");
+            }
+        }
+        if (tail.latencyThreshold == null || tail.latencyThreshold.isNegative()) {
+            throw new IllegalArgumentException("Tail latency threshold cannot be null or negative");
+        }
+        if (tail.statusCodes == null) {
+            throw new IllegalArgumentException("Tail status codes cannot be null, empty array required");
+        }
+        StatusCodeSet.compile(tail.statusCodes);
+        if (output.format == null || output.fieldNames == null) {
+            throw new IllegalArgumentException("Output format and field names cannot be null");
+        }
+        validate(export);
+        if (dedup.window == null || dedup.window.isNegative() || dedup.window.isZero()) {
+            throw new IllegalArgumentException("Dedup window must be positive");
+        }
+        if (dedup.tableSize <= 0 || dedup.tableSize > 1 << 24 || dedup.minSize < 0) {
+            throw new IllegalArgumentException("Dedup table size must be between 1 and 16777216, min size cannot be negative");
+        }
+        for (SamplingRule rule : sampling.rules) {
+            if (rule.pathMatcher == null) {
+                throw new IllegalArgumentException("Sampling rule path matcher cannot be null");
+            }
+            if (rule.rate < 0 || rule.rate > 1) {
+                throw new IllegalArgumentException("Sampling rate must be between 0 and 1");
+            }
+            if (rule.maxPerSecond < 0) {
+                throw new IllegalArgumentException("Sampling max per second cannot be negative");
+            }
+        }
+    }
+
+    private static void validate(Export export) {
+        if (export.url == null || export.compression == null || export.batchInterval == null || export.timeout == null
+                || export.retryBackoff == null || export.maxRetryBackoff == null || export.spillMaxSize == null) {
+            throw new IllegalArgumentException("Export url, compression, durations and spill max size cannot be null");
+        }
+        String scheme = export.url.getScheme();
+        if (!"tcp".equals(scheme) && !"http".equals(scheme) && !"https".equals(scheme)
+                || export.url.getHost() == null || "tcp".equals(scheme) && export.url.getPort() < 0) {
+            throw new IllegalArgumentException("Export url must be tcp://host:port or an http(s) url");
+        }
+        if (export.batchSize <= 0 || export.queueCapacity <= 0) {
+            throw new IllegalArgumentException("Export batch size and queue capacity must be positive");
+        }
+        if (export.batchInterval.isNegative() || export.batchInterval.isZero() || export.timeout.isNegative()
+                || export.timeout.isZero() || export.retryBackoff.isNegative() || export.retryBackoff.isZero()) {
+            throw new IllegalArgumentException("Export batch interval, timeout and retry backoff must be positive");
+        }
+        if (export.maxRetryBackoff.compareTo(export.retryBackoff) < 0) {
+            throw new IllegalArgumentException("Export max retry backoff cannot be shorter than retry backoff");
+        }
+        if (export.spillMaxSize.toBytes() <= 0) {
+            throw new IllegalArgumentException("Export spill max size must be positive");
+        }
+    }
+
+    private static void validate(Request request, Response response) {
         if (request.maxPayloadSize <= 0 || response.maxPayloadSize <= 0) {
             throw new IllegalArgumentException("Max payload size cannot be negative");
         }
@@ -184,6 +925,17 @@ public class RequestLoggingProperties {
         if (request.whiteListedContentTypes == null || response.whiteListedContentTypes == null) {
             throw new IllegalArgumentException("White listed content types cannot be null, empty array required");
         }
+        if (response.streamingContentTypes == null) {
+            throw new IllegalArgumentException("Streaming content types cannot be null, empty array required");
+        }
+        if (request.whiteListedHeaders == null || response.whiteListedHeaders == null
+                || request.blackListedHeaders == null || response.blackListedHeaders == null) {
+            throw new IllegalArgumentException("White and black listed headers cannot be null, empty array required");
+        }
+        if (request.whiteListedHeaders.length > 0 && request.blackListedHeaders.length > 0
+                || response.whiteListedHeaders.length > 0 && response.blackListedHeaders.length > 0) {
+            throw new IllegalArgumentException("You cannot set black list together with white list for headers");
+        }
         if (request.blackListedServletPaths == null || response.blackListedServletPaths == null) {
             throw new IllegalArgumentException("Black listed servlet paths cannot be null, empty array required");
         }
@@ -200,13 +952,21 @@ public class RequestLoggingProperties {
             throw new IllegalArgumentException("You cannot set black list together with white list for content types");
         }
         for (Mask mask : request.masks) {
-            if (mask.maskedQueryParams == null || mask.maskedHeaders == null || mask.maskedJsonFields == null) {
-                throw new IllegalArgumentException("Mask query params, headers and json fields are not allowed to be null");
+            if (mask.maskedQueryParams == null || mask.maskedHeaders == null || mask.maskedJsonFields == null
+                    || mask.maskedXmlElements == null) {
+                throw new IllegalArgumentException("Mask query params, headers, json fields and xml elements are not allowed to be null");
+            }
+            if (mask.pathMatcher == null) {
+                throw new IllegalArgumentException("Mask path matcher cannot be null");
             }
         }
         for (Mask mask : response.masks) {
-            if (mask.maskedQueryParams == null || mask.maskedHeaders == null || mask.maskedJsonFields == null) {
-                throw new IllegalArgumentException("Mask query params, headers and json fields are not allowed to be null");
+            if (mask.maskedQueryParams == null || mask.maskedHeaders == null || mask.maskedJsonFields == null
+                    || mask.maskedXmlElements == null) {
+                throw new IllegalArgumentException("Mask query params, headers, json fields and xml elements are not allowed to be null");
+            }
+            if (mask.pathMatcher == null) {
+                throw new IllegalArgumentException("Mask path matcher cannot be null");
             }
         }
     }
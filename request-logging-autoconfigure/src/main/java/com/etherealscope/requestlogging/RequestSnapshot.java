@@ -0,0 +1,30 @@
+package com.etherealscope.requestlogging;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Raw request data taken on the request thread, before the container recycles the request.
+ * Nothing but headers is masked or formatted yet, optional parts are null when not configured to be logged.
+ */
+@Value
+@Builder
+class RequestSnapshot {
+
+    String method;
+    String url;
+    Map<String, String[]> queryParams;
+    /**
+     * Header names and values, alternating. Values of masked headers are replaced when taken.
+     */
+    String[] headers;
+    String ipAddress;
+    String contentType;
+    long contentLength;
+    String characterEncoding;
+    ByteBuffer body;
+
+}
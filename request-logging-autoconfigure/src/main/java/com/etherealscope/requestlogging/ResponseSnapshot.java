@@ -0,0 +1,30 @@
+package com.etherealscope.requestlogging;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Raw response data taken on the request thread. Nothing but headers is masked or formatted yet,
+ * optional parts are null when not configured to be logged.
+ */
+@Value
+@Builder
+class ResponseSnapshot {
+
+    int status;
+    String contentType;
+    String characterEncoding;
+    /**
+     * Header names and values, alternating. Values of masked headers are replaced when taken.
+     */
+    String[] headers;
+    ByteBuffer body;
+    /**
+     * Class name of the exception an outbound exchange failed with before a response arrived,
+     * the status is 0 and the other parts are null then.
+     */
+    String failure;
+
+}
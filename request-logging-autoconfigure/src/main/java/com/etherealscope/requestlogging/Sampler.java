@@ -0,0 +1,74 @@
+package com.etherealscope.requestlogging;
+
+import com.etherealscope.requestlogging.RequestLoggingProperties.SamplingRule;
+import lombok.Getter;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.Math.max;
+
+/**
+ * Head based sampling decision of one sampling rule: a fixed sampling rate followed by a token bucket
+ * allowing at most {@code maxPerSecond} logged requests per second. Both are lock-free.
+ */
+final class Sampler {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Getter
+    private final SamplingRule rule;
+    private final double rate;
+    private final long emissionInterval;
+    private final long burstTolerance;
+    private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder overBudget = new LongAdder();
+
+    Sampler(SamplingRule rule) {
+        this.rule = rule;
+        this.rate = rule.getRate();
+        this.emissionInterval = rule.getMaxPerSecond() > 0 ? SECOND / rule.getMaxPerSecond() : 0;
+        this.burstTolerance = SECOND - emissionInterval;
+    }
+
+    boolean sample() {
+        if (rate < 1.0 && ThreadLocalRandom.current().nextDouble() >= rate) {
+            sampledOut.increment();
+            return false;
+        }
+        if (emissionInterval > 0 && !tryAcquire()) {
+            overBudget.increment();
+            return false;
+        }
+        return true;
+    }
+
+    long drainSampledOut() {
+        return sampledOut.sumThenReset();
+    }
+
+    long drainOverBudget() {
+        return overBudget.sumThenReset();
+    }
+
+    /**
+     * Generic cell rate algorithm, equivalent to a token bucket holding one second of budget.
+     */
+    private boolean tryAcquire() {
+        long now = System.nanoTime();
+        while (true) {
+            long arrival = theoreticalArrival.get();
+            if (arrival - now > burstTolerance) {
+                return false;
+            }
+            long next = max(arrival - now, 0) + now + emissionInterval;
+            if (theoreticalArrival.compareAndSet(arrival, next)) {
+                return true;
+            }
+        }
+    }
+
+}
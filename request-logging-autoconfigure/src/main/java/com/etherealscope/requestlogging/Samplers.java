@@ -0,0 +1,58 @@
+package com.etherealscope.requestlogging;
+
+import com.etherealscope.requestlogging.RequestLoggingProperties.SamplingRule;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.stream.Stream;
+
+import static com.etherealscope.requestlogging.CommonUtils.MATCHER;
+
+/**
+ * Configured sampling rules. The first rule matching a request decides whether it is logged,
+ * requests matching no rule are always logged.
+ */
+@Slf4j(topic = "com.etherealscope.requestlogging.RequestLoggingFilter")
+final class Samplers {
+
+    private final Sampler[] samplers;
+
+    Samplers(SamplingRule... rules) {
+        this.samplers = Stream.of(rules).map(Sampler::new).toArray(Sampler[]::new);
+    }
+
+    boolean isEmpty() {
+        return samplers.length == 0;
+    }
+
+    Sampler match(String method, String servletPath) {
+        for (Sampler sampler : samplers) {
+            SamplingRule rule = sampler.getRule();
+            if ((rule.getMethod() == null || rule.getMethod().matches(method)) && MATCHER.match(rule.getPathMatcher(), servletPath)) {
+                return sampler;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Logs one line with the numbers of requests skipped per rule since the previous summary.
+     */
+    void logSummary() {
+        StringBuilder sb = new StringBuilder("Request logging sampling summary:");
+        boolean skipped = false;
+        for (Sampler sampler : samplers) {
+            long sampledOut = sampler.drainSampledOut();
+            long overBudget = sampler.drainOverBudget();
+            if (sampledOut > 0 || overBudget > 0) {
+                sb.append(skipped ? ", " : " ").append(sampler.getRule().getPathMatcher())
+                        .append(" sampled-out=").append(sampledOut)
+                        .append(" over-budget=").append(overBudget);
+                skipped = true;
+            }
+        }
+        if (skipped) {
+            log.info(sb.toString());
+        }
+    }
+
+}
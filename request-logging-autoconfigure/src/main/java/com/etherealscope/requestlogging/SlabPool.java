@@ -0,0 +1,136 @@
+package com.etherealscope.requestlogging;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of direct buffers of one size backing body captures. At most {@code maxSlabs} direct buffers
+ * are ever allocated and they are reused once their exchange is logged. While all of them are in use,
+ * captures get heap buffers which are left to the garbage collector.
+ * <p>
+ * With the journal enabled, slabs stay at the max payload size and a capture running past its slab takes
+ * chunks of a separate overflow pool, up to the journal max body size. The overflow pool never falls back
+ * to heap buffers, a body overflowing while all of its chunks are in use is cut at the slab.
+ */
+final class SlabPool {
+
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    private final int slabSize;
+    private final int maxSlabs;
+    private final SlabPool overflow;
+    private final int captureLimit;
+    private final Queue<ByteBuffer> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final AtomicInteger allocated = new AtomicInteger();
+    private final LongAdder exhausted = new LongAdder();
+
+    SlabPool(int slabSize, int maxSlabs) {
+        this(slabSize, maxSlabs, null, slabSize);
+    }
+
+    /**
+     * @param overflow     chunks capturing bodies beyond the slab, null when they are cut at the slab
+     * @param captureLimit max bytes captured of one body, slab and chunks together
+     */
+    SlabPool(int slabSize, int maxSlabs, SlabPool overflow, int captureLimit) {
+        this.slabSize = slabSize;
+        this.maxSlabs = maxSlabs;
+        this.overflow = overflow;
+        this.captureLimit = captureLimit;
+    }
+
+    static SlabPool requestPool(RequestLoggingProperties props) {
+        return pool(props, props.getRequest().getMaxPayloadSize());
+    }
+
+    static SlabPool responsePool(RequestLoggingProperties props) {
+        return pool(props, props.getResponse().getMaxPayloadSize());
+    }
+
+    private static SlabPool pool(RequestLoggingProperties props, int maxPayloadSize) {
+        int maxSlabs = props.getCapturePool().getMaxSlabs();
+        int maxBodySize = (int) props.getJournal().getMaxBodySize().toBytes();
+        if (!props.getJournal().isEnabled() || maxBodySize <= maxPayloadSize) {
+            return new SlabPool(maxPayloadSize, maxSlabs);
+        }
+        int maxChunks = (int) Math.min(Integer.MAX_VALUE, props.getJournal().getOverflowPoolSize().toBytes() / CHUNK_SIZE);
+        return new SlabPool(maxPayloadSize, maxSlabs, new SlabPool(CHUNK_SIZE, maxChunks), maxBodySize);
+    }
+
+    /**
+     * A direct buffer, or a heap buffer while all direct buffers are in use.
+     */
+    ByteBuffer acquire() {
+        ByteBuffer slab = tryAcquire();
+        return slab != null ? slab : ByteBuffer.allocate(slabSize);
+    }
+
+    /**
+     * A direct buffer, or null while all of them are in use.
+     */
+    ByteBuffer tryAcquire() {
+        ByteBuffer slab = idle.poll();
+        if (slab != null) {
+            idleCount.decrementAndGet();
+            return slab;
+        }
+        if (allocated.incrementAndGet() <= maxSlabs) {
+            return ByteBuffer.allocateDirect(slabSize);
+        }
+        allocated.decrementAndGet();
+        exhausted.increment();
+        return null;
+    }
+
+    void release(ByteBuffer slab) {
+        if (slab.isDirect()) {
+            slab.clear();
+            idle.offer(slab);
+            idleCount.incrementAndGet();
+        }
+    }
+
+    int getSlabSize() {
+        return slabSize;
+    }
+
+    /**
+     * Pool of chunks capturing bodies beyond the slab, null when bodies are cut at the slab.
+     */
+    SlabPool getOverflow() {
+        return overflow;
+    }
+
+    /**
+     * Max bytes captured of one body, the slab size without an overflow pool.
+     */
+    int getCaptureLimit() {
+        return captureLimit;
+    }
+
+    /**
+     * Number of direct buffers allocated so far.
+     */
+    int getAllocated() {
+        return allocated.get();
+    }
+
+    /**
+     * Number of direct buffers held by captures not logged yet.
+     */
+    int getInUse() {
+        return allocated.get() - idleCount.get();
+    }
+
+    /**
+     * Number of captures which got a heap buffer, or of an overflow pool were cut, because all direct buffers were in use.
+     */
+    long getExhaustedCount() {
+        return exhausted.sum();
+    }
+
+}
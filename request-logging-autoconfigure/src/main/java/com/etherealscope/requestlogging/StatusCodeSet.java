@@ -0,0 +1,105 @@
+package com.etherealscope.requestlogging;
+
+import java.util.Locale;
+
+/**
+ * Status code selection compiled into a bitset, so checking a response status is a single bit test.
+ * Accepts the {@link StatusCode} classes (with or without the {@code sc_} prefix),
+ * exact codes like {@code 429} and inclusive ranges like {@code 500-504}.
+ */
+final class StatusCodeSet {
+
+    private static final int MIN_STATUS = 100;
+    private static final int MAX_STATUS = 999;
+
+    private final long[] bits = new long[(MAX_STATUS >> 6) + 1];
+
+    private StatusCodeSet() {
+    }
+
+    static StatusCodeSet compile(String... codes) {
+        StatusCodeSet set = new StatusCodeSet();
+        for (String code : codes) {
+            if (code == null || code.trim().isEmpty()) {
+                throw new IllegalArgumentException("Status code cannot be null or empty");
+            }
+            set.add(code.trim());
+        }
+        return set;
+    }
+
+    /**
+     * Statuses outside of the valid range are always selected, as the unknown ones always were.
+     */
+    boolean contains(int status) {
+        if (status < MIN_STATUS || status > MAX_STATUS) {
+            return true;
+        }
+        return (bits[status >> 6] & (1L << status)) != 0;
+    }
+
+    private void add(String code) {
+        String upperCase = code.toUpperCase(Locale.ROOT);
+        String name = upperCase.startsWith("SC_") ? upperCase : "SC_" + upperCase;
+        for (StatusCode statusCode : StatusCode.values()) {
+            if (statusCode.name().equals(name)) {
+                addClass(statusCode);
+                return;
+            }
+        }
+        int dash = code.indexOf('-');
+        if (dash < 0) {
+            int status = parse(code, code);
+            addRange(status, status);
+        } else {
+            int from = parse(code.substring(0, dash).trim(), code);
+            int to = parse(code.substring(dash + 1).trim(), code);
+            if (from > to) {
+                throw new IllegalArgumentException("Status code range " + code + " is reversed");
+            }
+            addRange(from, to);
+        }
+    }
+
+    private void addClass(StatusCode statusCode) {
+        switch (statusCode) {
+            case SC_1XX:
+                addRange(100, 199);
+                break;
+            case SC_2XX:
+                addRange(200, 299);
+                break;
+            case SC_3XX:
+                addRange(300, 399);
+                break;
+            case SC_4XX:
+                addRange(400, 499);
+                break;
+            case SC_5XX:
+                addRange(500, 599);
+                break;
+            default:
+                addRange(MIN_STATUS, MAX_STATUS);
+        }
+    }
+
+    private void addRange(int from, int to) {
+        for (int status = from; status <= to; status++) {
+            bits[status >> 6] |= 1L << status;
+        }
+    }
+
+    private static int parse(String status, String code) {
+        try {
+            int value = Integer.parseInt(status);
+            if (value >= MIN_STATUS && value <= MAX_STATUS) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Unknown status code " + code
+                + ", expected sc_1xx to sc_5xx, sc_any, an exact code like 429 or a range like 500-504");
+    }
+
+}
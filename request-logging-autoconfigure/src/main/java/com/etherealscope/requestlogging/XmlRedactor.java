@@ -0,0 +1,179 @@
+package com.etherealscope.requestlogging;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static com.etherealscope.requestlogging.CommonUtils.indexOf;
+import static com.etherealscope.requestlogging.CommonUtils.utf8Boundary;
+import static com.etherealscope.requestlogging.CompiledMask.isMaskedXmlElement;
+import static com.etherealscope.requestlogging.MaskUtils.MASK;
+import static java.lang.Math.min;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Single pass xml redaction over raw bytes, without building a document. The content of every masked element,
+ * nested elements included, and the value of every masked attribute are replaced by the mask. Names are compared
+ * by their local names, so {@code <ns:password>} is masked by {@code password}. Comments, processing instructions
+ * and CDATA sections are copied as they are, malformed or truncated xml is copied as far as it goes, except
+ * that a masked element cut by the max length is masked to the end.
+ */
+final class XmlRedactor {
+
+    private static final byte[] MASK_BYTES = MASK.getBytes(UTF_8);
+    private static final byte[] COMMENT = "<!--".getBytes(UTF_8);
+    private static final byte[] COMMENT_END = "-->".getBytes(UTF_8);
+    private static final byte[] CDATA = "<![CDATA[".getBytes(UTF_8);
+    private static final byte[] CDATA_END = "]]>".getBytes(UTF_8);
+
+    private XmlRedactor() {
+    }
+
+    /**
+     * Writes at most {@code maxLength} bytes of the body, cut on a character boundary, to the output.
+     */
+    static void redact(ByteBuffer body, int maxLength, List<CompiledMask> masks, PayloadBuffer out) {
+        int start = body.position();
+        int end = utf8Boundary(body, start, min(body.limit(), start + maxLength));
+        int copyFrom = start;
+        int i = start;
+        while (i < end) {
+            if (body.get(i) != '<') {
+                i++;
+                continue;
+            }
+            int special = skipSpecial(body, i, end);
+            if (special >= 0) {
+                i = special;
+                continue;
+            }
+            int nameEnd = skipName(body, i + 1, end);
+            boolean maskedElement = isMaskedXmlElement(body, localName(body, i + 1, nameEnd), nameEnd, masks);
+            int j = nameEnd;
+            while (j < end && body.get(j) != '>' && body.get(j) != '/') {
+                int attributeStart = skipWhitespace(body, j, end);
+                int attributeEnd = skipName(body, attributeStart, end);
+                if (attributeEnd == attributeStart) {
+                    j = attributeStart < end && body.get(attributeStart) != '>' && body.get(attributeStart) != '/' ? attributeStart + 1 : attributeStart;
+                    continue;
+                }
+                j = skipWhitespace(body, attributeEnd, end);
+                if (j < end && body.get(j) == '=') {
+                    j = skipWhitespace(body, j + 1, end);
+                    if (j < end && (body.get(j) == '"' || body.get(j) == '\'')) {
+                        int valueEnd = indexOf(body, j + 1, end, body.get(j));
+                        if (isMaskedXmlElement(body, localName(body, attributeStart, attributeEnd), attributeEnd, masks)) {
+                            out.write(body, copyFrom, j + 1).write(MASK_BYTES);
+                            copyFrom = valueEnd;
+                        }
+                        j = min(valueEnd + 1, end);
+                    }
+                }
+            }
+            int tagEnd = min(indexOf(body, j, end, (byte) '>') + 1, end);
+            boolean selfClosing = j < end && body.get(j) == '/';
+            if (maskedElement && !selfClosing) {
+                int contentEnd = closingTag(body, tagEnd, end);
+                out.write(body, copyFrom, tagEnd).write(MASK_BYTES);
+                copyFrom = contentEnd;
+                i = contentEnd;
+            } else {
+                i = tagEnd;
+            }
+        }
+        out.write(body, copyFrom, end);
+    }
+
+    /**
+     * Index after a comment, CDATA section, processing instruction, declaration or end tag starting at {@code i},
+     * or -1 when a start tag starts there.
+     */
+    private static int skipSpecial(ByteBuffer body, int i, int end) {
+        if (startsWith(body, i, end, COMMENT)) {
+            return skipPast(body, i + COMMENT.length, end, COMMENT_END);
+        }
+        if (startsWith(body, i, end, CDATA)) {
+            return skipPast(body, i + CDATA.length, end, CDATA_END);
+        }
+        if (i + 1 < end && (body.get(i + 1) == '?' || body.get(i + 1) == '!' || body.get(i + 1) == '/')) {
+            return min(indexOf(body, i + 1, end, (byte) '>') + 1, end);
+        }
+        return -1;
+    }
+
+    /**
+     * Index of the end tag closing the element whose content starts at {@code i}, or {@code end} if it is not closed.
+     */
+    private static int closingTag(ByteBuffer body, int i, int end) {
+        int depth = 1;
+        while (i < end) {
+            if (body.get(i) != '<') {
+                i++;
+                continue;
+            }
+            if (i + 1 < end && body.get(i + 1) == '/' && --depth == 0) {
+                return i;
+            }
+            int special = skipSpecial(body, i, end);
+            if (special >= 0) {
+                i = special;
+                continue;
+            }
+            int close = indexOf(body, i, end, (byte) '>');
+            if (close < end && body.get(close - 1) != '/') {
+                depth++;
+            }
+            i = min(close + 1, end);
+        }
+        return end;
+    }
+
+    private static int localName(ByteBuffer body, int from, int to) {
+        int colon = indexOf(body, from, to, (byte) ':');
+        return colon < to ? colon + 1 : from;
+    }
+
+    private static int skipName(ByteBuffer body, int i, int end) {
+        while (i < end && !isNameEnd(body.get(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isNameEnd(byte c) {
+        return c == '>' || c == '/' || c == '=' || c == '"' || c == '\'' || isWhitespace(c);
+    }
+
+    private static int skipWhitespace(ByteBuffer body, int i, int end) {
+        while (i < end && isWhitespace(body.get(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWhitespace(byte c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private static boolean startsWith(ByteBuffer body, int i, int end, byte[] prefix) {
+        if (end - i < prefix.length) {
+            return false;
+        }
+        for (int k = 0; k < prefix.length; k++) {
+            if (body.get(i + k) != prefix[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipPast(ByteBuffer body, int i, int end, byte[] terminator) {
+        while (i < end) {
+            if (startsWith(body, i, end, terminator)) {
+                return i + terminator.length;
+            }
+            i++;
+        }
+        return end;
+    }
+
+}
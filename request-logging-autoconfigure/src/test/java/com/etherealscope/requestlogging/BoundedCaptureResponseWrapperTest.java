@@ -0,0 +1,90 @@
+package com.etherealscope.requestlogging;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.PrintWriter;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class BoundedCaptureResponseWrapperTest {
+
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+    private final BoundedCaptureResponseWrapper wrapper = new BoundedCaptureResponseWrapper(response,
+            new SlabPool(64, 1), contentType -> true);
+
+    @Test
+    void writerWritesThroughAndIsCaptured() throws Exception {
+        wrapper.setCharacterEncoding("UTF-8");
+        wrapper.getWriter().print("café 😀");
+        wrapper.flushBuffer();
+
+        assertThat(response.getContentAsString(UTF_8)).isEqualTo("café 😀");
+        assertThat(UTF_8.decode(wrapper.getContent()).toString()).isEqualTo("café 😀");
+    }
+
+    @Test
+    void surrogatePairSplitOverWrites() throws Exception {
+        wrapper.setCharacterEncoding("UTF-8");
+        PrintWriter writer = wrapper.getWriter();
+        writer.print('\uD83D');
+        writer.print('\uDE00');
+        writer.flush();
+
+        assertThat(response.getContentAsString(UTF_8)).isEqualTo("😀");
+    }
+
+    @Test
+    void resetBufferDropsCharactersWrittenBefore() throws Exception {
+        wrapper.setCharacterEncoding("UTF-8");
+        PrintWriter writer = wrapper.getWriter();
+        writer.print("error page \uD83D");
+        wrapper.resetBuffer();
+        writer.print("ok");
+        writer.flush();
+
+        assertThat(response.getContentAsString(UTF_8)).isEqualTo("ok");
+        assertThat(UTF_8.decode(wrapper.getContent()).toString()).isEqualTo("ok");
+        assertThat(wrapper.getTotalBytes()).isEqualTo(2);
+    }
+
+    @Test
+    void resetAllowsOtherWriterEncoding() throws Exception {
+        wrapper.setCharacterEncoding("UTF-8");
+        wrapper.getWriter().print("first");
+        wrapper.reset();
+        wrapper.setCharacterEncoding("ISO-8859-1");
+        wrapper.getWriter().print("café");
+        wrapper.flushBuffer();
+
+        assertThat(response.getContentAsByteArray()).containsExactly('c', 'a', 'f', 0xe9);
+        assertThat(wrapper.getTotalBytes()).isEqualTo(4);
+    }
+
+    @Test
+    void outputStreamRefusedAfterWriter() throws Exception {
+        wrapper.getWriter();
+
+        assertThatIllegalStateException().isThrownBy(wrapper::getOutputStream);
+    }
+
+    @Test
+    void writerRefusedAfterOutputStream() throws Exception {
+        wrapper.getOutputStream();
+
+        assertThatIllegalStateException().isThrownBy(wrapper::getWriter);
+    }
+
+    @Test
+    void resetAllowsOtherOfWriterAndOutputStream() throws Exception {
+        wrapper.getOutputStream().write('x');
+        wrapper.reset();
+        wrapper.getWriter().print("y");
+        wrapper.flushBuffer();
+
+        assertThat(response.getContentAsString()).isEqualTo("y");
+    }
+
+}
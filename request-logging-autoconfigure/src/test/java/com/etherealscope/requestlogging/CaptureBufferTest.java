@@ -0,0 +1,109 @@
+package com.etherealscope.requestlogging;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CaptureBufferTest {
+
+    @Test
+    void truncatedContentEndsOnCharacter() {
+        CaptureBuffer capture = new CaptureBuffer(new SlabPool(4, 1));
+        byte[] body = "ab\u20ac\u20ac".getBytes(UTF_8);
+        capture.write(body, 0, body.length);
+
+        assertThat(capture.total()).isEqualTo(body.length);
+        assertThat(UTF_8.decode(capture.content()).toString()).isEqualTo("ab");
+        capture.release();
+    }
+
+    @Test
+    void contentCapturedInFullIsKept() {
+        CaptureBuffer capture = new CaptureBuffer(new SlabPool(5, 1));
+        byte[] body = "ab\u20ac".getBytes(UTF_8);
+        capture.write(body, 0, body.length);
+
+        assertThat(UTF_8.decode(capture.content()).toString()).isEqualTo("ab\u20ac");
+        capture.release();
+    }
+
+    @Test
+    void overflowingContentIsCapturedIntoChunksUpToLimit() {
+        SlabPool overflow = new SlabPool(3, 4);
+        CaptureBuffer capture = new CaptureBuffer(new SlabPool(4, 1, overflow, 10));
+        byte[] body = "abcdefghijklmnop".getBytes(UTF_8);
+        capture.write(body, 0, 5);
+        capture.write('f');
+        capture.write(ByteBuffer.wrap(body, 6, 10));
+
+        assertThat(capture.total()).isEqualTo(body.length);
+        assertThat(overflow.getInUse()).isEqualTo(2);
+        assertThat(UTF_8.decode(capture.content()).toString()).isEqualTo("abcdefghij");
+        assertThat(overflow.getInUse()).as("chunks given back once joined").isZero();
+        assertThat(UTF_8.decode(capture.content()).toString()).isEqualTo("abcdefghij");
+        capture.release();
+    }
+
+    @Test
+    void overflowingContentIsCutAtSlabWhenChunksAreExhausted() {
+        SlabPool overflow = new SlabPool(3, 1);
+        SlabPool pool = new SlabPool(4, 2, overflow, 10);
+        CaptureBuffer first = new CaptureBuffer(pool);
+        CaptureBuffer second = new CaptureBuffer(pool);
+        byte[] body = "abcdefgh".getBytes(UTF_8);
+        first.write(body, 0, body.length);
+        second.write(body, 0, body.length);
+
+        assertThat(UTF_8.decode(first.content()).toString()).isEqualTo("abcdefg");
+        assertThat(UTF_8.decode(second.content()).toString()).isEqualTo("abcd");
+        assertThat(overflow.getExhaustedCount()).isEqualTo(2);
+        first.release();
+        second.release();
+        assertThat(pool.getInUse()).isZero();
+        assertThat(overflow.getInUse()).isZero();
+    }
+
+    @Test
+    void releaseGivesChunksBack() {
+        SlabPool overflow = new SlabPool(3, 4);
+        CaptureBuffer capture = new CaptureBuffer(new SlabPool(4, 1, overflow, 10));
+        capture.write("abcdefgh".getBytes(UTF_8), 0, 8);
+
+        capture.release();
+
+        assertThat(overflow.getInUse()).isZero();
+        assertThat(overflow.getAllocated()).isEqualTo(2);
+    }
+
+    @Test
+    void slabsStayAtMaxPayloadSizeWithJournal() {
+        RequestLoggingProperties props = new RequestLoggingProperties();
+        props.getRequest().setMaxPayloadSize(1000);
+        props.getJournal().setEnabled(true);
+        props.getJournal().setMaxBodySize(DataSize.ofKilobytes(256));
+        props.getJournal().setOverflowPoolSize(DataSize.ofMegabytes(1));
+
+        SlabPool pool = SlabPool.requestPool(props);
+
+        assertThat(pool.getSlabSize()).isEqualTo(1000);
+        assertThat(pool.getCaptureLimit()).isEqualTo(256 * 1024);
+        assertThat(pool.getOverflow().getSlabSize()).isEqualTo(SlabPool.CHUNK_SIZE);
+    }
+
+    @Test
+    void slabsHaveNoOverflowWithoutJournal() {
+        RequestLoggingProperties props = new RequestLoggingProperties();
+        props.getRequest().setMaxPayloadSize(1000);
+
+        SlabPool pool = SlabPool.requestPool(props);
+
+        assertThat(pool.getSlabSize()).isEqualTo(1000);
+        assertThat(pool.getCaptureLimit()).isEqualTo(1000);
+        assertThat(pool.getOverflow()).isNull();
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.etherealscope.requestlogging;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CommonUtilsTest {
+
+    @Test
+    void utf8BoundaryWithinBytes() {
+        ByteBuffer bytes = ByteBuffer.wrap("a\u00e9b".getBytes(UTF_8));
+
+        assertThat(CommonUtils.utf8Boundary(bytes, 0, 2)).isEqualTo(1);
+        assertThat(CommonUtils.utf8Boundary(bytes, 0, 3)).isEqualTo(3);
+        assertThat(CommonUtils.utf8Boundary(bytes, 0, 4)).isEqualTo(4);
+    }
+
+    @Test
+    void utf8BoundaryAtLimitOfTruncatedBytes() {
+        byte[] euro = "\u20ac".getBytes(UTF_8);
+        byte[] emoji = "\uD83D\uDE00".getBytes(UTF_8);
+
+        assertThat(CommonUtils.utf8Boundary(bytes("a", euro, 1), 0, 2, true)).isEqualTo(1);
+        assertThat(CommonUtils.utf8Boundary(bytes("a", euro, 2), 0, 3, true)).isEqualTo(1);
+        assertThat(CommonUtils.utf8Boundary(bytes("a", euro, 3), 0, 4, true)).isEqualTo(4);
+        assertThat(CommonUtils.utf8Boundary(bytes("a", emoji, 3), 0, 4, true)).isEqualTo(1);
+        assertThat(CommonUtils.utf8Boundary(bytes("ab", emoji, 0), 0, 2, true)).isEqualTo(2);
+        assertThat(CommonUtils.utf8Boundary(bytes("a", euro, 2), 0, 3, false)).isEqualTo(3);
+    }
+
+    private static ByteBuffer bytes(String prefix, byte[] character, int length) {
+        byte[] start = prefix.getBytes(UTF_8);
+        ByteBuffer bytes = ByteBuffer.allocate(start.length + length);
+        bytes.put(start).put(character, 0, length);
+        bytes.flip();
+        return bytes;
+    }
+
+}
@@ -0,0 +1,194 @@
+package com.etherealscope.requestlogging;
+
+import com.etherealscope.requestlogging.RequestLoggingProperties.Export;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static com.etherealscope.requestlogging.ExportCompression.NONE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExchangeExporterTest {
+
+    private ExchangeExporter exporter;
+    private HttpServer httpServer;
+
+    @AfterEach
+    void close() {
+        if (exporter != null) {
+            exporter.close();
+        }
+        if (httpServer != null) {
+            httpServer.stop(0);
+        }
+    }
+
+    @Test
+    void batchesAreSpilledWhileCollectorIsDownAndResentInOrder(@TempDir Path spillDirectory) throws Exception {
+        int port = freePort();
+        Export config = config(URI.create("tcp://localhost:" + port));
+        config.setSpillDirectory(spillDirectory.toString());
+        exporter = new ExchangeExporter(config);
+
+        for (int i = 0; i < 6; i++) {
+            exporter.export(line("{\"n\":" + i + "}"));
+        }
+        await(() -> spilledFiles(spillDirectory) == 3);
+        long failures = exporter.getFailureCount();
+        Thread.sleep(600);
+        assertThat(exporter.getFailureCount())
+                .as("retried, backing off up to the max retry backoff")
+                .isGreaterThan(failures)
+                .isLessThan(failures + 10);
+
+        exporter.export(line("{\"n\":6}"));
+        exporter.export(line("{\"n\":7}"));
+        List<String> received = receive(port, 8);
+
+        assertThat(received).containsExactly("{\"n\":0}", "{\"n\":1}", "{\"n\":2}", "{\"n\":3}",
+                "{\"n\":4}", "{\"n\":5}", "{\"n\":6}", "{\"n\":7}");
+        await(() -> spilledFiles(spillDirectory) == 0);
+        assertThat(exporter.getDroppedCount()).isZero();
+    }
+
+    @Test
+    void batchIsRetriedFromMemoryWithoutSpillDirectory() throws Exception {
+        int port = freePort();
+        Export config = config(URI.create("tcp://localhost:" + port));
+        config.setQueueCapacity(2);
+        exporter = new ExchangeExporter(config);
+
+        exporter.export(line("{\"n\":0}"));
+        exporter.export(line("{\"n\":1}"));
+        await(() -> exporter.getFailureCount() > 0);
+        exporter.export(line("{\"n\":2}"));
+        exporter.export(line("{\"n\":3}"));
+        exporter.export(line("{\"n\":4}"));
+        assertThat(exporter.getQueueSize()).isEqualTo(2);
+        assertThat(exporter.getDroppedCount()).as("queue full while the batch is retried").isEqualTo(1);
+
+        assertThat(receive(port, 4)).containsExactly("{\"n\":0}", "{\"n\":1}", "{\"n\":2}", "{\"n\":3}");
+        assertThat(exporter.getDroppedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void batchRejectedByHttpCollectorIsDropped() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        exporter = new ExchangeExporter(config(httpCollector(400, requests)));
+
+        exporter.export(line("{\"n\":0}"));
+        exporter.export(line("{\"n\":1}"));
+
+        await(() -> exporter.getDroppedCount() == 2);
+        Thread.sleep(200);
+        assertThat(requests).hasValue(1);
+        assertThat(exporter.getFailureCount()).isZero();
+    }
+
+    @Test
+    void batchThrottledByHttpCollectorIsRetried() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        exporter = new ExchangeExporter(config(httpCollector(429, requests)));
+
+        exporter.export(line("{\"n\":0}"));
+        exporter.export(line("{\"n\":1}"));
+
+        await(() -> requests.get() >= 3);
+        assertThat(exporter.getDroppedCount()).isZero();
+        assertThat(exporter.getFailureCount()).isGreaterThanOrEqualTo(2);
+    }
+
+    /**
+     * Collector coming up on the port, reading lines off the first connection.
+     */
+    private static List<String> receive(int port, int lines) throws IOException {
+        List<String> received = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket()) {
+            server.setReuseAddress(true);
+            server.bind(new InetSocketAddress("localhost", port));
+            server.setSoTimeout(5000);
+            try (Socket socket = server.accept()) {
+                socket.setSoTimeout(5000);
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+                while (received.size() < lines) {
+                    received.add(reader.readLine());
+                }
+            }
+        }
+        return received;
+    }
+
+    private URI httpCollector(int status, AtomicInteger requests) throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        httpServer.createContext("/", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                while (in.read() >= 0) {
+                    // drained
+                }
+            }
+            requests.incrementAndGet();
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        httpServer.start();
+        return URI.create("http://localhost:" + httpServer.getAddress().getPort() + "/bulk");
+    }
+
+    private static Export config(URI url) {
+        Export config = new Export();
+        config.setUrl(url);
+        config.setCompression(NONE);
+        config.setBatchSize(2);
+        config.setBatchInterval(Duration.ofMillis(50));
+        config.setTimeout(Duration.ofSeconds(1));
+        config.setRetryBackoff(Duration.ofMillis(50));
+        config.setMaxRetryBackoff(Duration.ofMillis(200));
+        return config;
+    }
+
+    private static PayloadBuffer line(String json) {
+        return PayloadBuffer.acquire().write(json.getBytes(UTF_8));
+    }
+
+    private static long spilledFiles(Path directory) {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> !file.getFileName().toString().endsWith(".tmp")).count();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.etherealscope.requestlogging;
+
+import com.etherealscope.requestlogging.RequestLoggingProperties.Mask;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FormRedactorTest {
+
+    private static final List<CompiledMask> MASKS = masks("password", "card number", "sch\u00f6n");
+
+    @Test
+    void maskedFieldValuesAreReplaced() {
+        assertThat(redact("user=john&password=secret&remember=on"))
+                .isEqualTo("user=john&password=*****&remember=on");
+        assertThat(redact("password=&password=a%26b"))
+                .isEqualTo("password=*****&password=*****");
+    }
+
+    @Test
+    void percentEncodedFieldNamesAreDecoded() {
+        assertThat(redact("pass%77ord=a&pass%57ord=b&card+number=4111&card%20number=4111&sch%C3%B6n=c"))
+                .isEqualTo("pass%77ord=*****&pass%57ord=b&card+number=*****&card%20number=*****&sch%C3%B6n=*****");
+    }
+
+    @Test
+    void malformedPercentEncodingIsNotDecoded() {
+        assertThat(redact("password%=a&pass%7=b&%zzpassword=c"))
+                .isEqualTo("password%=a&pass%7=b&%zzpassword=c");
+    }
+
+    @Test
+    void fieldsWithoutValueAreCopied() {
+        assertThat(redact("password&user=john&")).isEqualTo("password&user=john&");
+    }
+
+    @Test
+    void outputIsCutAtMaxLength() {
+        String body = "user=john&password=secret";
+
+        assertThat(redact(body, 7)).isEqualTo("user=jo");
+        assertThat(redact(body, 21)).isEqualTo("user=john&password=*****");
+        assertThat(redact(body, 19)).isEqualTo("user=john&password=*****");
+        assertThat(redact(body, 18)).isEqualTo("user=john&password");
+    }
+
+    private static String redact(String body) {
+        return redact(body, Integer.MAX_VALUE);
+    }
+
+    private static String redact(String body, int maxLength) {
+        PayloadBuffer out = PayloadBuffer.acquire();
+        try {
+            FormRedactor.redact(ByteBuffer.wrap(body.getBytes(UTF_8)), maxLength, MASKS, out);
+            return out.toString(UTF_8);
+        } finally {
+            out.release();
+        }
+    }
+
+    private static List<CompiledMask> masks(String... queryParams) {
+        Mask mask = new Mask();
+        mask.setMaskedQueryParams(queryParams);
+        return Collections.singletonList(new CompiledMask(mask));
+    }
+
+}
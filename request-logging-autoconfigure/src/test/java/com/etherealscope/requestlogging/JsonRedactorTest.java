@@ -0,0 +1,101 @@
+package com.etherealscope.requestlogging;
+
+import com.etherealscope.requestlogging.RequestLoggingProperties.Mask;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JsonRedactorTest {
+
+    private static final List<CompiledMask> MASKS = masks("password", "card", "pin", "sch\u00f6n", "\ud83d\udd11");
+
+    @Test
+    void stringValueWithEscapedQuotesAndBackslashesIsMasked() {
+        assertThat(redact("{\"password\":\"a\\\"b\\\\\",\"user\":\"x\\\"y\"}"))
+                .isEqualTo("{\"password\":\"*****\",\"user\":\"x\\\"y\"}");
+    }
+
+    @Test
+    void escapedQuoteInValueIsNotTakenForKey() {
+        assertThat(redact("{\"note\":\"\\\"password\\\":\",\"user\":\"x\"}"))
+                .isEqualTo("{\"note\":\"\\\"password\\\":\",\"user\":\"x\"}");
+    }
+
+    @Test
+    void objectArrayAndNumberValuesAreMasked() {
+        assertThat(redact("{\"card\":{\"number\":\"4111\",\"cvc\":[1,2]},\"pin\":[1, {\"a\":\"]\"}],\"password\":1234,\"id\":7}"))
+                .isEqualTo("{\"card\":\"*****\",\"pin\":\"*****\",\"password\":\"*****\",\"id\":7}");
+    }
+
+    @Test
+    void nestedFieldIsMasked() {
+        assertThat(redact("[{\"user\":{\"password\" : true}}]"))
+                .isEqualTo("[{\"user\":{\"password\" : \"*****\"}}]");
+    }
+
+    @Test
+    void fieldNameOnlyAsValueIsNotMasked() {
+        assertThat(redact("{\"field\":\"password\",\"list\":[\"password\"]}"))
+                .isEqualTo("{\"field\":\"password\",\"list\":[\"password\"]}");
+    }
+
+    @Test
+    void escapedKeysAreMasked() {
+        assertThat(redact("{\"pass\\u0077ord\":\"x\",\"pass\\u0057ord\":\"y\"}"))
+                .isEqualTo("{\"pass\\u0077ord\":\"*****\",\"pass\\u0057ord\":\"y\"}");
+        assertThat(redact("{\"\\u0070\\u0069\\u006E\":1,\"p\\/in\":2,\"\\/pin\":3}"))
+                .isEqualTo("{\"\\u0070\\u0069\\u006E\":\"*****\",\"p\\/in\":2,\"\\/pin\":3}");
+        assertThat(redact("{\"sch\\u00f6n\":1,\"sch\u00f6n\":2}"))
+                .isEqualTo("{\"sch\\u00f6n\":\"*****\",\"sch\u00f6n\":\"*****\"}");
+        assertThat(redact("{\"\\ud83d\\udd11\":1,\"\\ud83d\":2}"))
+                .isEqualTo("{\"\\ud83d\\udd11\":\"*****\",\"\\ud83d\":2}");
+    }
+
+    @Test
+    void malformedEscapesInKeysAreNotMasked() {
+        assertThat(redact("{\"pass\\u00\":1,\"pin\\\":2}"))
+                .isEqualTo("{\"pass\\u00\":1,\"pin\\\":2}");
+    }
+
+    @Test
+    void outputIsCutAtMaxLength() {
+        String body = "{\"user\":\"x\",\"password\":\"secret\"}";
+
+        assertThat(redact(body, 10)).isEqualTo("{\"user\":\"x");
+        assertThat(redact(body, 26)).isEqualTo("{\"user\":\"x\",\"password\":\"*****\"");
+        assertThat(redact(body, 24)).isEqualTo("{\"user\":\"x\",\"password\":\"*****\"");
+        assertThat(redact(body, 23)).isEqualTo("{\"user\":\"x\",\"password\":");
+    }
+
+    @Test
+    void cutDoesNotSplitCharacter() {
+        assertThat(redact("{\"a\":\"\u20ac\"}", 7)).isEqualTo("{\"a\":\"");
+        assertThat(redact("{\"a\":\"\u20ac\"}", 9)).isEqualTo("{\"a\":\"\u20ac");
+    }
+
+    private static String redact(String body) {
+        return redact(body, Integer.MAX_VALUE);
+    }
+
+    private static String redact(String body, int maxLength) {
+        PayloadBuffer out = PayloadBuffer.acquire();
+        try {
+            JsonRedactor.redact(ByteBuffer.wrap(body.getBytes(UTF_8)), maxLength, MASKS, out);
+            return out.toString(UTF_8);
+        } finally {
+            out.release();
+        }
+    }
+
+    private static List<CompiledMask> masks(String... jsonFields) {
+        Mask mask = new Mask();
+        mask.setMaskedJsonFields(jsonFields);
+        return Collections.singletonList(new CompiledMask(mask));
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.etherealscope.requestlogging;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static com.etherealscope.requestlogging.StatusCode.SC_4XX;
+import static com.etherealscope.requestlogging.StatusCode.SC_5XX;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoggingPlansTest {
+
+    private static final long FAST = Duration.ofMillis(10).toNanos();
+    private static final long SLOW = Duration.ofSeconds(2).toNanos();
+
+    @Test
+    void successfulExchangesLoggedWith2xx() {
+        RequestLoggingProperties props = new RequestLoggingProperties();
+        props.setStatusCodes(new String[] {"sc_2xx"});
+
+        LoggingPlans plans = plans(props);
+
+        assertThat(plans.shouldLogExchange(200, FAST)).isTrue();
+        assertThat(plans.shouldLogExchange(299, FAST)).isTrue();
+        assertThat(plans.shouldLogExchange(302, FAST)).isFalse();
+        assertThat(plans.shouldLogExchange(500, FAST)).isFalse();
+    }
+
+    @Test
+    void exactCodesAndRanges() {
+        RequestLoggingProperties props = new RequestLoggingProperties();
+        props.setStatusCodes(new String[] {"429", "500-504"});
+
+        LoggingPlans plans = plans(props);
+
+        assertThat(plans.shouldLogExchange(429, FAST)).isTrue();
+        assertThat(plans.shouldLogExchange(503, FAST)).isTrue();
+        assertThat(plans.shouldLogExchange(404, FAST)).isFalse();
+        assertThat(plans.shouldLogExchange(505, FAST)).isFalse();
+    }
+
+    @Test
+    void statusCodeClassesStillAccepted() {
+        RequestLoggingProperties props = new RequestLoggingProperties();
+        props.setStatusCodes(new StatusCode[] {SC_4XX, SC_5XX});
+
+        LoggingPlans plans = plans(props);
+
+        assertThat(props.getStatusCodes()).containsExactly("SC_4XX", "SC_5XX");
+        assertThat(plans.shouldLogExchange(404, FAST)).isTrue();
+        assertThat(plans.shouldLogExchange(500, FAST)).isTrue();
+        assertThat(plans.shouldLogExchange(200, FAST)).isFalse();
+    }
+
+    @Test
+    void tailLogsSlowOrSelectedExchanges() {
+        RequestLoggingProperties props = new RequestLoggingProperties();
+        props.getTail().setEnabled(true);
+        props.getTail().setLatencyThreshold(Duration.ofSeconds(1));
+        props.getTail().setStatusCodes(new String[] {"429", "sc_5xx"});
+
+        LoggingPlans plans = plans(props);
+
+        assertThat(plans.shouldLogExchange(200, FAST)).isFalse();
+        assertThat(plans.shouldLogExchange(200, SLOW)).isTrue();
+        assertThat(plans.shouldLogExchange(429, FAST)).isTrue();
+        assertThat(plans.shouldLogExchange(502, FAST)).isTrue();
+        assertThat(plans.shouldLogExchange(404, FAST)).isFalse();
+    }
+
+    @Test
+    void tailStatusCodeClassesStillAccepted() {
+        RequestLoggingProperties props = new RequestLoggingProperties();
+        props.getTail().setEnabled(true);
+        props.getTail().setStatusCodes(new StatusCode[] {SC_4XX});
+
+        LoggingPlans plans = plans(props);
+
+        assertThat(plans.shouldLogExchange(404, FAST)).isTrue();
+        assertThat(plans.shouldLogExchange(500, FAST)).isFalse();
+    }
+
+    @Test
+    void unknownStatusesLogged() {
+        RequestLoggingProperties props = new RequestLoggingProperties();
+        props.setStatusCodes(new String[] {"sc_5xx"});
+
+        LoggingPlans plans = plans(props);
+
+        assertThat(plans.shouldLogExchange(0, FAST)).isTrue();
+        assertThat(plans.shouldLogExchange(1000, FAST)).isTrue();
+    }
+
+    private static LoggingPlans plans(RequestLoggingProperties props) {
+        return new LoggingPlans(props, new Samplers(), new Aggregators());
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.etherealscope.requestlogging;
+
+import com.etherealscope.requestlogging.RequestLoggingProperties.Mask;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MultipartRedactorTest {
+
+    private static final String BOUNDARY = "xyz";
+    private static final List<CompiledMask> MASKS = masks();
+    /**
+     * SHA-256 of {@code abc}.
+     */
+    private static final String ABC_DIGEST = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+    @Test
+    void boundaryIsTakenFromContentType() {
+        assertThat(MultipartRedactor.boundary("multipart/form-data; boundary=xyz")).isEqualTo("xyz");
+        assertThat(MultipartRedactor.boundary("multipart/form-data; boundary=\"x y\"; charset=UTF-8")).isEqualTo("x y");
+        assertThat(MultipartRedactor.boundary("multipart/form-data")).isNull();
+        assertThat(MultipartRedactor.boundary("multipart/form-data; boundary=")).isNull();
+    }
+
+    @Test
+    void maskedPartIsReplaced() {
+        String body = part("Content-Disposition: form-data; name=\"password\"", "secret")
+                + part("Content-Disposition: form-data; name=\"user\"", "john")
+                + "--xyz--\r\n";
+
+        assertThat(redact(body)).isEqualTo(part("Content-Disposition: form-data; name=\"password\"", "*****")
+                + part("Content-Disposition: form-data; name=\"user\"", "john")
+                + "--xyz--");
+    }
+
+    @Test
+    void textPartIsMaskedByItsContentType() {
+        String body = part("Content-Disposition: form-data; name=\"login\"\r\nContent-Type: application/json",
+                "{\"user\":\"john\",\"password\":\"secret\"}")
+                + part("Content-Disposition: form-data; name=\"profile\"\r\nContent-Type: application/xml",
+                "<profile><password>secret</password></profile>")
+                + "--xyz--";
+
+        assertThat(redact(body)).isEqualTo(part("Content-Disposition: form-data; name=\"login\"\r\nContent-Type: application/json",
+                "{\"user\":\"john\",\"password\":\"*****\"}")
+                + part("Content-Disposition: form-data; name=\"profile\"\r\nContent-Type: application/xml",
+                "<profile><password>*****</password></profile>")
+                + "--xyz--");
+    }
+
+    @Test
+    void binaryPartsAreSummarized() {
+        String body = part("Content-Disposition: form-data; name=\"file\"; filename=\"a.txt\"\r\nContent-Type: text/plain", "abc")
+                + part("Content-Disposition: form-data; name=\"image\"\r\nContent-Type: image/png", "abc")
+                + "--xyz--";
+
+        assertThat(redact(body)).isEqualTo(
+                part("Content-Disposition: form-data; name=\"file\"; filename=\"a.txt\"\r\nContent-Type: text/plain",
+                        "[binary, 3 bytes, sha-256 " + ABC_DIGEST + "]")
+                + part("Content-Disposition: form-data; name=\"image\"\r\nContent-Type: image/png",
+                        "[binary, 3 bytes, sha-256 " + ABC_DIGEST + "]")
+                + "--xyz--");
+    }
+
+    @Test
+    void binaryPartCutOffByCaptureIsSummarizedBySizeCaptured() {
+        String body = part("Content-Disposition: form-data; name=\"user\"", "john")
+                + "--xyz\r\nContent-Disposition: form-data; name=\"file\"; filename=\"a.bin\"\r\n\r\n0123456789";
+
+        assertThat(redact(body)).isEqualTo(part("Content-Disposition: form-data; name=\"user\"", "john")
+                + "--xyz\r\nContent-Disposition: form-data; name=\"file\"; filename=\"a.bin\"\r\n\r\n[binary, at least 10 bytes]");
+    }
+
+    @Test
+    void partCutOffInHeadersIsCopied() {
+        String body = part("Content-Disposition: form-data; name=\"user\"", "john") + "--xyz\r\nContent-Disp";
+
+        assertThat(redact(body)).isEqualTo(body);
+    }
+
+    @Test
+    void preambleIsSkipped() {
+        assertThat(redact("preamble\r\n" + part("Content-Disposition: form-data; name=\"user\"", "john") + "--xyz--"))
+                .isEqualTo(part("Content-Disposition: form-data; name=\"user\"", "john") + "--xyz--");
+    }
+
+    @Test
+    void outputIsCutAtMaxLength() {
+        String body = part("Content-Disposition: form-data; name=\"user\"", "john")
+                + part("Content-Disposition: form-data; name=\"password\"", "secret")
+                + "--xyz--";
+        String redacted = redact(body);
+
+        for (int maxLength : new int[] {3, 50, 54, 60, redacted.length() - 3}) {
+            assertThat(redact(body, maxLength)).isEqualTo(redacted.substring(0, maxLength));
+        }
+    }
+
+    private static String part(String headers, String content) {
+        return "--" + BOUNDARY + "\r\n" + headers + "\r\n\r\n" + content + "\r\n";
+    }
+
+    private static String redact(String body) {
+        return redact(body, 64 * 1024);
+    }
+
+    private static String redact(String body, int maxLength) {
+        PayloadBuffer out = PayloadBuffer.acquire();
+        try {
+            MultipartRedactor.redact(ByteBuffer.wrap(body.getBytes(UTF_8)), maxLength, BOUNDARY, MASKS, out);
+            return out.toString(UTF_8);
+        } finally {
+            out.release();
+        }
+    }
+
+    private static List<CompiledMask> masks() {
+        Mask mask = new Mask();
+        mask.setMaskedQueryParams(new String[] {"password"});
+        mask.setMaskedJsonFields(new String[] {"password"});
+        mask.setMaskedXmlElements(new String[] {"password"});
+        return Collections.singletonList(new CompiledMask(mask));
+    }
+
+}
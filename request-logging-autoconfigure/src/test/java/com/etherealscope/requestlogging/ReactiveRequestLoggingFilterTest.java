@@ -0,0 +1,97 @@
+package com.etherealscope.requestlogging;
+
+import com.etherealscope.requestlogging.RequestLoggingProperties.AggregationRule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class ReactiveRequestLoggingFilterTest {
+
+    private final RequestLoggingControl control = new RequestLoggingControl(aggregatedProperties());
+    private final ReactiveRequestLoggingFilter filter = new ReactiveRequestLoggingFilter(control);
+
+    @BeforeAll
+    static void enableLogging() {
+        LoggingSystem.get(ReactiveRequestLoggingFilterTest.class.getClassLoader())
+                .setLogLevel("com.etherealscope.requestlogging.RequestLoggingFilter", LogLevel.DEBUG);
+    }
+
+    @AfterEach
+    void destroy() {
+        control.destroy();
+    }
+
+    @Test
+    void statusSetByApplication() {
+        run(exchange -> {
+            exchange.getResponse().setStatusCode(HttpStatus.NOT_FOUND);
+            return Mono.empty();
+        });
+
+        assertThat(summary()).contains("GET 4xx count=1");
+    }
+
+    @Test
+    void completedWithoutStatusIs200() {
+        run(exchange -> Mono.empty());
+
+        assertThat(summary()).contains("GET 2xx count=1");
+    }
+
+    @Test
+    void failedChainIs500() {
+        assertThatIllegalStateException().isThrownBy(() -> run(exchange -> Mono.error(new IllegalStateException("boom"))));
+
+        assertThat(summary()).contains("GET 5xx count=1").doesNotContain("2xx");
+    }
+
+    @Test
+    void failedChainKeepsErrorStatus() {
+        assertThatIllegalStateException().isThrownBy(() -> run(exchange -> {
+            exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            return Mono.error(new IllegalStateException("boom"));
+        }));
+
+        assertThat(summary()).contains("GET 5xx count=1");
+    }
+
+    @Test
+    void cancelledWithoutStatusIs499() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/orders"));
+        Disposable subscription = filter.filter(exchange, e -> Mono.never()).subscribe();
+        subscription.dispose();
+
+        assertThat(summary()).contains("GET 4xx count=1").doesNotContain("2xx");
+    }
+
+    private void run(WebFilterChain chain) {
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/orders")), chain).block();
+    }
+
+    private String summary() {
+        StringBuilder sb = new StringBuilder();
+        control.getPlans().getAggregators().match("GET", "/orders").drainTo(sb);
+        return sb.toString();
+    }
+
+    private static RequestLoggingProperties aggregatedProperties() {
+        AggregationRule rule = new AggregationRule();
+        rule.setPathMatcher("/**");
+        RequestLoggingProperties props = new RequestLoggingProperties();
+        props.getAggregation().setRules(new AggregationRule[] {rule});
+        props.init();
+        return props;
+    }
+
+}
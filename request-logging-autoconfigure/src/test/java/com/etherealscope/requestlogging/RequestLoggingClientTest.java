@@ -0,0 +1,168 @@
+package com.etherealscope.requestlogging;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class RequestLoggingClientTest {
+
+    private static final URI ORDERS = URI.create("http://api.example.com/orders");
+
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    private RequestLoggingControl control;
+
+    @BeforeAll
+    static void enableLogging() {
+        LoggingSystem.get(RequestLoggingClientTest.class.getClassLoader())
+                .setLogLevel(RequestLoggingClient.LOGGER_NAME, LogLevel.DEBUG);
+    }
+
+    @BeforeEach
+    void attach() {
+        appender.start();
+        clientLogger().addAppender(appender);
+    }
+
+    @AfterEach
+    void detach() {
+        clientLogger().detachAppender(appender);
+        if (control != null) {
+            control.destroy();
+        }
+    }
+
+    @Test
+    void restTemplateResponseIsLoggedWithStatus() throws Exception {
+        RequestLoggingClientInterceptor interceptor = new RequestLoggingClientInterceptor(control(new String[] {"sc_any"}));
+
+        interceptor.intercept(new MockClientHttpRequest(HttpMethod.GET, ORDERS), new byte[0],
+                (request, body) -> new MockClientHttpResponse(new byte[0], HttpStatus.OK)).close();
+
+        assertThat(messages()).hasSize(1);
+        assertThat(messages().get(0)).contains("Status-Code: 200").doesNotContain("Failure");
+    }
+
+    @Test
+    void restTemplateTransportFailureIsLogged() {
+        RequestLoggingClientInterceptor interceptor = new RequestLoggingClientInterceptor(control(new String[] {"sc_5xx"}));
+        ClientHttpRequestExecution refused = (request, body) -> {
+            throw new ConnectException("Connection refused");
+        };
+
+        assertThatExceptionOfType(ConnectException.class)
+                .isThrownBy(() -> interceptor.intercept(new MockClientHttpRequest(HttpMethod.GET, ORDERS), new byte[0], refused));
+
+        assertThat(messages()).hasSize(1);
+        assertThat(messages().get(0))
+                .contains("Url: http://api.example.com/orders")
+                .contains("Failure: java.net.ConnectException")
+                .doesNotContain("Status-Code");
+    }
+
+    @Test
+    void restTemplateStatusReadFailureIsLogged() throws Exception {
+        RequestLoggingClientInterceptor interceptor = new RequestLoggingClientInterceptor(control(new String[] {"sc_any"}));
+        MockClientHttpResponse timedOut = new MockClientHttpResponse(new byte[0], HttpStatus.OK) {
+            @Override
+            public int getRawStatusCode() throws IOException {
+                throw new SocketTimeoutException("Read timed out");
+            }
+        };
+
+        interceptor.intercept(new MockClientHttpRequest(HttpMethod.GET, ORDERS), new byte[0], (request, body) -> timedOut).close();
+
+        assertThat(messages()).hasSize(1);
+        assertThat(messages().get(0)).contains("Failure: java.net.SocketTimeoutException");
+    }
+
+    @Test
+    void unselectedPathIsNotLoggedOnFailure() {
+        RequestLoggingProperties props = properties(new String[] {"sc_any"});
+        props.getClient().getRequest().setBlackListedServletPaths(new String[] {"api.example.com/**"});
+        props.getClient().getResponse().setBlackListedServletPaths(new String[] {"api.example.com/**"});
+        control = new RequestLoggingControl(init(props));
+        RequestLoggingClientInterceptor interceptor = new RequestLoggingClientInterceptor(control);
+
+        assertThatExceptionOfType(ConnectException.class).isThrownBy(() -> interceptor.intercept(
+                new MockClientHttpRequest(HttpMethod.GET, ORDERS), new byte[0], (request, body) -> {
+                    throw new ConnectException("Connection refused");
+                }));
+
+        assertThat(messages()).isEmpty();
+    }
+
+    @Test
+    void webClientTransportFailureIsLogged() {
+        RequestLoggingExchangeFilterFunction filter = new RequestLoggingExchangeFilterFunction(control(new String[] {"sc_5xx"}));
+
+        assertThatExceptionOfType(Exception.class)
+                .isThrownBy(() -> filter.filter(ClientRequest.create(HttpMethod.POST, ORDERS).build(),
+                        request -> Mono.error(new ConnectException("Connection refused"))).block())
+                .withCauseInstanceOf(ConnectException.class);
+
+        assertThat(messages()).hasSize(1);
+        assertThat(messages().get(0))
+                .contains("Method: POST")
+                .contains("Failure: java.net.ConnectException")
+                .doesNotContain("Status-Code");
+    }
+
+    @Test
+    void webClientCancelIsNotLogged() {
+        RequestLoggingExchangeFilterFunction filter = new RequestLoggingExchangeFilterFunction(control(new String[] {"sc_any"}));
+
+        filter.filter(ClientRequest.create(HttpMethod.GET, ORDERS).build(), request -> Mono.never()).subscribe().dispose();
+
+        assertThat(messages()).isEmpty();
+    }
+
+    private RequestLoggingControl control(String[] statusCodes) {
+        control = new RequestLoggingControl(init(properties(statusCodes)));
+        return control;
+    }
+
+    private static RequestLoggingProperties properties(String[] statusCodes) {
+        RequestLoggingProperties props = new RequestLoggingProperties();
+        props.getClient().setEnabled(true);
+        props.getClient().setStatusCodes(statusCodes);
+        return props;
+    }
+
+    private static RequestLoggingProperties init(RequestLoggingProperties props) {
+        props.init();
+        return props;
+    }
+
+    private List<String> messages() {
+        return appender.list.stream().map(ILoggingEvent::getFormattedMessage).collect(Collectors.toList());
+    }
+
+    private static Logger clientLogger() {
+        return (Logger) LoggerFactory.getLogger(RequestLoggingClient.LOGGER_NAME);
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.etherealscope.requestlogging;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+
+import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestLoggingControlTest {
+
+    private final RequestLoggingControl control = new RequestLoggingControl(properties());
+
+    @AfterEach
+    void destroy() {
+        control.destroy();
+    }
+
+    @Test
+    void permanentChangeAppliesAtOnce() {
+        control.apply(singletonMap("status-codes", Collections.singletonList("sc_5xx")), null);
+
+        assertThat(control.getProperties().getStatusCodes()).containsExactly("sc_5xx");
+        assertThat(control.getExpiresAt()).isNull();
+    }
+
+    @Test
+    void timedChangeIsUndoneOnExpiry() throws InterruptedException {
+        control.apply(singletonMap("include-time-elapsed", false), Duration.ofMillis(100));
+
+        assertThat(control.getProperties().isIncludeTimeElapsed()).isFalse();
+        awaitExpiry();
+        assertThat(control.getProperties().isIncludeTimeElapsed()).isTrue();
+    }
+
+    @Test
+    void permanentChangeDuringTimedChangeAppliesOnExpiry() throws InterruptedException {
+        control.apply(singletonMap("include-time-elapsed", false), Duration.ofMillis(200));
+        control.apply(singletonMap("status-codes", Collections.singletonList("sc_5xx")), null);
+
+        assertThat(control.getExpiresAt()).isNotNull();
+        assertThat(control.getProperties().isIncludeTimeElapsed()).isFalse();
+        assertThat(control.getProperties().getStatusCodes()).containsExactly("SC_ANY");
+
+        awaitExpiry();
+        assertThat(control.getProperties().isIncludeTimeElapsed()).isTrue();
+        assertThat(control.getProperties().getStatusCodes()).containsExactly("sc_5xx");
+    }
+
+    @Test
+    void permanentChangeDuringNestedTimedChangesAppliesOnceAllExpire() throws InterruptedException {
+        control.apply(singletonMap("include-time-elapsed", false), Duration.ofMillis(300));
+        control.apply(singletonMap("request.max-payload-size", 100), Duration.ofMillis(100));
+        control.apply(singletonMap("status-codes", Collections.singletonList("sc_5xx")), null);
+        control.apply(singletonMap("response.max-payload-size", 200), null);
+
+        assertThat(control.getProperties().getRequest().getMaxPayloadSize()).isEqualTo(100);
+        awaitExpiry();
+        assertThat(control.getProperties().isIncludeTimeElapsed()).isTrue();
+        assertThat(control.getProperties().getRequest().getMaxPayloadSize()).isNotEqualTo(100);
+        assertThat(control.getProperties().getResponse().getMaxPayloadSize()).isEqualTo(200);
+        assertThat(control.getProperties().getStatusCodes()).containsExactly("sc_5xx");
+    }
+
+    @Test
+    void resetDropsTimedAndPermanentChanges() {
+        control.apply(singletonMap("include-time-elapsed", false), Duration.ofMinutes(1));
+        control.apply(singletonMap("status-codes", Collections.singletonList("sc_5xx")), null);
+
+        control.reset();
+
+        assertThat(control.getExpiresAt()).isNull();
+        assertThat(control.getProperties().isIncludeTimeElapsed()).isTrue();
+        assertThat(control.getProperties().getStatusCodes()).containsExactly("SC_ANY");
+    }
+
+    private void awaitExpiry() throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (control.getExpiresAt() != null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(control.getExpiresAt()).isNull();
+    }
+
+    private static RequestLoggingProperties properties() {
+        RequestLoggingProperties props = new RequestLoggingProperties();
+        props.init();
+        return props;
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.etherealscope.requestlogging;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class RequestLoggingPropertiesTest {
+
+    @Test
+    void statusCodesBoundAsStrings() {
+        Map<String, String> source = new HashMap<>();
+        source.put("ethereal.logging.status-codes", "sc_2xx,429,500-504");
+        source.put("ethereal.logging.tail.status-codes", "4xx");
+
+        RequestLoggingProperties props = bind(source);
+
+        assertThat(props.getStatusCodes()).containsExactly("sc_2xx", "429", "500-504");
+        assertThat(props.getTail().getStatusCodes()).containsExactly("4xx");
+    }
+
+    @Test
+    void defaults() {
+        RequestLoggingProperties props = new RequestLoggingProperties();
+
+        assertThat(props.getStatusCodes()).containsExactly("SC_ANY");
+        assertThat(props.getTail().getStatusCodes()).containsExactly("SC_5XX");
+    }
+
+    @Test
+    void invalidStatusCodesFailAtStartup() {
+        RequestLoggingProperties reversed = new RequestLoggingProperties();
+        reversed.setStatusCodes(new String[] {"504-500"});
+        RequestLoggingProperties outOfRange = new RequestLoggingProperties();
+        outOfRange.getTail().setStatusCodes(new String[] {"600-1000"});
+
+        assertThatIllegalArgumentException().isThrownBy(reversed::init);
+        assertThatIllegalArgumentException().isThrownBy(outOfRange::init);
+    }
+
+    private static RequestLoggingProperties bind(Map<String, String> source) {
+        return new Binder(new MapConfigurationPropertySource(source))
+                .bind("ethereal.logging", RequestLoggingProperties.class)
+                .get();
+    }
+
+}
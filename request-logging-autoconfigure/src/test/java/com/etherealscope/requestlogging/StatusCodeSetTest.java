@@ -0,0 +1,124 @@
+package com.etherealscope.requestlogging;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class StatusCodeSetTest {
+
+    @Test
+    void classSelectsItsHundred() {
+        StatusCodeSet set = StatusCodeSet.compile("sc_2xx");
+
+        assertThat(set.contains(200)).isTrue();
+        assertThat(set.contains(204)).isTrue();
+        assertThat(set.contains(299)).isTrue();
+        assertThat(set.contains(199)).isFalse();
+        assertThat(set.contains(300)).isFalse();
+        assertThat(set.contains(500)).isFalse();
+    }
+
+    @Test
+    void classAcceptedWithoutPrefixInAnyCase() {
+        StatusCodeSet set = StatusCodeSet.compile("4XX", " Sc_5xx ");
+
+        assertThat(set.contains(404)).isTrue();
+        assertThat(set.contains(503)).isTrue();
+        assertThat(set.contains(200)).isFalse();
+    }
+
+    @Test
+    void anySelectsEveryStatus() {
+        StatusCodeSet set = StatusCodeSet.compile("sc_any");
+
+        assertThat(set.contains(100)).isTrue();
+        assertThat(set.contains(200)).isTrue();
+        assertThat(set.contains(999)).isTrue();
+    }
+
+    @Test
+    void exactCodeSelectsOnlyItself() {
+        StatusCodeSet set = StatusCodeSet.compile("429");
+
+        assertThat(set.contains(429)).isTrue();
+        assertThat(set.contains(428)).isFalse();
+        assertThat(set.contains(430)).isFalse();
+    }
+
+    @Test
+    void rangeIsInclusive() {
+        StatusCodeSet set = StatusCodeSet.compile("500-504");
+
+        assertThat(set.contains(499)).isFalse();
+        assertThat(set.contains(500)).isTrue();
+        assertThat(set.contains(502)).isTrue();
+        assertThat(set.contains(504)).isTrue();
+        assertThat(set.contains(505)).isFalse();
+    }
+
+    @Test
+    void formsCombine() {
+        StatusCodeSet set = StatusCodeSet.compile("sc_2xx", "429", "500 - 504");
+
+        assertThat(set.contains(201)).isTrue();
+        assertThat(set.contains(429)).isTrue();
+        assertThat(set.contains(503)).isTrue();
+        assertThat(set.contains(404)).isFalse();
+        assertThat(set.contains(505)).isFalse();
+    }
+
+    @Test
+    void singleStatusRange() {
+        StatusCodeSet set = StatusCodeSet.compile("418-418");
+
+        assertThat(set.contains(418)).isTrue();
+        assertThat(set.contains(417)).isFalse();
+        assertThat(set.contains(419)).isFalse();
+    }
+
+    @Test
+    void reversedRangeRejected() {
+        assertThatIllegalArgumentException().isThrownBy(() -> StatusCodeSet.compile("504-500"))
+                .withMessageContaining("reversed");
+    }
+
+    @Test
+    void invalidEntriesRejected() {
+        assertThatIllegalArgumentException().isThrownBy(() -> StatusCodeSet.compile("sc_6xx"));
+        assertThatIllegalArgumentException().isThrownBy(() -> StatusCodeSet.compile("abc"));
+        assertThatIllegalArgumentException().isThrownBy(() -> StatusCodeSet.compile("500-"));
+        assertThatIllegalArgumentException().isThrownBy(() -> StatusCodeSet.compile("-504"));
+        assertThatIllegalArgumentException().isThrownBy(() -> StatusCodeSet.compile("500-504-508"));
+        assertThatIllegalArgumentException().isThrownBy(() -> StatusCodeSet.compile(""));
+        assertThatIllegalArgumentException().isThrownBy(() -> StatusCodeSet.compile((String) null));
+    }
+
+    @Test
+    void codesOutsideOfValidRangeRejected() {
+        assertThatIllegalArgumentException().isThrownBy(() -> StatusCodeSet.compile("99"));
+        assertThatIllegalArgumentException().isThrownBy(() -> StatusCodeSet.compile("1000"));
+        assertThatIllegalArgumentException().isThrownBy(() -> StatusCodeSet.compile("0-200"));
+        assertThatIllegalArgumentException().isThrownBy(() -> StatusCodeSet.compile("500-1000"));
+    }
+
+    @Test
+    void statusesOutsideOfValidRangeAlwaysSelected() {
+        StatusCodeSet set = StatusCodeSet.compile("sc_2xx");
+
+        assertThat(set.contains(0)).isTrue();
+        assertThat(set.contains(-1)).isTrue();
+        assertThat(set.contains(99)).isTrue();
+        assertThat(set.contains(1000)).isTrue();
+        assertThat(set.contains(Integer.MAX_VALUE)).isTrue();
+    }
+
+    @Test
+    void noCodesSelectNothingInRange() {
+        StatusCodeSet set = StatusCodeSet.compile();
+
+        assertThat(set.contains(200)).isFalse();
+        assertThat(set.contains(500)).isFalse();
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.etherealscope.requestlogging;
+
+import com.etherealscope.requestlogging.RequestLoggingProperties.Mask;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class XmlRedactorTest {
+
+    private static final List<CompiledMask> MASKS = masks("password", "token");
+
+    @Test
+    void elementContentIsMasked() {
+        assertThat(redact("<login><user>john</user><password>secret</password></login>"))
+                .isEqualTo("<login><user>john</user><password>*****</password></login>");
+    }
+
+    @Test
+    void nestedContentOfMaskedElementIsMasked() {
+        assertThat(redact("<a><token><value>1</value><token>2</token><empty/></token><b>3</b></a>"))
+                .isEqualTo("<a><token>*****</token><b>3</b></a>");
+    }
+
+    @Test
+    void namespacedElementsAreComparedByLocalName() {
+        assertThat(redact("<ns:login xmlns:ns=\"urn:x\"><ns:password>secret</ns:password><ns:passwords>1</ns:passwords></ns:login>"))
+                .isEqualTo("<ns:login xmlns:ns=\"urn:x\"><ns:password>*****</ns:password><ns:passwords>1</ns:passwords></ns:login>");
+    }
+
+    @Test
+    void attributesAreMasked() {
+        assertThat(redact("<login user='john' password='secret' ns:token = \"abc\" other=\"password\"/>"))
+                .isEqualTo("<login user='john' password='*****' ns:token = \"*****\" other=\"password\"/>");
+    }
+
+    @Test
+    void selfClosingMaskedElementIsCopied() {
+        assertThat(redact("<a><password/><b>1</b></a>")).isEqualTo("<a><password/><b>1</b></a>");
+    }
+
+    @Test
+    void commentsCdataAndProcessingInstructionsAreCopied() {
+        String body = "<?xml version=\"1.0\"?><!-- <password>x</password> --><a><![CDATA[<password>y</password>]]>"
+                + "<?pi <password>z</password>?><!DOCTYPE a></a>";
+
+        assertThat(redact(body)).isEqualTo(body);
+    }
+
+    @Test
+    void cdataInsideMaskedElementIsMasked() {
+        assertThat(redact("<password><![CDATA[</password>]]></password><b>1</b>"))
+                .isEqualTo("<password>*****</password><b>1</b>");
+    }
+
+    @Test
+    void maskedElementCutByMaxLengthIsMaskedToTheEnd() {
+        String body = "<a><password>secret</password></a>";
+
+        assertThat(redact(body, 16)).isEqualTo("<a><password>*****");
+        assertThat(redact(body, 2)).isEqualTo("<a");
+    }
+
+    @Test
+    void attributeCutByMaxLengthIsMasked() {
+        assertThat(redact("<a password=\"secret\"/>", 16)).isEqualTo("<a password=\"*****");
+    }
+
+    private static String redact(String body) {
+        return redact(body, Integer.MAX_VALUE);
+    }
+
+    private static String redact(String body, int maxLength) {
+        PayloadBuffer out = PayloadBuffer.acquire();
+        try {
+            XmlRedactor.redact(ByteBuffer.wrap(body.getBytes(UTF_8)), maxLength, MASKS, out);
+            return out.toString(UTF_8);
+        } finally {
+            out.release();
+        }
+    }
+
+    private static List<CompiledMask> masks(String... xmlElements) {
+        Mask mask = new Mask();
+        mask.setMaskedXmlElements(xmlElements);
+        return Collections.singletonList(new CompiledMask(mask));
+    }
+
+}
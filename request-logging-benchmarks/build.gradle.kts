@@ -0,0 +1,21 @@
+plugins {
+    id("me.champeau.jmh") version "0.6.5"
+}
+
+description = "JMH benchmarks for request logging"
+
+dependencies {
+    jmh(project(":request-logging-autoconfigure"))
+    jmh("org.springframework.boot:spring-boot-starter-web")
+    jmh("org.springframework:spring-test")
+}
+
+jmh {
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    profilers.add("gc")
+    if (project.hasProperty("jmhIncludes")) {
+        includes.add(project.property("jmhIncludes").toString())
+    }
+}
@@ -0,0 +1,44 @@
+package com.etherealscope.requestlogging;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.etherealscope.requestlogging.LegacyCommonUtils.byteArrayToString;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Cost of decoding a captured payload cut at the max payload size, as it was done before bodies were redacted
+ * on raw bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ByteArrayToStringBenchmark {
+
+    @Param({"512", "4096", "65536"})
+    int payloadSize;
+
+    @Param({"4096"})
+    int maxPayloadSize;
+
+    byte[] payload;
+
+    @Setup
+    public void setup() {
+        payload = Payloads.json(payloadSize).getBytes(UTF_8);
+    }
+
+    @Benchmark
+    public String byteArrayToStringCut() {
+        return byteArrayToString(payload, maxPayloadSize);
+    }
+
+}
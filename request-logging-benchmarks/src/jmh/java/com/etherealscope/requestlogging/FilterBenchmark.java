@@ -0,0 +1,107 @@
+package com.etherealscope.requestlogging;
+
+import com.etherealscope.requestlogging.RequestLoggingProperties.Mask;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.FilterChain;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+/**
+ * Full {@link RequestLoggingFilter#doFilterInternal} run against mock servlet objects. The filter logger is enabled
+ * without appenders, so the numbers cover capture, masking and formatting, not the log appender.
+ * {@link #chainOnly()} is the cost of the mock exchange itself, without the filter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FilterBenchmark {
+
+    @Param({"512", "4096", "65536"})
+    int payloadSize;
+
+    @Param({"0", "8"})
+    int maskedFields;
+
+    @Param({"TEXT", "JSON"})
+    OutputFormat format;
+
+    byte[] requestBody;
+    byte[] responseBody;
+    RequestLoggingFilter filter;
+    FilterChain chain;
+
+    @Setup
+    public void setup() {
+        String[] fields = new String[maskedFields];
+        for (int i = 0; i < maskedFields; i++) {
+            fields[i] = "secret" + i;
+        }
+        Mask mask = new Mask();
+        mask.setPathMatcher("/api/**");
+        mask.setMaskedJsonFields(fields);
+        mask.setMaskedHeaders(new String[] {"Authorization"});
+
+        RequestLoggingProperties props = new RequestLoggingProperties();
+        props.setIncludeTimeElapsed(false);
+        props.getRequest().setMasks(new Mask[] {mask});
+        props.getResponse().setMasks(new Mask[] {mask});
+        props.getOutput().setFormat(format);
+        props.init();
+        filter = new RequestLoggingFilter(props);
+
+        requestBody = Payloads.json(payloadSize, fields).getBytes(UTF_8);
+        responseBody = Payloads.json(payloadSize, fields).getBytes(UTF_8);
+        chain = (req, res) -> {
+            StreamUtils.copyToByteArray(req.getInputStream());
+            res.setContentType(APPLICATION_JSON_VALUE);
+            res.getOutputStream().write(responseBody);
+        };
+    }
+
+    @TearDown
+    public void tearDown() {
+        filter.destroy();
+    }
+
+    @Benchmark
+    public MockHttpServletResponse chainOnly() throws Exception {
+        MockHttpServletRequest request = request();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        chain.doFilter(request, response);
+        return response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse doFilterInternal() throws Exception {
+        MockHttpServletRequest request = request();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilterInternal(request, response, chain);
+        return response;
+    }
+
+    private MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/users");
+        request.setServletPath("/api/users");
+        request.setContentType(APPLICATION_JSON_VALUE);
+        request.setCharacterEncoding("UTF-8");
+        request.addHeader("Authorization", "Bearer token");
+        request.addHeader("Accept", APPLICATION_JSON_VALUE);
+        request.setContent(requestBody);
+        return request;
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.etherealscope.requestlogging;
+
+import java.nio.ByteBuffer;
+
+import static com.etherealscope.requestlogging.CommonUtils.NOTHING;
+import static com.etherealscope.requestlogging.CommonUtils.utf8Boundary;
+import static java.lang.Math.min;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Helpers no longer used by request logging, kept as the implementations benchmarks compare against.
+ */
+final class LegacyCommonUtils {
+
+    private LegacyCommonUtils() {
+    }
+
+    /**
+     * Payload decoded as a whole string before masking, as it was done before bodies were redacted on raw bytes.
+     */
+    static String byteArrayToString(byte[] byteArray, int maxLength) {
+        if (byteArray != null && byteArray.length > 0) {
+            int length = utf8Boundary(ByteBuffer.wrap(byteArray), 0, min(byteArray.length, maxLength));
+            return new String(byteArray, 0, length, UTF_8);
+        }
+        return NOTHING;
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.etherealscope.requestlogging;
+
+import com.etherealscope.requestlogging.RequestLoggingProperties.Mask;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.etherealscope.requestlogging.MaskUtils.MASK;
+import static com.etherealscope.requestlogging.MaskUtils.compileMasks;
+import static com.etherealscope.requestlogging.MaskUtils.maskBody;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+/**
+ * Compares the per-request regex building of the former {@code maskBody} with the byte level json redaction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MaskBodyBenchmark {
+
+    @Param({"512", "4096"})
+    int payloadSize;
+
+    @Param({"1", "8"})
+    int maskedFields;
+
+    byte[] bodyBytes;
+    Mask[] masks;
+    List<CompiledMask> compiledMasks;
+
+    @Setup
+    public void setup() {
+        String[] fields = new String[maskedFields];
+        for (int i = 0; i < maskedFields; i++) {
+            fields[i] = "secret" + i;
+        }
+        Mask mask = new Mask();
+        mask.setPathMatcher("/**");
+        mask.setMaskedJsonFields(fields);
+        masks = new Mask[] {mask};
+        compiledMasks = asList(compileMasks(masks));
+        bodyBytes = Payloads.json(payloadSize, fields).getBytes(UTF_8);
+    }
+
+    @Benchmark
+    public String perRequestRegex() {
+        String maskedBody = LegacyCommonUtils.byteArrayToString(bodyBytes, payloadSize);
+        for (Mask mask : masks) {
+            for (String field : mask.getMaskedJsonFields()) {
+                maskedBody = maskedBody.replaceAll(String.format("(\"%s\":)(\"[^\"]+\")", field), String.format("$1\"%s\"", MASK));
+            }
+        }
+        return maskedBody;
+    }
+
+    @Benchmark
+    public String jsonRedactor() {
+        return maskBody(ByteBuffer.wrap(bodyBytes), payloadSize, APPLICATION_JSON_VALUE, compiledMasks);
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.etherealscope.requestlogging;
+
+/**
+ * Synthetic payloads shared by the benchmarks.
+ */
+final class Payloads {
+
+    private Payloads() {
+    }
+
+    /**
+     * Json object of roughly the given size, containing each of the fields once plus filler fields.
+     */
+    static String json(int size, String... fields) {
+        StringBuilder sb = new StringBuilder(size + 64).append('{');
+        for (String field : fields) {
+            sb.append('"').append(field).append("\":\"value-of-").append(field).append("\",");
+        }
+        int i = 0;
+        while (sb.length() < size - 32) {
+            sb.append("\"filler").append(i).append("\":\"lorem ipsum dolor sit amet ").append(i++).append("\",");
+        }
+        sb.append("\"last\":true}");
+        return sb.toString();
+    }
+
+}
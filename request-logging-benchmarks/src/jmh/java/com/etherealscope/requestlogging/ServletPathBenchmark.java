@@ -0,0 +1,62 @@
+package com.etherealscope.requestlogging;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.etherealscope.requestlogging.CommonUtils.servletPathEnabled;
+
+/**
+ * Cost of matching a servlet path against the configured path patterns, compared with the cached plan lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ServletPathBenchmark {
+
+    private static final String[] EMPTY = new String[] {};
+
+    @Param({"1", "10", "50"})
+    int pathPatterns;
+
+    String[] whiteList;
+    String servletPath;
+    LoggingPlans plans;
+
+    @Setup
+    public void setup() {
+        whiteList = new String[pathPatterns];
+        for (int i = 0; i < pathPatterns; i++) {
+            whiteList[i] = "/api/v1/resource" + i + "/**";
+        }
+        servletPath = "/api/v1/resource" + (pathPatterns - 1) + "/42/details";
+        RequestLoggingProperties props = new RequestLoggingProperties();
+        props.getRequest().setWhiteListedServletPaths(whiteList);
+        props.getResponse().setWhiteListedServletPaths(whiteList);
+        props.init();
+        plans = new LoggingPlans(props, new Samplers(), new Aggregators());
+    }
+
+    @Benchmark
+    public boolean servletPathEnabledWhiteList() {
+        return servletPathEnabled(servletPath, whiteList, EMPTY);
+    }
+
+    @Benchmark
+    public boolean servletPathEnabledBlackList() {
+        return servletPathEnabled(servletPath, EMPTY, whiteList);
+    }
+
+    @Benchmark
+    public LoggingPlan cachedPlan() {
+        return plans.get("GET", servletPath);
+    }
+
+}
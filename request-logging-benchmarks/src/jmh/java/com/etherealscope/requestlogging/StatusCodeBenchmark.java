@@ -0,0 +1,51 @@
+package com.etherealscope.requestlogging;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the status code decision made for every logged exchange.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StatusCodeBenchmark {
+
+    @Param({"200", "404", "503"})
+    int status;
+
+    StatusCodeSet any;
+    StatusCodeSet errors;
+    StatusCodeSet mixed;
+
+    @Setup
+    public void setup() {
+        any = StatusCodeSet.compile("sc_any");
+        errors = StatusCodeSet.compile("sc_4xx", "sc_5xx");
+        mixed = StatusCodeSet.compile("2xx", "429", "500-504");
+    }
+
+    @Benchmark
+    public boolean anyStatus() {
+        return any.contains(status);
+    }
+
+    @Benchmark
+    public boolean errorStatuses() {
+        return errors.contains(status);
+    }
+
+    @Benchmark
+    public boolean exactCodesAndRanges() {
+        return mixed.contains(status);
+    }
+
+}
@@ -0,0 +1,51 @@
+description = "Autoconfigure library request logging for Spring Boot 3 and Jakarta Servlet"
+
+/*
+ * Built from the sources of request-logging-autoconfigure with javax.servlet moved to jakarta.servlet.
+ * The few classes using api which differs between Spring 5 and Spring 6 are replaced by the ones in src/main/java.
+ */
+val jakartaSources by tasks.registering(Sync::class) {
+    from(project(":request-logging-autoconfigure").file("src/main/java")) {
+        exclude(fileTree("src/main/java").map { it.relativeTo(file("src/main/java")).invariantSeparatorsPath })
+        filter { line ->
+            line.replace("javax.servlet", "jakarta.servlet")
+                    .replace("javax.annotation.PostConstruct", "jakarta.annotation.PostConstruct")
+        }
+    }
+    into(layout.buildDirectory.dir("generated/sources/jakarta/java"))
+}
+
+sourceSets["main"].java.srcDir(jakartaSources)
+
+dependencyManagement {
+    imports {
+        mavenBom("org.springframework.boot:spring-boot-dependencies:3.2.5")
+    }
+}
+
+configure<JavaPluginConvention> {
+    sourceCompatibility = JavaVersion.toVersion(17)
+    targetCompatibility = JavaVersion.toVersion(17)
+}
+
+tasks {
+    withType<JavaCompile> {
+        javaCompiler.set(project.javaToolchains.compilerFor { languageVersion.set(JavaLanguageVersion.of(17)) })
+    }
+
+    withType<Javadoc> {
+        javadocTool.set(project.javaToolchains.javadocToolFor { languageVersion.set(JavaLanguageVersion.of(17)) })
+    }
+}
+
+dependencies {
+    implementation("org.springframework.boot:spring-boot-starter")
+    compileOnly("org.springframework.boot:spring-boot-starter-web")
+    compileOnly("org.springframework.boot:spring-boot-starter-webflux")
+    implementation("org.springframework.boot:spring-boot-autoconfigure")
+    compileOnly("org.springframework.boot:spring-boot-actuator-autoconfigure")
+    compileOnly("io.micrometer:micrometer-core")
+    compileOnly("org.projectlombok:lombok")
+    annotationProcessor("org.springframework.boot:spring-boot-configuration-processor")
+    annotationProcessor("org.projectlombok:lombok")
+}
@@ -0,0 +1,43 @@
+package com.etherealscope.requestlogging;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+
+/**
+ * Passes the status and headers of a {@code RestTemplate} response through.
+ * Spring 6 variant of the class in request-logging-autoconfigure.
+ */
+abstract class DelegatingClientHttpResponse implements ClientHttpResponse {
+
+    protected final ClientHttpResponse delegate;
+
+    DelegatingClientHttpResponse(ClientHttpResponse delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public HttpStatusCode getStatusCode() throws IOException {
+        return delegate.getStatusCode();
+    }
+
+    @Override
+    public String getStatusText() throws IOException {
+        return delegate.getStatusText();
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        return delegate.getHeaders();
+    }
+
+    /**
+     * Status code, also of statuses not known to {@link org.springframework.http.HttpStatus}.
+     */
+    int status() throws IOException {
+        return delegate.getStatusCode().value();
+    }
+
+}
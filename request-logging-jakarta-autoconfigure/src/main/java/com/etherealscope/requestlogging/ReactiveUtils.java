@@ -0,0 +1,43 @@
+package com.etherealscope.requestlogging;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.reactive.function.client.ClientResponse;
+
+/**
+ * Reactive api the filter and the web client logging use, where Spring 5 and Spring 6 differ.
+ * Spring 6 variant of the class in request-logging-autoconfigure.
+ */
+class ReactiveUtils {
+
+    static String method(ServerHttpRequest request) {
+        return request.getMethod().name();
+    }
+
+    /**
+     * @return null when no status was set yet
+     */
+    static Integer status(ServerHttpResponse response) {
+        HttpStatusCode status = response.getStatusCode();
+        return status != null ? status.value() : null;
+    }
+
+    static int status(ClientResponse response) {
+        return response.statusCode().value();
+    }
+
+    /**
+     * Copies the readable bytes of the buffer without moving its read position,
+     * a composite buffer is copied component by component.
+     */
+    static void capture(DataBuffer buffer, CaptureBuffer capture) {
+        try (DataBuffer.ByteBufferIterator readable = buffer.readableByteBuffers()) {
+            while (readable.hasNext()) {
+                capture.write(readable.next());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,16 @@
+description = "Spring boot 3 starter for request logging"
+
+dependencyManagement {
+    imports {
+        mavenBom("org.springframework.boot:spring-boot-dependencies:3.2.5")
+    }
+}
+
+configure<JavaPluginConvention> {
+    sourceCompatibility = JavaVersion.toVersion(17)
+    targetCompatibility = JavaVersion.toVersion(17)
+}
+
+dependencies {
+    implementation(project(":request-logging-jakarta-autoconfigure"))
+}
@@ -0,0 +1,41 @@
+description = "Virtual thread stress test for request logging on Spring Boot 3"
+
+dependencyManagement {
+    imports {
+        mavenBom("org.springframework.boot:spring-boot-dependencies:3.2.5")
+    }
+}
+
+configure<JavaPluginConvention> {
+    sourceCompatibility = JavaVersion.toVersion(17)
+    targetCompatibility = JavaVersion.toVersion(17)
+}
+
+tasks.withType<JavaCompile> {
+    javaCompiler.set(project.javaToolchains.compilerFor { languageVersion.set(JavaLanguageVersion.of(21)) })
+    options.release.set(21)
+}
+
+tasks.withType<Javadoc> {
+    enabled = false
+}
+
+dependencies {
+    implementation(project(":request-logging-jakarta-autoconfigure"))
+    implementation("org.springframework.boot:spring-boot-starter-web")
+    implementation("org.hdrhistogram:HdrHistogram")
+}
+
+tasks.register<JavaExec>("stressTest") {
+    group = "verification"
+    description = "Holds many concurrent slow requests on virtual threads and checks that heap and throughput stay stable."
+    javaLauncher.set(project.javaToolchains.launcherFor { languageVersion.set(JavaLanguageVersion.of(21)) })
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.etherealscope.requestlogging.stress.StressTest")
+    workingDir = projectDir
+    maxHeapSize = project.findProperty("stressTestHeap")?.toString() ?: "4g"
+    listOf("stressTestConnections", "stressTestDelay", "stressTestRampUp", "stressTestRounds", "stressTestRoundDuration",
+            "stressTestSourceAddresses", "stressTestMaxHeapGrowth", "stressTestMaxThroughputDrop")
+            .filter { project.hasProperty(it) }
+            .forEach { systemProperty(it, project.property(it).toString()) }
+}
@@ -0,0 +1,77 @@
+package com.etherealscope.requestlogging.stress;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts virtual threads which blocked while pinned to their carrier, as reported by the
+ * {@code jdk.VirtualThreadPinned} JFR event. A pinning is blamed on the innermost frame outside the JDK,
+ * those blamed on request logging are counted apart, with their frames.
+ */
+final class PinnedThreads implements AutoCloseable {
+
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+    private static final String REQUEST_LOGGING = "com.etherealscope.requestlogging.";
+    private static final String STRESS_TEST = "com.etherealscope.requestlogging.stress.";
+    private static final int MAX_FRAMES = 16;
+
+    private final RecordingStream stream = new RecordingStream();
+    private final LongAdder pinned = new LongAdder();
+    private final LongAdder pinnedByRequestLogging = new LongAdder();
+    private final Set<String> requestLoggingFrames = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param threshold shortest pinned blocking reported
+     */
+    PinnedThreads(Duration threshold) {
+        stream.enable(EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(EVENT, this::record);
+        stream.startAsync();
+    }
+
+    long getPinned() {
+        return pinned.sum();
+    }
+
+    long getPinnedByRequestLogging() {
+        return pinnedByRequestLogging.sum();
+    }
+
+    Set<String> getRequestLoggingFrames() {
+        return requestLoggingFrames;
+    }
+
+    @Override
+    public void close() {
+        stream.close();
+    }
+
+    private void record(RecordedEvent event) {
+        pinned.increment();
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        if (stackTrace == null) {
+            return;
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (type.startsWith("java.") || type.startsWith("jdk.") || type.startsWith("sun.")) {
+                continue;
+            }
+            if (type.startsWith(REQUEST_LOGGING) && !type.startsWith(STRESS_TEST)) {
+                pinnedByRequestLogging.increment();
+                if (requestLoggingFrames.size() < MAX_FRAMES) {
+                    requestLoggingFrames.add(type + "." + frame.getMethod().getName() + ":" + frame.getLineNumber());
+                }
+            }
+            return;
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.etherealscope.requestlogging.stress;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Exchanges of one round of the stress test. Latencies are in microseconds.
+ */
+final class Round {
+
+    private final Histogram latencies;
+    private final long errors;
+    private final long elapsedNanos;
+    private final int openConnections;
+
+    Round(Histogram latencies, long errors, long elapsedNanos, int openConnections) {
+        this.latencies = latencies;
+        this.errors = errors;
+        this.elapsedNanos = elapsedNanos;
+        this.openConnections = openConnections;
+    }
+
+    long getErrors() {
+        return errors;
+    }
+
+    int getOpenConnections() {
+        return openConnections;
+    }
+
+    double throughput() {
+        return latencies.getTotalCount() * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Latency percentile in milliseconds, like 99.9.
+     */
+    double percentileMillis(double percentile) {
+        return latencies.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+}
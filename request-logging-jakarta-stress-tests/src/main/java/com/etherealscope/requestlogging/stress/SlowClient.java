@@ -0,0 +1,195 @@
+package com.etherealscope.requestlogging.stress;
+
+import org.HdrHistogram.Recorder;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.lang.System.nanoTime;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Closed loop client holding one keep-alive connection per virtual thread, each sends the next slow request
+ * as soon as the previous response is read, so the server has one request in flight per connection.
+ * Connections are spread over several loopback source addresses, as one address runs out of ephemeral ports
+ * at about 28 thousand connections. Http is written and parsed by hand with one small buffer per connection,
+ * so the client itself takes little heap per connection.
+ */
+final class SlowClient implements Closeable {
+
+    private static final int BUFFER_SIZE = 2048;
+    private static final long RECONNECT_PAUSE_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+    private final InetSocketAddress server;
+    private final InetAddress[] sourceAddresses;
+    private final byte[] request;
+    private final Recorder latencies = new Recorder(3);
+    private final LongAdder errors = new LongAdder();
+    private final AtomicInteger open = new AtomicInteger();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile boolean running = true;
+    private long intervalStartNanos;
+
+    SlowClient(int port, int sourceAddresses) throws UnknownHostException {
+        this.server = new InetSocketAddress(InetAddress.getByName("127.0.0.1"), port);
+        this.sourceAddresses = new InetAddress[sourceAddresses];
+        for (int i = 0; i < sourceAddresses; i++) {
+            this.sourceAddresses[i] = InetAddress.getByName("127.0.0." + (i + 2));
+        }
+        byte[] body = StressTestApplication.json(StressTestApplication.REQUEST_SIZE).getBytes(UTF_8);
+        byte[] head = ("POST /slow HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Content-Type: application/json\r\n"
+                + "Accept: application/json\r\n"
+                + "Content-Length: " + body.length + "\r\n"
+                + "\r\n").getBytes(US_ASCII);
+        this.request = new byte[head.length + body.length];
+        System.arraycopy(head, 0, request, 0, head.length);
+        System.arraycopy(body, 0, request, head.length, body.length);
+    }
+
+    /**
+     * Opens the connections evenly spread over the ramp up, so the server is not hit by all of them at once.
+     */
+    void start(int connections, Duration rampUp) {
+        long startNanos = nanoTime();
+        long pauseNanos = rampUp.toNanos() / connections;
+        intervalStartNanos = startNanos;
+        for (int i = 0; i < connections; i++) {
+            InetAddress source = sourceAddresses[i % sourceAddresses.length];
+            long connectAt = startNanos + i * pauseNanos;
+            executor.execute(() -> run(source, connectAt));
+        }
+    }
+
+    /**
+     * Exchanges completed and failed since the previous interval.
+     */
+    Round interval() {
+        long now = nanoTime();
+        Round round = new Round(latencies.getIntervalHistogram(), errors.sumThenReset(), now - intervalStartNanos, open.get());
+        intervalStartNanos = now;
+        return round;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run(InetAddress source, long connectAt) {
+        parkUntil(connectAt);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        while (running) {
+            try (Socket socket = new Socket()) {
+                socket.bind(new InetSocketAddress(source, 0));
+                socket.connect(server);
+                open.incrementAndGet();
+                try {
+                    exchange(socket, buffer);
+                } finally {
+                    open.decrementAndGet();
+                }
+            } catch (IOException e) {
+                if (running) {
+                    errors.increment();
+                    parkUntil(nanoTime() + RECONNECT_PAUSE_NANOS);
+                }
+            }
+        }
+    }
+
+    private void exchange(Socket socket, byte[] buffer) throws IOException {
+        InputStream in = socket.getInputStream();
+        OutputStream out = socket.getOutputStream();
+        while (running) {
+            long startNanos = nanoTime();
+            out.write(request);
+            out.flush();
+            if (readResponse(in, buffer) == 200) {
+                latencies.recordValue((nanoTime() - startNanos) / 1000);
+            } else {
+                errors.increment();
+            }
+        }
+    }
+
+    /**
+     * Reads one response with a content length, which has to fit into the buffer.
+     *
+     * @return status code
+     */
+    private static int readResponse(InputStream in, byte[] buffer) throws IOException {
+        int length = 0;
+        int headerEnd = -1;
+        int expected = -1;
+        while (expected < 0 || length < expected) {
+            if (length == buffer.length) {
+                throw new IOException("Response larger than " + buffer.length + " bytes");
+            }
+            int read = in.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                throw new EOFException("Connection closed by the server");
+            }
+            length += read;
+            if (headerEnd < 0) {
+                headerEnd = headerEnd(buffer, length);
+                if (headerEnd >= 0) {
+                    expected = headerEnd + contentLength(new String(buffer, 0, headerEnd, US_ASCII));
+                }
+            }
+        }
+        return Integer.parseInt(new String(buffer, 9, 3, US_ASCII));
+    }
+
+    /**
+     * Index after the empty line ending the headers, -1 when it was not read yet.
+     */
+    private static int headerEnd(byte[] buffer, int length) {
+        for (int i = 3; i < length; i++) {
+            if (buffer[i] == '\n' && buffer[i - 1] == '\r' && buffer[i - 2] == '\n' && buffer[i - 3] == '\r') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int contentLength(String headers) throws IOException {
+        for (String header : headers.split("\r\n")) {
+            int colon = header.indexOf(':');
+            if (colon > 0 && header.substring(0, colon).trim().equalsIgnoreCase("Content-Length")) {
+                return Integer.parseInt(header.substring(colon + 1).trim());
+            }
+        }
+        throw new IOException("Response without content length");
+    }
+
+    private static void parkUntil(long deadlineNanos) {
+        for (long wait; (wait = deadlineNanos - nanoTime()) > 0 && !Thread.currentThread().isInterrupted(); ) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.etherealscope.requestlogging.stress;
+
+import com.sun.management.UnixOperatingSystemMXBean;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.OperatingSystemMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Locale.ROOT;
+
+/**
+ * Starts {@link StressTestApplication} on Tomcat with virtual threads and request logging on, opens the connections
+ * of the {@link SlowClient} over the ramp up and, after one more round of warmup, measures rounds of the given
+ * duration. Throughput, latency percentiles, open connections and the heap used after a full collection are
+ * reported per round, as well as virtual threads pinned to their carrier while blocking.
+ * <p>
+ * Exits with status 1 when a request failed, the heap grew or the throughput dropped by more than the given
+ * fraction of the first round, or a virtual thread got pinned in request logging code.
+ * <p>
+ * Configured by system properties: {@code stressTestConnections} (100000), {@code stressTestDelay} (2s) the endpoint
+ * waits, {@code stressTestRampUp} (30s), {@code stressTestRounds} (5), {@code stressTestRoundDuration} (30s),
+ * {@code stressTestSourceAddresses} (8), {@code stressTestMaxHeapGrowth} (0.2) and {@code stressTestMaxThroughputDrop} (0.2).
+ * Server and client run in one process, which needs two file descriptors per connection.
+ */
+public final class StressTest {
+
+    private static final Duration PINNED_THRESHOLD = Duration.ofMillis(20);
+
+    private StressTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int connections = Integer.getInteger("stressTestConnections", 100_000);
+        Duration delay = DurationStyle.detectAndParse(System.getProperty("stressTestDelay", "2s"));
+        Duration rampUp = DurationStyle.detectAndParse(System.getProperty("stressTestRampUp", "30s"));
+        int rounds = Integer.getInteger("stressTestRounds", 5);
+        Duration roundDuration = DurationStyle.detectAndParse(System.getProperty("stressTestRoundDuration", "30s"));
+        int sourceAddresses = Integer.getInteger("stressTestSourceAddresses", 8);
+        double maxHeapGrowth = Double.parseDouble(System.getProperty("stressTestMaxHeapGrowth", "0.2"));
+        double maxThroughputDrop = Double.parseDouble(System.getProperty("stressTestMaxThroughputDrop", "0.2"));
+        checkFileDescriptors(connections);
+
+        List<Round> results = new ArrayList<>();
+        List<Long> heaps = new ArrayList<>();
+        PinnedThreads pinned = new PinnedThreads(PINNED_THRESHOLD);
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(StressTestApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.main.banner-mode=off",
+                        "spring.threads.virtual.enabled=true",
+                        "server.tomcat.max-connections=" + (connections + 1024),
+                        "server.tomcat.accept-count=8192",
+                        "server.tomcat.connection-timeout=10m",
+                        "server.tomcat.keep-alive-timeout=10m",
+                        "server.tomcat.max-keep-alive-requests=-1",
+                        "server.max-http-request-header-size=2KB",
+                        "server.tomcat.max-http-response-header-size=2KB",
+                        "stress.delay=" + delay.toMillis() + "ms",
+                        "ethereal.logging.async.enabled=true",
+                        "ethereal.logging.async.queue-capacity=65536",
+                        "ethereal.logging.request.include-payload=true",
+                        "ethereal.logging.request.max-payload-size=1024",
+                        "ethereal.logging.response.include-payload=true",
+                        "ethereal.logging.response.max-payload-size=1024",
+                        "ethereal.logging.capture-pool.max-slabs=4096")
+                .run(args);
+        try (SlowClient client = new SlowClient(((WebServerApplicationContext) context).getWebServer().getPort(), sourceAddresses)) {
+            client.start(connections, rampUp);
+            Thread.sleep(rampUp.plus(roundDuration).toMillis());
+            client.interval();
+            for (int i = 1; i <= rounds; i++) {
+                Thread.sleep(roundDuration.toMillis());
+                Round round = client.interval();
+                long heap = heapAfterGc();
+                results.add(round);
+                heaps.add(heap);
+                report(i, round, heap);
+            }
+        } finally {
+            context.close();
+            pinned.close();
+        }
+
+        List<String> failures = check(results, heaps, pinned, maxHeapGrowth, maxThroughputDrop);
+        System.out.println("Virtual threads pinned while blocking: " + pinned.getPinned()
+                + ", in request logging: " + pinned.getPinnedByRequestLogging());
+        if (!failures.isEmpty()) {
+            System.out.println("Stress test failed:");
+            failures.forEach(failure -> System.out.println("  " + failure));
+            System.exit(1);
+        }
+        System.out.println("Heap and throughput stable");
+    }
+
+    private static List<String> check(List<Round> rounds, List<Long> heaps, PinnedThreads pinned,
+                                      double maxHeapGrowth, double maxThroughputDrop) {
+        List<String> failures = new ArrayList<>();
+        long errors = rounds.stream().mapToLong(Round::getErrors).sum();
+        if (errors > 0) {
+            failures.add(errors + " requests failed");
+        }
+        for (int i = 1; i < rounds.size(); i++) {
+            if (heaps.get(i) > heaps.get(0) * (1 + maxHeapGrowth)) {
+                failures.add(String.format(ROOT, "heap of round %d grew to %d MB from %d MB", i + 1, heaps.get(i) >> 20, heaps.get(0) >> 20));
+            }
+            if (rounds.get(i).throughput() < rounds.get(0).throughput() * (1 - maxThroughputDrop)) {
+                failures.add(String.format(ROOT, "throughput of round %d dropped to %.0f req/s from %.0f req/s", i + 1,
+                        rounds.get(i).throughput(), rounds.get(0).throughput()));
+            }
+        }
+        if (pinned.getPinnedByRequestLogging() > 0) {
+            failures.add("virtual threads pinned in request logging at " + pinned.getRequestLoggingFrames());
+        }
+        return failures;
+    }
+
+    private static void report(int index, Round round, long heap) {
+        if (index == 1) {
+            System.out.println();
+            System.out.println(String.format(ROOT, "%5s %10s %9s %9s %9s %8s %7s %8s",
+                    "round", "req/s", "p50 ms", "p99 ms", "p999 ms", "open", "errors", "heap MB"));
+        }
+        System.out.println(String.format(ROOT, "%5d %10.0f %9.1f %9.1f %9.1f %8d %7d %8d",
+                index, round.throughput(), round.percentileMillis(50), round.percentileMillis(99),
+                round.percentileMillis(99.9), round.getOpenConnections(), round.getErrors(), heap >> 20));
+    }
+
+    private static long heapAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        memory.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Fails early rather than with connections refused half way through the ramp up.
+     */
+    private static void checkFileDescriptors(int connections) {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        long needed = 2L * connections + 1024;
+        if (os instanceof UnixOperatingSystemMXBean && ((UnixOperatingSystemMXBean) os).getMaxFileDescriptorCount() < needed) {
+            System.out.println("At least " + needed + " file descriptors are needed, raise the limit with ulimit -n");
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.etherealscope.requestlogging.stress;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.web.embedded.tomcat.TomcatConnectorCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+/**
+ * Application under stress, a single endpoint waiting before it answers, on Tomcat with virtual threads,
+ * so every open connection holds one request in flight.
+ */
+@SpringBootApplication
+public class StressTestApplication {
+
+    static final int REQUEST_SIZE = 256;
+    static final int RESPONSE_SIZE = 512;
+
+    /**
+     * Tomcat keeps a read and a write buffer of 8 KB per connection by default,
+     * smaller ones keep the heap of a hundred thousand open connections in bounds.
+     */
+    @Bean
+    TomcatConnectorCustomizer smallSocketBuffers() {
+        return connector -> {
+            connector.setProperty("socket.appReadBufSize", "2048");
+            connector.setProperty("socket.appWriteBufSize", "2048");
+        };
+    }
+
+    @RestController
+    static class StressTestController {
+
+        private final String response = json(RESPONSE_SIZE);
+        private final Duration delay;
+
+        StressTestController(@Value("${stress.delay}") Duration delay) {
+            this.delay = delay;
+        }
+
+        @PostMapping(value = "/slow", consumes = APPLICATION_JSON_VALUE, produces = APPLICATION_JSON_VALUE)
+        String slow(@RequestBody String body) throws InterruptedException {
+            Thread.sleep(delay.toMillis());
+            return response;
+        }
+    }
+
+    /**
+     * Json array of objects, about {@code size} bytes long.
+     */
+    static String json(int size) {
+        StringBuilder sb = new StringBuilder(size + 64).append('[');
+        for (int i = 0; sb.length() < size; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":").append(i)
+                    .append(",\"name\":\"item-").append(i)
+                    .append("\",\"password\":\"p4ssw0rd-").append(i)
+                    .append("\"}");
+        }
+        return sb.append(']').toString();
+    }
+
+}
@@ -0,0 +1,23 @@
+description = "End-to-end overhead regression harness for request logging"
+
+dependencies {
+    implementation(project(":request-logging-autoconfigure"))
+    implementation("org.springframework.boot:spring-boot-starter-web")
+    implementation("org.hdrhistogram:HdrHistogram")
+}
+
+tasks.register<JavaExec>("loadTest") {
+    group = "verification"
+    description = "Measures the request logging overhead on embedded Tomcat and compares it with the stored baseline."
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.etherealscope.requestlogging.load.LoadTest")
+    workingDir = projectDir
+    maxHeapSize = "1g"
+    listOf("loadTestThreads", "loadTestWarmup", "loadTestDuration", "loadTestEndpoints", "loadTestModes", "updateBaseline",
+            "allowMissingBaseline")
+            .filter { project.hasProperty(it) }
+            .forEach { systemProperty(it, project.property(it).toString()) }
+    if (project.hasProperty("loadTestJfr")) {
+        jvmArgs("-XX:StartFlightRecording=settings=profile,filename=${buildDir}/load-test/load-test.jfr")
+    }
+}
@@ -0,0 +1,128 @@
+package com.etherealscope.requestlogging.load;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Locale.ROOT;
+
+/**
+ * Stored overhead limits, keyed like {@code masked-logging.large-json.p99-increase}. Overhead is measured against
+ * {@link Mode#FILTER_OFF} of the same run, so limits hold across machines as long as the run is not saturated
+ * by something else. Modes and endpoints without a stored limit are reported but not checked.
+ */
+final class Baseline {
+
+    /**
+     * Limits written by an update are the measured overhead with this much headroom.
+     */
+    private static final double HEADROOM = 1.5;
+
+    private final Path file;
+    private final Properties limits = new Properties();
+
+    private Baseline(Path file) {
+        this.file = file;
+    }
+
+    static Baseline load(Path file) throws IOException {
+        Baseline baseline = new Baseline(file);
+        if (Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file, UTF_8)) {
+                baseline.limits.load(reader);
+            }
+        }
+        return baseline;
+    }
+
+    boolean isEmpty() {
+        return limits.isEmpty();
+    }
+
+    /**
+     * Overheads above their limits, as lines of the report.
+     */
+    List<String> check(Map<Mode, Map<Endpoint, Result>> results) {
+        List<String> regressions = new ArrayList<>();
+        forEachOverhead(results, (key, overhead) -> {
+            String limit = limits.getProperty(key);
+            if (limit != null && overhead > Double.parseDouble(limit)) {
+                regressions.add(String.format(ROOT, "%s is %.3f, limit %s", key, overhead, limit));
+            }
+        });
+        return regressions;
+    }
+
+    /**
+     * Replaces the limits by the overheads of the run with headroom, the limit of a ratio
+     * is at least 5 percent and of allocated bytes at least 1 KB per request.
+     */
+    void update(Map<Mode, Map<Endpoint, Result>> results) throws IOException {
+        Map<String, String> updated = new TreeMap<>();
+        forEachOverhead(results, (key, overhead) -> {
+            double floor = key.endsWith(Overhead.ALLOCATED_BYTES.key) ? 1024 : 0.05;
+            updated.put(key, String.format(ROOT, "%.3f", Math.max(overhead, 0) * HEADROOM + floor));
+        });
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (Writer writer = Files.newBufferedWriter(file, UTF_8)) {
+            writer.write("# Request logging overhead limits against filter-off, written by -PupdateBaseline\n");
+            for (Map.Entry<String, String> limit : updated.entrySet()) {
+                writer.write(limit.getKey() + "=" + limit.getValue() + "\n");
+            }
+        }
+    }
+
+    static void forEachOverhead(Map<Mode, Map<Endpoint, Result>> results, OverheadConsumer consumer) {
+        Map<Endpoint, Result> reference = results.get(Mode.FILTER_OFF);
+        for (Map.Entry<Mode, Map<Endpoint, Result>> mode : results.entrySet()) {
+            if (mode.getKey() == Mode.FILTER_OFF) {
+                continue;
+            }
+            for (Map.Entry<Endpoint, Result> endpoint : mode.getValue().entrySet()) {
+                Result base = reference.get(endpoint.getKey());
+                String prefix = mode.getKey().key() + "." + endpoint.getKey().key() + ".";
+                for (Overhead overhead : Overhead.values()) {
+                    consumer.accept(prefix + overhead.key, overhead.of(endpoint.getValue(), base));
+                }
+            }
+        }
+    }
+
+    interface OverheadConsumer {
+
+        void accept(String key, double overhead);
+    }
+
+    enum Overhead {
+
+        THROUGHPUT_LOSS("throughput-loss"),
+        P99_INCREASE("p99-increase"),
+        ALLOCATED_BYTES("allocated-bytes");
+
+        final String key;
+
+        Overhead(String key) {
+            this.key = key;
+        }
+
+        double of(Result result, Result base) {
+            switch (this) {
+                case THROUGHPUT_LOSS:
+                    return 1 - result.throughput() / base.throughput();
+                case P99_INCREASE:
+                    return result.percentileMillis(99) / base.percentileMillis(99) - 1;
+                default:
+                    return result.allocatedBytesPerRequest() - base.allocatedBytesPerRequest();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.etherealscope.requestlogging.load;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Exchanges driven by the load generator, one endpoint of {@link LoadTestApplication} each.
+ */
+enum Endpoint {
+
+    SMALL_JSON("GET", "/small", null, null),
+    LARGE_JSON("POST", "/large", "application/json", Payloads.json(64 * 1024)),
+    FORM("POST", "/form", "application/x-www-form-urlencoded", Payloads.form()),
+    DOWNLOAD("GET", "/download", null, null),
+    SLOW("GET", "/slow", null, null);
+
+    final String method;
+    final String path;
+    final String contentType;
+    final byte[] body;
+
+    Endpoint(String method, String path, String contentType, String body) {
+        this.method = method;
+        this.path = path;
+        this.contentType = contentType;
+        this.body = body != null ? body.getBytes(UTF_8) : null;
+    }
+
+    /**
+     * Name used in the report and the baseline, like large-json.
+     */
+    String key() {
+        return name().toLowerCase().replace('_', '-');
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.etherealscope.requestlogging.load;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.System.nanoTime;
+
+/**
+ * Closed loop load generator, every thread sends its next request as soon as the previous response is read.
+ * Connections are kept alive, so the numbers cover the exchange rather than connection setup.
+ */
+final class LoadGenerator {
+
+    private final int port;
+    private final int threads;
+
+    LoadGenerator(int port, int threads) {
+        this.port = port;
+        this.threads = threads;
+    }
+
+    /**
+     * Drives the endpoint for the warmup, discarding what is measured, then for the duration.
+     */
+    Result run(Endpoint endpoint, Duration warmup, Duration duration) throws Exception {
+        drive(endpoint, warmup);
+        Map<Long, Long> allocatedBefore = ServerAllocations.snapshot();
+        long startNanos = nanoTime();
+        Measurement measurement = drive(endpoint, duration);
+        long elapsedNanos = nanoTime() - startNanos;
+        long allocated = ServerAllocations.since(allocatedBefore);
+        return new Result(measurement.latencies.getTotalCount(), measurement.errors.get(), elapsedNanos,
+                measurement.latencies, allocated);
+    }
+
+    private Measurement drive(Endpoint endpoint, Duration duration) throws Exception {
+        URL url = new URL("http", "localhost", port, endpoint.path);
+        long deadline = nanoTime() + duration.toNanos();
+        Measurement measurement = new Measurement();
+        List<Thread> workers = new ArrayList<>();
+        List<Histogram> histograms = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Histogram histogram = new Histogram(3);
+            histograms.add(histogram);
+            Thread worker = new Thread(() -> work(url, endpoint, deadline, histogram, measurement.errors), "load-generator-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+        for (int i = 0; i < threads; i++) {
+            workers.get(i).join();
+            measurement.latencies.add(histograms.get(i));
+        }
+        return measurement;
+    }
+
+    private static void work(URL url, Endpoint endpoint, long deadline, Histogram histogram, AtomicLong errors) {
+        byte[] buffer = new byte[64 * 1024];
+        while (nanoTime() < deadline) {
+            long startNanos = nanoTime();
+            if (send(url, endpoint, buffer)) {
+                histogram.recordValue((nanoTime() - startNanos) / 1000);
+            } else {
+                errors.incrementAndGet();
+            }
+        }
+    }
+
+    private static boolean send(URL url, Endpoint endpoint, byte[] buffer) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod(endpoint.method);
+            connection.setRequestProperty("Authorization", "Bearer load-test-token");
+            if (endpoint.body != null) {
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(endpoint.body.length);
+                connection.setRequestProperty("Content-Type", endpoint.contentType);
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(endpoint.body);
+                }
+            }
+            int status = connection.getResponseCode();
+            try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                if (in != null) {
+                    while (in.read(buffer) >= 0) {
+                        // drained, so the connection is reused
+                    }
+                }
+            }
+            return status == 200;
+        } catch (IOException e) {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            return false;
+        }
+    }
+
+    private static final class Measurement {
+
+        final Histogram latencies = new Histogram(3);
+        final AtomicLong errors = new AtomicLong();
+    }
+
+}
@@ -0,0 +1,154 @@
+package com.etherealscope.requestlogging.load;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Locale.ROOT;
+
+/**
+ * Starts {@link LoadTestApplication} on embedded Tomcat once per {@link Mode}, drives every {@link Endpoint}
+ * with the {@link LoadGenerator} and reports throughput, latency percentiles and allocated bytes per request.
+ * Exits with status 1 when a request failed or an overhead against {@link Mode#FILTER_OFF} exceeds
+ * its {@link Baseline} limit. A run with failed requests does not update the baseline either.
+ * Export modes send to a {@link StandInCollector} started for the run.
+ * <p>
+ * Configured by system properties: {@code loadTestThreads} (16), {@code loadTestWarmup} (5s),
+ * {@code loadTestDuration} (15s), comma separated {@code loadTestEndpoints} and {@code loadTestModes}
+ * (all), and {@code updateBaseline} to store the overheads of this run as the new limits.
+ * A missing baseline fails the run as well, unless {@code allowMissingBaseline} is set.
+ */
+public final class LoadTest {
+
+    private static final Path BASELINE = Paths.get("baseline.properties");
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = Integer.getInteger("loadTestThreads", 16);
+        Duration warmup = DurationStyle.detectAndParse(System.getProperty("loadTestWarmup", "5s"));
+        Duration duration = DurationStyle.detectAndParse(System.getProperty("loadTestDuration", "15s"));
+        Set<Endpoint> endpoints = parse(Endpoint.class, System.getProperty("loadTestEndpoints"));
+        Set<Mode> modes = parse(Mode.class, System.getProperty("loadTestModes"));
+        modes.add(Mode.FILTER_OFF);
+        System.setProperty("http.maxConnections", Integer.toString(threads));
+
+        Map<Mode, Map<Endpoint, Result>> results = new EnumMap<>(Mode.class);
+        StandInCollector collector = new StandInCollector();
+        for (Mode mode : modes) {
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(LoadTestApplication.class)
+                    .properties(mode.properties(collector))
+                    .properties("server.port=0", "spring.main.banner-mode=off")
+                    .run(args);
+            try {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                LoadGenerator generator = new LoadGenerator(port, threads);
+                Map<Endpoint, Result> modeResults = new EnumMap<>(Endpoint.class);
+                for (Endpoint endpoint : endpoints) {
+                    modeResults.put(endpoint, generator.run(endpoint, warmup, duration));
+                }
+                results.put(mode, modeResults);
+            } finally {
+                context.close();
+            }
+        }
+
+        collector.close();
+        report(results);
+        if (modes.contains(Mode.EXPORT_TCP) || modes.contains(Mode.EXPORT_HTTP)) {
+            System.out.println("Stand-in collector received " + collector.getLines() + " exchanges in "
+                    + collector.getBatches() + " batches");
+        }
+
+        List<String> failures = failures(results);
+        if (!failures.isEmpty()) {
+            System.out.println("Requests failed:");
+            failures.forEach(failure -> System.out.println("  " + failure));
+            System.exit(1);
+        }
+
+        Baseline baseline = Baseline.load(BASELINE);
+        if (flag("updateBaseline")) {
+            baseline.update(results);
+            System.out.println("Baseline written to " + BASELINE.toAbsolutePath());
+            return;
+        }
+        if (baseline.isEmpty()) {
+            System.out.println("No baseline at " + BASELINE.toAbsolutePath() + ", run with -PupdateBaseline to store one");
+            if (!flag("allowMissingBaseline")) {
+                System.exit(1);
+            }
+            return;
+        }
+        List<String> regressions = baseline.check(results);
+        if (!regressions.isEmpty()) {
+            System.out.println("Overhead above baseline:");
+            regressions.forEach(regression -> System.out.println("  " + regression));
+            System.exit(1);
+        }
+        System.out.println("Overhead within baseline");
+    }
+
+    private static void report(Map<Mode, Map<Endpoint, Result>> results) {
+        System.out.println();
+        System.out.println(String.format(ROOT, "%-15s %-11s %10s %9s %9s %9s %12s %7s",
+                "mode", "endpoint", "req/s", "p50 ms", "p99 ms", "p999 ms", "alloc B/req", "errors"));
+        for (Map.Entry<Mode, Map<Endpoint, Result>> mode : results.entrySet()) {
+            for (Map.Entry<Endpoint, Result> endpoint : mode.getValue().entrySet()) {
+                Result result = endpoint.getValue();
+                System.out.println(String.format(ROOT, "%-15s %-11s %10.0f %9.3f %9.3f %9.3f %12d %7d",
+                        mode.getKey().key(), endpoint.getKey().key(), result.throughput(),
+                        result.percentileMillis(50), result.percentileMillis(99), result.percentileMillis(99.9),
+                        result.allocatedBytesPerRequest(), result.getErrors()));
+            }
+        }
+        System.out.println();
+        Baseline.forEachOverhead(results, (key, overhead) -> System.out.println(String.format(ROOT, "%-45s %10.3f", key, overhead)));
+        System.out.println();
+    }
+
+    private static List<String> failures(Map<Mode, Map<Endpoint, Result>> results) {
+        List<String> failures = new ArrayList<>();
+        for (Map.Entry<Mode, Map<Endpoint, Result>> mode : results.entrySet()) {
+            for (Map.Entry<Endpoint, Result> endpoint : mode.getValue().entrySet()) {
+                long errors = endpoint.getValue().getErrors();
+                if (errors > 0) {
+                    failures.add(String.format(ROOT, "%s.%s: %d requests failed", mode.getKey().key(), endpoint.getKey().key(), errors));
+                }
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Set when given at all, gradle passes {@code -PupdateBaseline} as an empty value.
+     */
+    private static boolean flag(String name) {
+        String value = System.getProperty(name);
+        return value != null && !"false".equalsIgnoreCase(value);
+    }
+
+    private static <E extends Enum<E>> Set<E> parse(Class<E> type, String names) {
+        if (names == null || names.trim().isEmpty()) {
+            return EnumSet.allOf(type);
+        }
+        Set<E> values = EnumSet.noneOf(type);
+        for (String name : names.split(",")) {
+            values.add(Enum.valueOf(type, name.trim().toUpperCase(ROOT).replace('-', '_')));
+        }
+        return values;
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.etherealscope.requestlogging.load;
+
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+/**
+ * Application under load, one endpoint per kind of exchange the filter treats differently.
+ */
+@SpringBootApplication
+public class LoadTestApplication {
+
+    static final int DOWNLOAD_SIZE = 10 * 1024 * 1024;
+    static final long SLOW_MILLIS = 50;
+
+    private static final byte[] CHUNK = new byte[64 * 1024];
+
+    static {
+        Arrays.fill(CHUNK, (byte) 'x');
+    }
+
+    @RestController
+    static class LoadTestController {
+
+        private final String largeJson = Payloads.json(64 * 1024);
+
+        @GetMapping(value = "/small", produces = APPLICATION_JSON_VALUE)
+        String small() {
+            return "{\"id\":42,\"name\":\"small\",\"password\":\"secret\",\"tags\":[\"a\",\"b\"]}";
+        }
+
+        @PostMapping(value = "/large", consumes = APPLICATION_JSON_VALUE, produces = APPLICATION_JSON_VALUE)
+        String large(@RequestBody String body) {
+            return largeJson;
+        }
+
+        @PostMapping(value = "/form", produces = APPLICATION_JSON_VALUE)
+        String form(@RequestParam Map<String, String> params) {
+            return "{\"fields\":" + params.size() + "}";
+        }
+
+        /**
+         * Written in chunks, so the body is streamed rather than held by the application.
+         */
+        @GetMapping("/download")
+        void download(HttpServletResponse response) throws IOException {
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            response.setContentLength(DOWNLOAD_SIZE);
+            OutputStream out = response.getOutputStream();
+            for (int written = 0; written < DOWNLOAD_SIZE; written += CHUNK.length) {
+                out.write(CHUNK, 0, Math.min(CHUNK.length, DOWNLOAD_SIZE - written));
+            }
+        }
+
+        @GetMapping(value = "/slow", produces = APPLICATION_JSON_VALUE)
+        String slow() throws InterruptedException {
+            Thread.sleep(SLOW_MILLIS);
+            return "{\"slow\":true}";
+        }
+    }
+
+}
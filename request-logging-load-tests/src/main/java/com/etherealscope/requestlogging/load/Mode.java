@@ -0,0 +1,67 @@
+package com.etherealscope.requestlogging.load;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Configurations of the application compared by the load test. {@link #FILTER_OFF} is the reference
+ * every other mode is compared with.
+ */
+enum Mode {
+
+    /**
+     * No filter registered at all.
+     */
+    FILTER_OFF,
+    /**
+     * Filter registered, its logger below debug, so it only passes requests through.
+     */
+    DEBUG_OFF,
+    /**
+     * Every exchange captured and logged, without masks.
+     */
+    LOGGING,
+    /**
+     * Every exchange captured and logged with json, form and header masks on every path.
+     */
+    MASKED_LOGGING,
+    /**
+     * Every exchange captured and exported to the {@link StandInCollector} over tcp in gzip batches, not logged.
+     */
+    EXPORT_TCP,
+    /**
+     * Every exchange captured and exported to the {@link StandInCollector} over http in gzip batches, not logged.
+     */
+    EXPORT_HTTP;
+
+    private static final String FILTER_LOGGER = "logging.level.com.etherealscope.requestlogging.RequestLoggingFilter";
+    private static final String MASK = "ethereal.logging.%s.masks[0].";
+
+    Map<String, Object> properties(StandInCollector collector) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("ethereal.logging.enabled", this != FILTER_OFF);
+        properties.put(FILTER_LOGGER, this == FILTER_OFF || this == DEBUG_OFF ? "INFO" : "DEBUG");
+        if (this == EXPORT_TCP || this == EXPORT_HTTP) {
+            properties.put("ethereal.logging.export.enabled", true);
+            properties.put("ethereal.logging.export.url", this == EXPORT_TCP ? collector.tcpUrl() : collector.httpUrl());
+        }
+        if (this == MASKED_LOGGING) {
+            for (String side : new String[] {"request", "response"}) {
+                String mask = String.format(MASK, side);
+                properties.put(mask + "path-matcher", "/**");
+                properties.put(mask + "masked-json-fields", String.join(",", Payloads.MASKED_FIELDS));
+                properties.put(mask + "masked-query-params", String.join(",", Payloads.MASKED_FIELDS));
+                properties.put(mask + "masked-headers", "authorization,cookie");
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Name used in the report and the baseline, like masked-logging.
+     */
+    String key() {
+        return name().toLowerCase().replace('_', '-');
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.etherealscope.requestlogging.load;
+
+/**
+ * Request and response bodies of the load test, with fields the masked mode masks.
+ */
+final class Payloads {
+
+    static final String[] MASKED_FIELDS = {"password", "token", "cardNumber"};
+
+    private Payloads() {
+    }
+
+    /**
+     * Json array of objects, about {@code size} bytes long.
+     */
+    static String json(int size) {
+        StringBuilder sb = new StringBuilder(size + 128).append('[');
+        for (int i = 0; sb.length() < size; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":").append(i)
+                    .append(",\"name\":\"item-").append(i)
+                    .append("\",\"password\":\"p4ssw0rd-").append(i)
+                    .append("\",\"token\":\"").append(Long.toHexString(i * 0x9E3779B97F4A7C15L))
+                    .append("\",\"nested\":{\"cardNumber\":\"4111111111111111\",\"amount\":").append(i * 7)
+                    .append("}}");
+        }
+        return sb.append(']').toString();
+    }
+
+    static String form() {
+        return "username=alice&password=secret&token=abcdef0123456789&comment=hello+world";
+    }
+
+}
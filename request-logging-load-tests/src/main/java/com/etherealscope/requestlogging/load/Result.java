@@ -0,0 +1,44 @@
+package com.etherealscope.requestlogging.load;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Measurement of one endpoint in one mode. Latencies are in microseconds, allocations count
+ * the bytes allocated by the server threads only.
+ */
+final class Result {
+
+    private final long requests;
+    private final long errors;
+    private final long elapsedNanos;
+    private final Histogram latencies;
+    private final long allocatedBytes;
+
+    Result(long requests, long errors, long elapsedNanos, Histogram latencies, long allocatedBytes) {
+        this.requests = requests;
+        this.errors = errors;
+        this.elapsedNanos = elapsedNanos;
+        this.latencies = latencies;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    long getErrors() {
+        return errors;
+    }
+
+    double throughput() {
+        return requests * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Latency percentile in milliseconds, like 99.9.
+     */
+    double percentileMillis(double percentile) {
+        return latencies.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    long allocatedBytesPerRequest() {
+        return requests > 0 ? allocatedBytes / requests : 0;
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.etherealscope.requestlogging.load;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bytes allocated by the threads serving requests and logging them, read from the per thread allocation counters
+ * of the JVM, the same counters JFR reports allocations from. Threads of the load generator are left out.
+ */
+final class ServerAllocations {
+
+    private static final String[] SERVER_THREAD_PREFIXES = {"http-nio-", "request-logging-"};
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    static {
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    private ServerAllocations() {
+    }
+
+    /**
+     * Allocated bytes by server thread id.
+     */
+    static Map<Long, Long> snapshot() {
+        Map<Long, Long> allocated = new HashMap<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (isServerThread(thread.getName())) {
+                long bytes = THREADS.getThreadAllocatedBytes(thread.getId());
+                if (bytes >= 0) {
+                    allocated.put(thread.getId(), bytes);
+                }
+            }
+        }
+        return allocated;
+    }
+
+    /**
+     * Bytes allocated since the snapshot, threads started meanwhile count from zero.
+     */
+    static long since(Map<Long, Long> before) {
+        long total = 0;
+        for (Map.Entry<Long, Long> thread : snapshot().entrySet()) {
+            total += thread.getValue() - before.getOrDefault(thread.getKey(), 0L);
+        }
+        return total;
+    }
+
+    private static boolean isServerThread(String name) {
+        for (String prefix : SERVER_THREAD_PREFIXES) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.etherealscope.requestlogging.load;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Local log collector the export modes send to, over tcp and http. It decompresses every gzip batch
+ * and counts the json lines, so the load test can check that exported exchanges arrived.
+ */
+final class StandInCollector implements Closeable {
+
+    private final ServerSocket tcp;
+    private final HttpServer http;
+    private final AtomicLong lines = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    StandInCollector() throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        this.tcp = new ServerSocket(0, 50, loopback);
+        this.http = HttpServer.create(new InetSocketAddress(loopback, 0), 0);
+        this.http.createContext("/ingest", this::ingest);
+        this.http.setExecutor(Executors.newSingleThreadExecutor(r -> daemon(r, "load-test-collector-http")));
+        this.http.start();
+        daemon(this::accept, "load-test-collector-tcp").start();
+    }
+
+    String tcpUrl() {
+        return "tcp://localhost:" + tcp.getLocalPort();
+    }
+
+    String httpUrl() {
+        return "http://localhost:" + http.getAddress().getPort() + "/ingest";
+    }
+
+    long getLines() {
+        return lines.get();
+    }
+
+    long getBatches() {
+        return batches.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        http.stop(0);
+        tcp.close();
+    }
+
+    private void accept() {
+        while (!tcp.isClosed()) {
+            try {
+                Socket socket = tcp.accept();
+                daemon(() -> read(socket), "load-test-collector-connection").start();
+            } catch (IOException e) {
+                // closed
+            }
+        }
+    }
+
+    /**
+     * Gzip batches framed by their length, one after another on the connection.
+     */
+    private void read(Socket socket) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            while (true) {
+                byte[] batch = new byte[in.readInt()];
+                in.readFully(batch);
+                count(new GZIPInputStream(new ByteArrayInputStream(batch)));
+            }
+        } catch (EOFException e) {
+            // exporter closed the connection
+        } catch (IOException e) {
+            System.err.println("Stand-in collector connection failed: " + e);
+        }
+    }
+
+    private void ingest(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            count("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding")) ? new GZIPInputStream(body) : body);
+        }
+        exchange.sendResponseHeaders(204, -1);
+        exchange.close();
+    }
+
+    private void count(InputStream batch) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long count = 0;
+        for (int read; (read = batch.read(buffer)) >= 0; ) {
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] == '\n') {
+                    count++;
+                }
+            }
+        }
+        lines.addAndGet(count);
+        batches.incrementAndGet();
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+}
@@ -1,4 +1,9 @@
 rootProject.name = "request-logging"
 
 include("request-logging-autoconfigure")
-include("request-logging-spring-boot-starter")
\ No newline at end of file
+include("request-logging-spring-boot-starter")
+include("request-logging-jakarta-autoconfigure")
+include("request-logging-jakarta-spring-boot-starter")
+include("request-logging-benchmarks")
+include("request-logging-load-tests")
+include("request-logging-jakarta-stress-tests")
\ No newline at end of file